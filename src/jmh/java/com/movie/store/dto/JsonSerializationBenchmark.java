@@ -0,0 +1,103 @@
+package com.movie.store.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Jackson serialization of the response bodies: one Movie, an Invoice and a list of rented movies.
+ *
+ * The object mapper is built like the one of the application (Jackson2ObjectMapperBuilder, dates as ISO strings).
+ * Every movie has three categories and a description of a few hundred characters, like the sample data.
+ * The result is the size of the JSON in bytes, so the output also shows how large the responses are.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    //invoice rows, rented movies are ten times as many
+    @Param({"10", "100"})
+    private int size;
+
+    private ObjectWriter writer;
+
+    private Movie movie;
+
+    private Invoice invoice;
+
+    private List<RentedMovie> rentedMovies;
+
+    @Setup
+    public void setUp() {
+        writer = Jackson2ObjectMapperBuilder.json().build().writer();
+
+        List<Category> categories = new ArrayList<>();
+        String[] names = {"Action", "Adventure", "Comedy", "Fantasy", "Horror", "Sci-fi", "Drama", "Romance"};
+        for (int i = 0; i < names.length; i++) {
+            categories.add(new Category((long) i + 1, names[i], new HashSet<>()));
+        }
+
+        List<Movie> movies = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < size * 10; i++) {
+            Set<Category> movieCategories = new HashSet<>();
+            for (int c = 0; c < 3; c++) {
+                movieCategories.add(categories.get((i + c * 3) % categories.size()));
+            }
+            Movie movie = new Movie("Movie title " + i, today.minusWeeks(i % 400), "First Actor, Second Actor, Third Actor",
+                    "A description of the movie that is about as long as the descriptions of the sample movies. ".repeat(4),
+                    movieCategories);
+            movie.setMovieId((long) i + 1);
+            movies.add(movie);
+        }
+        movie = movies.get(0);
+
+        invoice = new Invoice();
+        invoice.setInvoiceRows(new ArrayList<>());
+        invoice.setTotalSum(BigDecimal.ZERO);
+        for (int i = 0; i < size; i++) {
+            InvoiceRow invoiceRow = new InvoiceRow();
+            invoiceRow.setMovie(movies.get(i));
+            invoiceRow.setRentingTimeInWeeks(1 + i % 8);
+            invoiceRow.setPricePerMovieRental(new BigDecimal("13.96"));
+            invoice.getInvoiceRows().add(invoiceRow);
+            invoice.setTotalSum(invoice.getTotalSum().add(invoiceRow.getPricePerMovieRental()));
+        }
+
+        rentedMovies = new ArrayList<>();
+        for (int i = 0; i < size * 10; i++) {
+            RentedMovie rentedMovie = new RentedMovie((long) (i % 50), today.minusWeeks(2), today.plusWeeks(i % 8),
+                    new BigDecimal("6.98"), movies.get(i));
+            rentedMovie.setId((long) i + 1);
+            rentedMovies.add(rentedMovie);
+        }
+    }
+
+    @Benchmark
+    public int movie() throws JsonProcessingException {
+        return writer.writeValueAsBytes(movie).length;
+    }
+
+    @Benchmark
+    public int invoice() throws JsonProcessingException {
+        return writer.writeValueAsBytes(invoice).length;
+    }
+
+    @Benchmark
+    public int rentedMovies() throws JsonProcessingException {
+        return writer.writeValueAsBytes(rentedMovies).length;
+    }
+}
@@ -0,0 +1,48 @@
+package com.movie.store.dto;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the derived price fields of Movie, they are computed on every read (JSON serialization calls both per movie).
+ * Release dates are spread over 10 years, so all price tiers are used.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(MoviePricingBenchmark.MOVIE_COUNT)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoviePricingBenchmark {
+
+    static final int MOVIE_COUNT = 1024;
+
+    private Movie[] movies;
+
+    @Setup
+    public void setUp() {
+        movies = new Movie[MOVIE_COUNT];
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < MOVIE_COUNT; i++) {
+            movies[i] = new Movie("Movie " + i, today.minusDays((i * 37L) % 3650), "Actors", "Description");
+        }
+    }
+
+    @Benchmark
+    public void getPricePerWeek(Blackhole blackhole) {
+        for (Movie movie : movies) {
+            blackhole.consume(movie.getPricePerWeek());
+        }
+    }
+
+    @Benchmark
+    public void getPriceClass(Blackhole blackhole) {
+        for (Movie movie : movies) {
+            blackhole.consume(movie.getPriceClass());
+        }
+    }
+}
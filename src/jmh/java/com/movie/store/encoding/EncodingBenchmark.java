@@ -0,0 +1,135 @@
+package com.movie.store.encoding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.luben.zstd.ZstdInputStream;
+import com.movie.store.dto.Category;
+import com.movie.store.dto.Movie;
+import com.movie.store.dto.RentedMovie;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Measures the representations of /api/rented: encoding on the server (serialization and compression while the body
+ * is written, like the streamed response) and decoding on the client (decompression and parsing into a tree, like a client without our classes).
+ *
+ * The size of the payload of every representation is printed once per trial (look for "payload:" in the output).
+ * JSON without compression is the baseline, the sample data is built like in JsonSerializationBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+    private static final Map<String, MediaType> FORMATS = Map.of(
+            "json", MediaType.APPLICATION_JSON,
+            "smile", ResponseEncoder.APPLICATION_SMILE,
+            "cbor", MediaType.APPLICATION_CBOR);
+
+    private static final Map<String, ContentCoding> CODINGS = Map.of(
+            "identity", ContentCoding.IDENTITY,
+            "gzip", ContentCoding.GZIP,
+            "zstd", ContentCoding.ZSTD);
+
+    //format and compression separated by "+"
+    @Param({"json+identity", "json+gzip", "json+zstd", "smile+identity", "smile+zstd", "cbor+identity", "cbor+zstd"})
+    private String representationName;
+
+    //rented movies in the response
+    @Param({"100", "1000"})
+    private int size;
+
+    private ResponseEncoder responseEncoder;
+
+    private Representation representation;
+
+    private ObjectMapper reader;
+
+    private List<RentedMovie> rentedMovies;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+        ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+        ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+        responseEncoder = new ResponseEncoder(jsonMapper, new MappingJackson2SmileHttpMessageConverter(smileMapper),
+                new MappingJackson2CborHttpMessageConverter(cborMapper));
+
+        String[] names = representationName.split("\\+");
+        representation = new Representation(FORMATS.get(names[0]), CODINGS.get(names[1]));
+        reader = names[0].equals("json") ? jsonMapper : names[0].equals("smile") ? smileMapper : cborMapper;
+
+        List<Category> categories = new ArrayList<>();
+        String[] categoryNames = {"Action", "Adventure", "Comedy", "Fantasy", "Horror", "Sci-fi", "Drama", "Romance"};
+        for (int i = 0; i < categoryNames.length; i++) {
+            categories.add(new Category((long) i + 1, categoryNames[i], new HashSet<>()));
+        }
+        LocalDate today = LocalDate.now();
+        rentedMovies = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Set<Category> movieCategories = new HashSet<>();
+            for (int c = 0; c < 3; c++) {
+                movieCategories.add(categories.get((i + c * 3) % categories.size()));
+            }
+            //ten rentals per movie, like the sample data
+            Movie movie = new Movie("Movie title " + i / 10, today.minusWeeks(i % 400), "First Actor, Second Actor, Third Actor",
+                    "A description of the movie that is about as long as the descriptions of the sample movies. ".repeat(4),
+                    movieCategories);
+            movie.setMovieId((long) i / 10 + 1);
+            RentedMovie rentedMovie = new RentedMovie((long) (i % 50), today.minusWeeks(2), today.plusWeeks(i % 8),
+                    new BigDecimal("6.98"), movie);
+            rentedMovie.setId((long) i + 1);
+            rentedMovies.add(rentedMovie);
+        }
+
+        payload = encode();
+        System.out.println("payload: " + representationName + ", " + size + " rented movies, " + payload.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        responseEncoder.stream(representation, generator -> generator.writeObject(rentedMovies)).getBody().writeTo(output);
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public JsonNode decode() throws IOException {
+        byte[] body = payload;
+        if (representation.getCoding() == ContentCoding.GZIP) {
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = gzip.readAllBytes();
+            }
+        }
+        else if (representation.getCoding() == ContentCoding.ZSTD) {
+            //a streamed zstd frame does not have the decompressed size
+            try (ZstdInputStream zstd = new ZstdInputStream(new ByteArrayInputStream(body))) {
+                body = zstd.readAllBytes();
+            }
+        }
+        return reader.readTree(body);
+    }
+}
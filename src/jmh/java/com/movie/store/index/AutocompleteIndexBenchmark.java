@@ -0,0 +1,149 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.Completion;
+import com.movie.store.dto.MovieNames;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares autocomplete on the completion trie with a prefix scan over all titles.
+ *
+ * Every movie has five actors out of 10 000 names and is rented less often the higher its ID is.
+ * The scan is the work the search box caused before (a title search on every keystroke) done in memory without actors,
+ * so it is a lower bound for the database query. The build time and the heap of the index are printed once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class AutocompleteIndexBenchmark {
+
+    private static final String[] WORDS = {
+            "Star", "Wars", "Galaxy", "Guardians", "Lord", "Rings", "Pirates", "Caribbean", "Robot", "Return",
+            "Night", "Dark", "Knight", "Empire", "Strikes", "Back", "Black", "Pearl", "Fellowship", "King",
+            "Matrix", "Reloaded", "Jurassic", "Park", "World", "Lost", "City", "Dead", "Man", "Chest",
+            "Mission", "Impossible", "Fast", "Furious", "Toy", "Story", "Finding", "Nemo", "Inside", "Out"
+    };
+
+    private static final int ACTORS_PER_MOVIE = 5;
+
+    @Param({"100000"})
+    private int movieCount;
+
+    @Param({"s", "star w", "matrix rel"})
+    private String prefix;
+
+    private AutocompleteIndex autocompleteIndex;
+
+    private List<MovieNames> movies;
+
+    private Map<Long, Long> purchases;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] actors = new String[10000];
+        for (int i = 0; i < actors.length; i++) {
+            actors[i] = name(random) + " " + name(random);
+        }
+        movies = new ArrayList<>(movieCount);
+        purchases = new HashMap<>();
+        for (int i = 0; i < movieCount; i++) {
+            StringBuilder title = new StringBuilder();
+            int words = 2 + random.nextInt(4);
+            for (int j = 0; j < words; j++) {
+                if (j > 0) {
+                    title.append(' ');
+                }
+                title.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            title.append(' ').append(random.nextInt(1000));
+            StringJoiner movieActors = new StringJoiner(", ");
+            for (int j = 0; j < ACTORS_PER_MOVIE; j++) {
+                movieActors.add(actors[random.nextInt(actors.length)]);
+            }
+            long movieId = i + 1;
+            movies.add(new SimpleMovieNames(movieId, title.toString(), movieActors.toString()));
+            purchases.put(movieId, 100000 / movieId);
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        autocompleteIndex = new AutocompleteIndex();
+        autocompleteIndex.rebuild(movies.iterator(), purchases);
+        long buildTime = System.nanoTime() - start;
+        System.gc();
+        long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("index: %d completions, built in %d ms, heap %d MB%n", autocompleteIndex.size(),
+                TimeUnit.NANOSECONDS.toMillis(buildTime), (usedAfter - usedBefore) >> 20);
+    }
+
+    @Benchmark
+    public List<Completion> trie() {
+        return autocompleteIndex.complete(prefix, 10);
+    }
+
+    @Benchmark
+    public List<String> prefixScan() {
+        String needle = prefix.toUpperCase(Locale.ROOT);
+        PriorityQueue<MovieNames> top = new PriorityQueue<>(Comparator.comparing(movie -> purchases.get(movie.getMovieId())));
+        for (MovieNames movie : movies) {
+            if (movie.getMovieTitle().toUpperCase(Locale.ROOT).startsWith(needle)) {
+                top.add(movie);
+                if (top.size() > 10) {
+                    top.poll();
+                }
+            }
+        }
+        List<String> titles = new ArrayList<>();
+        for (MovieNames movie : top) {
+            titles.add(movie.getMovieTitle());
+        }
+        return titles;
+    }
+
+    private static String name(Random random) {
+        StringBuilder name = new StringBuilder().append((char) ('A' + random.nextInt(26)));
+        int length = 3 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            name.append((char) ('a' + random.nextInt(26)));
+        }
+        return name.toString();
+    }
+
+
+    private static final class SimpleMovieNames implements MovieNames {
+        private final Long movieId;
+
+        private final String movieTitle;
+
+        private final String actors;
+
+        private SimpleMovieNames(Long movieId, String movieTitle, String actors) {
+            this.movieId = movieId;
+            this.movieTitle = movieTitle;
+            this.actors = actors;
+        }
+
+        @Override
+        public Long getMovieId() {
+            return movieId;
+        }
+
+        @Override
+        public String getMovieTitle() {
+            return movieTitle;
+        }
+
+        @Override
+        public String getActors() {
+            return actors;
+        }
+    }
+}
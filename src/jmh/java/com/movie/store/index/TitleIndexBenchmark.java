@@ -0,0 +1,103 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.MovieTitle;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the trigram title index with the previous title search.
+ *
+ * The previous search was "upper(movie_title) LIKE %?%", which PostgreSQL answers by upper-casing and scanning
+ * every title. likeScan does the same scan in memory, so it is a lower bound for the database query
+ * (no disk, network or result mapping cost).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class TitleIndexBenchmark {
+
+    private static final String[] WORDS = {
+            "Star", "Wars", "Galaxy", "Guardians", "Lord", "Rings", "Pirates", "Caribbean", "Robot", "Return",
+            "Night", "Dark", "Knight", "Empire", "Strikes", "Back", "Black", "Pearl", "Fellowship", "King",
+            "Matrix", "Reloaded", "Jurassic", "Park", "World", "Lost", "City", "Dead", "Man", "Chest",
+            "Mission", "Impossible", "Fast", "Furious", "Toy", "Story", "Finding", "Nemo", "Inside", "Out"
+    };
+
+    @Param({"1000000"})
+    private int titleCount;
+
+    @Param({"WARS", "Knight Ret", "MATRIX RELOADED 4"})
+    private String query;
+
+    private TitleIndex titleIndex;
+
+    private String[] titles;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        titles = new String[titleCount];
+        List<MovieTitle> movieTitles = new ArrayList<>(titleCount);
+        for (int i = 0; i < titleCount; i++) {
+            StringBuilder title = new StringBuilder();
+            int words = 2 + random.nextInt(4);
+            for (int j = 0; j < words; j++) {
+                if (j > 0) {
+                    title.append(' ');
+                }
+                title.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            title.append(' ').append(random.nextInt(10));
+            titles[i] = title.toString();
+            movieTitles.add(new SimpleMovieTitle((long) i + 1, titles[i]));
+        }
+        titleIndex = new TitleIndex();
+        titleIndex.rebuild(movieTitles);
+    }
+
+    @Benchmark
+    public List<Long> indexSearch() {
+        return titleIndex.search(query, null, 51);
+    }
+
+    @Benchmark
+    public void likeScan(Blackhole blackhole) {
+        String needle = query.toUpperCase(Locale.ROOT);
+        for (int i = 0; i < titles.length; i++) {
+            if (titles[i].toUpperCase(Locale.ROOT).contains(needle)) {
+                blackhole.consume(i + 1);
+            }
+        }
+    }
+
+
+    private static final class SimpleMovieTitle implements MovieTitle {
+        private final Long movieId;
+
+        private final String movieTitle;
+
+        private SimpleMovieTitle(Long movieId, String movieTitle) {
+            this.movieId = movieId;
+            this.movieTitle = movieTitle;
+        }
+
+        @Override
+        public Long getMovieId() {
+            return movieId;
+        }
+
+        @Override
+        public String getMovieTitle() {
+            return movieTitle;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.movie.store.pricing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares PricingEngine with the week by week loop that RentedMovieService.calculate used before.
+ * PricingEngineTest checks that both give identical prices (value and scale), also for rentals of 520 weeks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingEngineBenchmark {
+
+    @Param({"0", "40", "150", "400"})
+    private long ageInWeeks;
+
+    @Param({"1", "4", "520"})
+    private int rentingTimeInWeeks;
+
+    private PricingEngine pricingEngine;
+
+    @Setup
+    public void setUp() {
+        pricingEngine = new PricingEngine(new PricingProperties());
+    }
+
+    @Benchmark
+    public BigDecimal legacyLoop() {
+        return LegacyPricing.price(ageInWeeks, rentingTimeInWeeks);
+    }
+
+    @Benchmark
+    public BigDecimal engine() {
+        return pricingEngine.rentalPrice(ageInWeeks, rentingTimeInWeeks);
+    }
+
+    @Benchmark
+    public long engineInCents() {
+        return pricingEngine.rentalPriceInCents(ageInWeeks, rentingTimeInWeeks);
+    }}
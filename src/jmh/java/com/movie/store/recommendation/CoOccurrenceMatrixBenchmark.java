@@ -0,0 +1,83 @@
+package com.movie.store.recommendation;
+
+import com.movie.store.dto.Recommendation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures top-10 recommendations of the co-occurrence matrix and reports its memory.
+ *
+ * Users rent 50 movies each, movies are picked with a Zipf distribution (the n-th movie is rented 1/n as often
+ * as the first one). The build time, the estimated size of the matrix and the heap used after the build
+ * are printed once per trial (look for "matrix:" in the output). 50M rentals need about 1 GB of heap and a few minutes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CoOccurrenceMatrixBenchmark {
+
+    private static final int RENTALS_PER_USER = 50;
+
+    @Param({"100000"})
+    private int movies;
+
+    @Param({"5000000", "50000000"})
+    private long rentals;
+
+    private CoOccurrenceMatrix matrix;
+
+    private SplittableRandom random;
+
+    @Setup
+    public void setUp() {
+        RecommendationProperties properties = new RecommendationProperties();
+        double[] distribution = new double[movies];
+        double sum = 0;
+        for (int i = 0; i < movies; i++) {
+            sum += 1.0 / (i + 1);
+            distribution[i] = sum;
+        }
+        for (int i = 0; i < movies; i++) {
+            distribution[i] /= sum;
+        }
+
+        random = new SplittableRandom(42);
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+
+        matrix = new CoOccurrenceMatrix(properties);
+        CoOccurrenceMatrix.Builder builder = matrix.builder();
+        for (long i = 0; i < rentals; i++) {
+            int movie = Arrays.binarySearch(distribution, random.nextDouble());
+            movie = Math.min(movie < 0 ? -movie - 1 : movie, movies - 1);
+            builder.add(i / RENTALS_PER_USER, movie + 1);
+        }
+        builder.build();
+
+        long buildTime = System.nanoTime() - start;
+        System.gc();
+        long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("matrix: %d movies, %d rentals, built in %d s, %d neighbors, estimated %d MB, heap %d MB%n",
+                matrix.getMovieCount(), rentals, TimeUnit.NANOSECONDS.toSeconds(buildTime), matrix.getNeighborCount(),
+                matrix.getMemoryBytes() >> 20, (usedAfter - usedBefore) >> 20);
+    }
+
+    @Benchmark
+    public List<Recommendation> topOfAnyMovie() {
+        return matrix.top((long) (1 + random.nextInt(movies)), 10);
+    }
+
+    @Benchmark
+    public List<Recommendation> topOfPopularMovie() {
+        return matrix.top((long) (1 + random.nextInt(100)), 10);
+    }
+}
@@ -0,0 +1,90 @@
+package com.movie.store.repository;
+
+import com.movie.store.StoreApplication;
+import com.movie.store.dto.Movie;
+import com.movie.store.dto.RentedMovie;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rental inserts per second against the database configured in application.properties.
+ *
+ * Every invocation inserts one 20-movie rental in its own transaction, the way rentMovie does.
+ * batchSize 1 sends every insert on its own, batchSize 50 is the configured JDBC batching.
+ * To measure the previous one-id-per-nextval allocation, run the benchmark on the commit before pooled ids were added.
+ * Inserted rows use negative user IDs and are deleted in the tear down.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(RentalInsertBenchmark.RENTAL_SIZE)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RentalInsertBenchmark {
+
+    static final int RENTAL_SIZE = 20;
+
+    @Param({"1", "50"})
+    private String batchSize;
+
+    private ConfigurableApplicationContext context;
+
+    private RentedMovieRepository rentedMovieRepository;
+
+    private MovieRepository movieRepository;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Long movieId;
+
+    private long nextUserId = -1;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(StoreApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                        "spring.jpa.show-sql=false")
+                .run();
+        rentedMovieRepository = context.getBean(RentedMovieRepository.class);
+        movieRepository = context.getBean(MovieRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        movieId = movieRepository.findMovieIdsAfter(0L, PageRequest.of(0, 1)).get(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        EntityManager entityManager = context.getBean(EntityManager.class);
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createQuery("DELETE FROM RentedMovie r WHERE r.userId < 0")
+                .executeUpdate());
+        context.close();
+    }
+
+    @Benchmark
+    public void insertRental() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Movie movie = movieRepository.getById(movieId);
+            List<RentedMovie> rentedMovies = new ArrayList<>(RENTAL_SIZE);
+            for (int i = 0; i < RENTAL_SIZE; i++) {
+                rentedMovies.add(new RentedMovie(nextUserId--, LocalDate.now(), LocalDate.now().plusWeeks(1),
+                        BigDecimal.valueOf(5), movie));
+            }
+            rentedMovieRepository.saveAll(rentedMovies);
+        });
+    }
+}
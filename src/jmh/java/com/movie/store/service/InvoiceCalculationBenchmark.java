@@ -0,0 +1,78 @@
+package com.movie.store.service;
+
+import com.movie.store.dto.Invoice;
+import com.movie.store.dto.Movie;
+import com.movie.store.exception.CommonException;
+import com.movie.store.pricing.PricingEngine;
+import com.movie.store.pricing.PricingProperties;
+import com.movie.store.repository.MovieRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures RentedMovieService.calculate without the database.
+ *
+ * The movie repository is a stub that returns prepared movies from findByMovieIdIn, so the benchmark covers
+ * validation, pricing and building the invoice rows, not the query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvoiceCalculationBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int movieCount;
+
+    private RentedMovieService rentedMovieService;
+
+    private List<Long> movieIds;
+
+    private List<Integer> timesInWeeks;
+
+    @Setup
+    public void setUp() {
+        List<Movie> movies = new ArrayList<>();
+        movieIds = new ArrayList<>();
+        timesInWeeks = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < movieCount; i++) {
+            Movie movie = new Movie("Movie " + i, today.minusWeeks(i * 7L), "Actors", "Description");
+            movie.setMovieId((long) i + 1);
+            movies.add(movie);
+            movieIds.add(movie.getMovieId());
+            timesInWeeks.add(1 + i % 8);
+        }
+
+        MovieRepository movieRepository = (MovieRepository) Proxy.newProxyInstance(
+                MovieRepository.class.getClassLoader(), new Class<?>[]{MovieRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findByMovieIdIn")) {
+                        Collection<?> ids = (Collection<?>) args[0];
+                        List<Movie> found = new ArrayList<>(ids.size());
+                        for (Movie movie : movies) {
+                            if (ids.contains(movie.getMovieId())) {
+                                found.add(movie);
+                            }
+                        }
+                        return found;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        rentedMovieService = new RentedMovieService(null, movieRepository,
+                new PricingEngine(new PricingProperties()), null, null, null);
+    }
+
+    @Benchmark
+    public Invoice calculate() throws CommonException {
+        return rentedMovieService.calculate(movieIds, timesInWeeks);
+    }
+}
@@ -0,0 +1,267 @@
+package com.movie.store.loadtest;
+
+import com.movie.store.StoreApplication;
+import com.movie.store.repository.MovieRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class runs the end-to-end load test.
+ *
+ * It starts StoreApplication with the loadtest profile (embedded in-memory database, seeded data, random port),
+ * sends a mix of browse, search, invoice, rent and popular requests over HTTP from several client threads
+ * and prints throughput and latency percentiles per request type.
+ * The process exits with 1 if a limit of application-loadtest.properties is exceeded, so it can fail a build.
+ *
+ * Arguments are passed to the application, for example "--loadtest.duration=60s --loadtest.clients=32".
+ */
+public class LoadTest {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final LoadTestProperties properties;
+
+    private final String baseUrl;
+
+    private final List<Long> movieIds;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+
+    public LoadTest(LoadTestProperties properties, String baseUrl, List<Long> movieIds) {
+        this.properties = properties;
+        this.baseUrl = baseUrl;
+        this.movieIds = movieIds;
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        boolean passed;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(StoreApplication.class)
+                .profiles("loadtest")
+                .run(args)) {
+            LoadTestProperties properties = context.getBean(LoadTestProperties.class);
+            String baseUrl = "http://localhost:" + context.getEnvironment().getRequiredProperty("local.server.port");
+            List<Long> movieIds = context.getBean(MovieRepository.class)
+                    .findMovieIdsAfter(0L, PageRequest.of(0, Integer.MAX_VALUE));
+            passed = new LoadTest(properties, baseUrl, movieIds).run();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+
+    /**
+     * This method sends the traffic, prints the report and checks the limits.
+     * @return true if all limits are kept.
+     */
+    public boolean run() throws Exception {
+        List<String> types = new ArrayList<>(properties.getMix().keySet());
+        int[] weights = new int[types.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = properties.getMix().get(types.get(i));
+        }
+
+        long start = System.nanoTime();
+        long measureFrom = start + properties.getWarmup().toNanos();
+        long end = measureFrom + properties.getDuration().toNanos();
+
+        ExecutorService clients = Executors.newFixedThreadPool(properties.getClients());
+        List<Future<Map<String, Samples>>> results = new ArrayList<>();
+        for (int client = 0; client < properties.getClients(); client++) {
+            Random random = new Random(properties.getSeed() + client);
+            results.add(clients.submit(() -> sendRequests(random, types, weights, measureFrom, end)));
+        }
+        Map<String, Samples> samplesByType = new TreeMap<>();
+        for (Future<Map<String, Samples>> result : results) {
+            for (Map.Entry<String, Samples> entry : result.get().entrySet()) {
+                samplesByType.computeIfAbsent(entry.getKey(), type -> new Samples()).addAll(entry.getValue());
+            }
+        }
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.MINUTES);
+
+        return report(samplesByType, properties.getDuration().toNanos() / 1e9);
+    }
+
+
+    private Map<String, Samples> sendRequests(Random random, List<String> types, int[] weights, long measureFrom, long end) {
+        int totalWeight = Arrays.stream(weights).sum();
+        Map<String, Samples> samplesByType = new HashMap<>();
+        while (System.nanoTime() < end) {
+            int pick = random.nextInt(totalWeight);
+            int index = 0;
+            while (pick >= weights[index]) {
+                pick -= weights[index++];
+            }
+            String type = types.get(index);
+            HttpRequest request = request(type, random);
+
+            long sent = System.nanoTime();
+            boolean failed;
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                failed = response.statusCode() >= 400;
+            }
+            catch (IOException ex) {
+                failed = true;
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long received = System.nanoTime();
+            if (sent >= measureFrom && received <= end) {
+                samplesByType.computeIfAbsent(type, key -> new Samples()).add(received - sent, failed);
+            }
+        }
+        return samplesByType;
+    }
+
+
+    private HttpRequest request(String type, Random random) {
+        switch (type) {
+            case "browse":
+                return get("/api/movies?limit=50&after=" + movieIds.get(random.nextInt(movieIds.size())));
+            case "search":
+                return get("/api/movies?title=" + LoadTestDataSeeder.WORDS[random.nextInt(LoadTestDataSeeder.WORDS.length)]);
+            case "invoice":
+                return get("/api/invoicecalculation?" + checkout(random));
+            case "rent":
+                long userId = 1 + random.nextInt(properties.getUsers() * 2);
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/api/rentmovies?" + checkout(random) + "&userId=" + userId))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build();
+            case "popular":
+                return get("/api/rented/popular?limit=10");
+            default:
+                throw new IllegalArgumentException("Unknown request type in loadtest.mix: " + type);
+        }
+    }
+
+
+    //1 to 5 different movies with 1 to 8 weeks each
+    private String checkout(Random random) {
+        Set<Long> ids = new LinkedHashSet<>();
+        int size = Math.min(1 + random.nextInt(5), movieIds.size());
+        while (ids.size() < size) {
+            ids.add(movieIds.get(random.nextInt(movieIds.size())));
+        }
+        StringJoiner movieIDs = new StringJoiner(",");
+        StringJoiner timesInWeeks = new StringJoiner(",");
+        for (Long id : ids) {
+            movieIDs.add(id.toString());
+            timesInWeeks.add(Integer.toString(1 + random.nextInt(8)));
+        }
+        return "movieIDs=" + movieIDs + "&timesInWeeks=" + timesInWeeks;
+    }
+
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+
+    private boolean report(Map<String, Samples> samplesByType, double seconds) {
+        List<String> failures = new ArrayList<>();
+        long totalCount = 0;
+        long totalErrors = 0;
+
+        System.out.printf("%n%-10s %10s %10s %9s %9s %9s %9s %9s %8s%n",
+                "request", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms", "errors");
+        for (Map.Entry<String, Samples> entry : samplesByType.entrySet()) {
+            Samples samples = entry.getValue();
+            long[] latencies = samples.sortedLatencies();
+            double[] percentiles = new double[PERCENTILES.length];
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                percentiles[i] = percentile(latencies, PERCENTILES[i]) / 1e6;
+            }
+            System.out.printf("%-10s %10d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %8d%n",
+                    entry.getKey(), latencies.length, latencies.length / seconds,
+                    percentiles[0], percentiles[1], percentiles[2], percentiles[3],
+                    latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6, samples.errors);
+            totalCount += latencies.length;
+            totalErrors += samples.errors;
+
+            Duration maxP99 = properties.getMaxP99().get(entry.getKey());
+            if (maxP99 != null && percentiles[2] > maxP99.toNanos() / 1e6) {
+                failures.add(String.format("p99 of %s is %.2f ms, the limit is %d ms", entry.getKey(), percentiles[2], maxP99.toMillis()));
+            }
+        }
+        double throughput = totalCount / seconds;
+        double errorRate = totalCount == 0 ? 1 : (double) totalErrors / totalCount;
+        System.out.printf("%-10s %10d %10.1f %57d%n%n", "total", totalCount, throughput, totalErrors);
+
+        if (errorRate > properties.getMaxErrorRate()) {
+            failures.add(String.format("error rate is %.4f, the limit is %.4f", errorRate, properties.getMaxErrorRate()));
+        }
+        if (throughput < properties.getMinThroughput()) {
+            failures.add(String.format("throughput is %.1f req/s, the limit is %.1f req/s", throughput, properties.getMinThroughput()));
+        }
+        for (String failure : failures) {
+            System.out.println("FAILED: " + failure);
+        }
+        if (failures.isEmpty()) {
+            System.out.println("PASSED");
+        }
+        return failures.isEmpty();
+    }
+
+
+    //nearest-rank percentile of sorted latencies
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+
+    //latencies of one request type of one client, merged after the run
+    private static final class Samples {
+        private long[] latencies = new long[1024];
+
+        private int size;
+
+        private long errors;
+
+        private void add(long latency, boolean failed) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latency;
+            if (failed) {
+                errors++;
+            }
+        }
+
+        private void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.latencies[i], false);
+            }
+            errors += other.errors;
+        }
+
+        private long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.movie.store.loadtest;
+
+import com.movie.store.dto.Category;
+import com.movie.store.dto.Movie;
+import com.movie.store.dto.RentedMovie;
+import com.movie.store.repository.CategoryRepository;
+import com.movie.store.repository.MovieRepository;
+import com.movie.store.repository.RentedMovieRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * This class fills the embedded database with movies and rentals before the application is ready.
+ *
+ * It runs after the sample data of MovieConfig, so the in-memory indexes that are loaded when the application is ready
+ * already contain the seeded data. The data only depends on the loadtest properties and the seed.
+ */
+@Component
+@Profile("loadtest")
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class LoadTestDataSeeder implements CommandLineRunner {
+
+    //words of the seeded titles, search requests look for them
+    static final String[] WORDS = {
+            "Star", "Wars", "Galaxy", "Guardians", "Lord", "Rings", "Pirates", "Caribbean", "Robot", "Return",
+            "Night", "Dark", "Knight", "Empire", "Strikes", "Back", "Black", "Pearl", "Fellowship", "King",
+            "Matrix", "Reloaded", "Jurassic", "Park", "World", "Lost", "City", "Dead", "Man", "Chest"
+    };
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final LoadTestProperties properties;
+
+    private final MovieRepository movieRepository;
+
+    private final CategoryRepository categoryRepository;
+
+    private final RentedMovieRepository rentedMovieRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public LoadTestDataSeeder(LoadTestProperties properties,
+                              MovieRepository movieRepository,
+                              CategoryRepository categoryRepository,
+                              RentedMovieRepository rentedMovieRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.movieRepository = movieRepository;
+        this.categoryRepository = categoryRepository;
+        this.rentedMovieRepository = rentedMovieRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(String... args) {
+        Random random = new Random(properties.getSeed());
+        List<Category> categories = categoryRepository.findAll();
+        LocalDate today = LocalDate.now();
+
+        for (int start = 0; start < properties.getMovies(); start += CHUNK_SIZE) {
+            List<Movie> movies = new ArrayList<>(CHUNK_SIZE);
+            for (int i = start; i < Math.min(start + CHUNK_SIZE, properties.getMovies()); i++) {
+                String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                        + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+                Set<Category> movieCategories = new HashSet<>();
+                for (int c = 1 + random.nextInt(3); c > 0; c--) {
+                    movieCategories.add(categories.get(random.nextInt(categories.size())));
+                }
+                movies.add(new Movie(title, today.minusWeeks(random.nextInt(520)), "Seeded actors",
+                        "Seeded movie number " + i, movieCategories));
+            }
+            transactionTemplate.executeWithoutResult(status -> movieRepository.saveAll(movies));
+        }
+
+        List<Long> movieIds = movieRepository.findMovieIdsAfter(0L, PageRequest.of(0, Integer.MAX_VALUE));
+        int usersPerChunk = Math.max(1, CHUNK_SIZE / Math.max(1, properties.getRentalsPerUser()));
+        for (int firstUser = 1; firstUser <= properties.getUsers(); firstUser += usersPerChunk) {
+            int lastUser = Math.min(properties.getUsers(), firstUser + usersPerChunk - 1);
+            //user ID, movie ID, days since the start, weeks
+            List<Long[]> rentals = new ArrayList<>();
+            for (long userId = firstUser; userId <= lastUser; userId++) {
+                Set<Long> rented = new HashSet<>();
+                while (rented.size() < Math.min(properties.getRentalsPerUser(), movieIds.size())) {
+                    rented.add(movieIds.get(random.nextInt(movieIds.size())));
+                }
+                for (Long movieId : rented) {
+                    rentals.add(new Long[]{userId, movieId, (long) random.nextInt(200), 1L + random.nextInt(4)});
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                List<RentedMovie> rentedMovies = new ArrayList<>(rentals.size());
+                for (Long[] rental : rentals) {
+                    LocalDate startDate = today.minusDays(rental[2]);
+                    LocalDate endDate = startDate.plusWeeks(rental[3]);
+                    RentedMovie rentedMovie = new RentedMovie(rental[0], startDate, endDate,
+                            BigDecimal.valueOf(rental[3] * 3), movieRepository.getById(rental[1]));
+                    if (endDate.isBefore(today)) {
+                        rentedMovie.setActiveMovieId(null);
+                    }
+                    rentedMovies.add(rentedMovie);
+                }
+                rentedMovieRepository.saveAll(rentedMovies);
+            });
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.movie.store.loadtest;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class holds settings of the load test from application-loadtest.properties (prefix "loadtest").
+ */
+@Getter
+@Setter
+@Component
+@Profile("loadtest")
+@ConfigurationProperties(prefix = "loadtest")
+public class LoadTestProperties {
+
+    //amount of seeded movies
+    private int movies = 10000;
+
+    //amount of seeded users with a rental history, rent requests use twice as many users
+    private int users = 2000;
+
+    private int rentalsPerUser = 10;
+
+    //seed of the seeded data and of the traffic, the same seed gives the same data and the same request sequence
+    private long seed = 42;
+
+    //amount of client threads, every thread sends requests back to back
+    private int clients = 16;
+
+    private Duration warmup = Duration.ofSeconds(10);
+
+    private Duration duration = Duration.ofSeconds(30);
+
+    //relative weights of the request types (browse, search, invoice, rent, popular)
+    private Map<String, Integer> mix = new LinkedHashMap<>();
+
+    //maximum p99 latency per request type, request types without a limit are only reported
+    private Map<String, Duration> maxP99 = new LinkedHashMap<>();
+
+    //maximum share of failed requests (HTTP status 400 or higher, or no response)
+    private double maxErrorRate = 0.01;
+
+    //minimum requests per second of all request types together, 0 disables the check
+    private double minThroughput = 0;
+}
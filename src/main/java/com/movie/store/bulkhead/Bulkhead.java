@@ -0,0 +1,112 @@
+package com.movie.store.bulkhead;
+
+import com.movie.store.dto.BulkheadStatistics;
+import com.movie.store.exception.CommonException;
+import com.movie.store.metrics.QueryCounter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class is a bounded pool of threads for one group of endpoints.
+ *
+ * Requests of the group run on its own threads and wait in its own queue, so a slow group can only
+ * fill its own pool and does not delay other groups. When the queue is full the request is rejected right away
+ * with 503 Service Unavailable instead of waiting.
+ */
+public class Bulkhead {
+
+    public static final String MOVIES = "movies";
+
+    public static final String CATEGORIES = "categories";
+
+    public static final String RENTALS = "rentals";
+
+    public static final String REPORTS = "reports";
+
+    private final String name;
+
+    private final int queueCapacity;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+
+    public Bulkhead(String name, BulkheadProperties.Pool pool) {
+        this.name = name;
+        this.queueCapacity = pool.getQueueCapacity();
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(name + "-");
+        executor.setCorePoolSize(pool.getThreads());
+        executor.setMaxPoolSize(pool.getThreads());
+        executor.setQueueCapacity(pool.getQueueCapacity());
+        //statements of the task are counted for the request that submitted it
+        executor.setTaskDecorator(QueryCounter::propagate);
+        executor.setRejectedExecutionHandler((task, threadPoolExecutor) -> {
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("Bulkhead " + name + " is full");
+        });
+        executor.initialize();
+    }
+
+
+    /**
+     * This method runs a task on the threads of this bulkhead.
+     * @param task is the work of the request (required).
+     * @return result of the task, the exception message if the task has thrown CommonException,
+     * or 503 Service Unavailable if the bulkhead is full.
+     */
+    public CompletableFuture<Object> submit(BulkheadTask task) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.call();
+                }
+                catch (CommonException ex) {
+                    return ex.getMessage();
+                }
+            }, executor);
+        }
+        catch (RejectedExecutionException ex) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Too many " + name + " requests, please try again later"));
+        }
+    }
+
+
+    /**
+     * @return the executor of this bulkhead, for work that is not started with submit (streamed responses).
+     */
+    public ThreadPoolTaskExecutor getExecutor() {
+        return executor;
+    }
+
+
+    /**
+     * @return current threads, queue depth and amount of completed and rejected tasks.
+     */
+    public BulkheadStatistics getStatistics() {
+        ThreadPoolExecutor threadPoolExecutor = executor.getThreadPoolExecutor();
+        BulkheadStatistics statistics = new BulkheadStatistics();
+        statistics.setName(name);
+        statistics.setActiveThreads(threadPoolExecutor.getActiveCount());
+        statistics.setMaxThreads(threadPoolExecutor.getMaximumPoolSize());
+        statistics.setQueueDepth(threadPoolExecutor.getQueue().size());
+        statistics.setQueueCapacity(queueCapacity);
+        statistics.setCompletedTasks(threadPoolExecutor.getCompletedTaskCount());
+        statistics.setRejectedTasks(rejectedCount.get());
+        return statistics;
+    }
+
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
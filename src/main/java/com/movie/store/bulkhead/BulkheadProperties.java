@@ -0,0 +1,44 @@
+package com.movie.store.bulkhead;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class holds sizes of the bulkheads from application.properties (prefix "bulkhead"), one pool per endpoint group.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bulkhead")
+public class BulkheadProperties {
+
+    private Map<String, Pool> pools = new LinkedHashMap<>(Map.of(
+            Bulkhead.MOVIES, new Pool(8, 200),
+            Bulkhead.CATEGORIES, new Pool(4, 100),
+            Bulkhead.RENTALS, new Pool(8, 200),
+            Bulkhead.REPORTS, new Pool(2, 20)
+    ));
+
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Pool {
+        //requests of the group that run at the same time, every running request may hold a database connection
+        private int threads;
+
+        //requests of the group that wait for a thread, further requests are rejected
+        private int queueCapacity;
+
+        public Pool(int threads, int queueCapacity) {
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.movie.store.bulkhead;
+
+import com.movie.store.exception.CommonException;
+
+/**
+ * Work of one request that runs on a bulkhead, usually one call of the service layer.
+ */
+@FunctionalInterface
+public interface BulkheadTask {
+    Object call() throws CommonException;
+}
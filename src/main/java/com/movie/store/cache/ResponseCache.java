@@ -0,0 +1,233 @@
+package com.movie.store.cache;
+
+import com.movie.store.bulkhead.Bulkhead;
+import com.movie.store.bulkhead.BulkheadTask;
+import com.movie.store.dto.CacheStatistics;
+import com.movie.store.encoding.ContentCoding;
+import com.movie.store.encoding.Representation;
+import com.movie.store.encoding.ResponseEncoder;
+import com.movie.store.event.CategoryChangedEvent;
+import com.movie.store.event.MovieChangedEvent;
+import com.movie.store.event.MoviesChangedEvent;
+import com.movie.store.pricing.PricingEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * This class keeps serialized responses of catalog endpoints (movies and categories).
+ *
+ * A response is serialized once per format (JSON as UTF-8 bytes, Smile or CBOR) and sent as it is
+ * until the catalog version changes. A compressed copy is made on the first request that accepts the compression.
+ * The version grows with every committed movie or category change, responses of an older version are never sent.
+ * Prices of movies depend on today's date, so a response is also dropped when the pricing day changes.
+ * The ETag is the MD5 of the serialized bytes with the compression as suffix, a request whose If-None-Match contains it gets 304 Not Modified
+ * on the request thread, without the bulkhead, the database or the serializer.
+ */
+@Component
+public class ResponseCache {
+
+    private final ResponseEncoder responseEncoder;
+
+    private final PricingEngine pricingEngine;
+
+    private final ResponseCacheProperties properties;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong putCount = new AtomicLong();
+
+
+    @Autowired
+    public ResponseCache(ResponseEncoder responseEncoder, PricingEngine pricingEngine, ResponseCacheProperties properties) {
+        this.responseEncoder = responseEncoder;
+        this.pricingEngine = pricingEngine;
+        this.properties = properties;
+    }
+
+
+    /**
+     * This method answers a request from the cache, or runs the task on a bulkhead and caches its result.
+     * Results of a task that has thrown CommonException are not cached.
+     * The format and the compression are negotiated with ResponseEncoder.
+     * @param key identifies the resource, path and all request parameters that change the response (required).
+     * @param request is the current request, used for If-None-Match (required).
+     * @param bulkhead runs the task if the response is not cached (required).
+     * @param task loads the response (required).
+     * @return the serialized response with its ETag, 304 Not Modified if the client has the current response,
+     * or the result of the bulkhead if the task has thrown CommonException or the bulkhead is full.
+     */
+    public CompletableFuture<Object> respond(String key, WebRequest request, Bulkhead bulkhead, BulkheadTask task) {
+        //headers are read on the request thread, the task may run after the request thread has returned
+        Representation representation = responseEncoder.negotiate(request);
+        if (!properties.isEnabled()) {
+            return bulkhead.submit(() -> responseEncoder.encode(task.call(), representation));
+        }
+        String[] ifNoneMatch = request.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+        String formatKey = key + " " + representation.getFormat();
+        long currentVersion = version.get();
+        long pricingDay = pricingEngine.today();
+        Entry entry = entries.get(formatKey);
+        if (entry != null && entry.version == currentVersion && entry.pricingDay == pricingDay) {
+            hitCount.incrementAndGet();
+            return CompletableFuture.completedFuture(response(entry, representation, ifNoneMatch));
+        }
+
+        missCount.incrementAndGet();
+        return bulkhead.submit(() -> {
+            MediaType format = representation.getFormat();
+            Entry loaded = new Entry(currentVersion, pricingDay, format, responseEncoder.serialize(task.call(), format));
+            //a response loaded while the catalog changed is sent once but not kept
+            if (currentVersion == version.get()
+                    && (entries.size() < properties.getMaxEntries() || entries.containsKey(formatKey))) {
+                entries.put(formatKey, loaded);
+                putCount.incrementAndGet();
+            }
+            return response(loaded, representation, ifNoneMatch);
+        });
+    }
+
+
+    /**
+     * @return hit, miss and put counts and the amount of cached responses, in the same form as cache regions.
+     */
+    public CacheStatistics getStatistics() {
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.setRegion("responses");
+        statistics.setHitCount(hitCount.get());
+        statistics.setMissCount(missCount.get());
+        statistics.setPutCount(putCount.get());
+        statistics.setElementCountInMemory((long) entries.size());
+        return statistics;
+    }
+
+
+    /**
+     * This method drops cached responses after a movie change.
+     * It runs after the completion of the transaction, when the in-memory indexes have applied the change.
+     * @param event describes the changed movie.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onMovieChanged(MovieChangedEvent event) {
+        invalidate();
+    }
+
+
+    /**
+     * This method drops cached responses once after a batch of movie changes.
+     * @param event describes the changed movies.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onMoviesChanged(MoviesChangedEvent event) {
+        invalidate();
+    }
+
+
+    /**
+     * This method drops cached responses after a category change.
+     * It runs after the completion of the transaction, when the category catalog has applied the change.
+     * @param event describes the changed category.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        invalidate();
+    }
+
+
+    private void invalidate() {
+        version.incrementAndGet();
+        //an entry of the old version put after this is never sent and is replaced by the next miss
+        entries.clear();
+    }
+
+
+    private ResponseEntity<byte[]> response(Entry entry, Representation representation, String[] ifNoneMatch) {
+        ContentCoding coding = responseEncoder.codingFor(representation, entry.body.length);
+        String eTag = entry.eTag(coding);
+        if (matches(ifNoneMatch, eTag)) {
+            return responseEncoder.notModified(eTag);
+        }
+        return responseEncoder.response(entry.encodedBody(coding), entry.format, coding, eTag);
+    }
+
+
+    //If-None-Match is a list of ETags or "*", a weak ETag of the same value matches too
+    static boolean matches(String[] ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String header : ifNoneMatch) {
+            for (String value : header.split(",")) {
+                String candidate = value.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(eTag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    private static final class Entry {
+        private final long version;
+
+        private final long pricingDay;
+
+        private final MediaType format;
+
+        private final byte[] body;
+
+        private final String digest;
+
+        //compressed copies by ContentCoding ordinal, made on the first request that accepts the compression
+        private final AtomicReferenceArray<byte[]> encodedBodies = new AtomicReferenceArray<>(ContentCoding.values().length);
+
+        private Entry(long version, long pricingDay, MediaType format, byte[] body) {
+            this.version = version;
+            this.pricingDay = pricingDay;
+            this.format = format;
+            this.body = body;
+            this.digest = DigestUtils.md5DigestAsHex(body);
+        }
+
+        //every compression is a different representation, so it has its own strong ETag
+        private String eTag(ContentCoding coding) {
+            return coding == ContentCoding.IDENTITY ? "\"" + digest + "\"" : "\"" + digest + "-" + coding.getName() + "\"";
+        }
+
+        private byte[] encodedBody(ContentCoding coding) {
+            if (coding == ContentCoding.IDENTITY) {
+                return body;
+            }
+            byte[] encodedBody = encodedBodies.get(coding.ordinal());
+            if (encodedBody == null) {
+                //two requests may compress at the same time, both results are equal
+                encodedBody = coding.encode(body);
+                encodedBodies.set(coding.ordinal(), encodedBody);
+            }
+            return encodedBody;
+        }
+    }
+}
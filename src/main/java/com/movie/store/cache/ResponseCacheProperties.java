@@ -0,0 +1,22 @@
+package com.movie.store.cache;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * This class holds settings of the catalog response cache from application.properties (prefix "response-cache").
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "response-cache")
+public class ResponseCacheProperties {
+
+    //if false every catalog request is loaded and serialized again
+    private boolean enabled = true;
+
+    //maximum amount of cached responses, further responses are not cached until the catalog changes
+    private int maxEntries = 10000;
+}
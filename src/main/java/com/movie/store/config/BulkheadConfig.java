@@ -0,0 +1,72 @@
+package com.movie.store.config;
+
+import com.movie.store.bulkhead.Bulkhead;
+import com.movie.store.bulkhead.BulkheadProperties;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * This class is for configuration
+ *
+ * It creates one bulkhead (bounded thread pool) per endpoint group, controllers run their work on them
+ * and the servlet container threads only accept requests and write responses.
+ * Streamed responses (rental export) run on the reports bulkhead.
+ */
+@Configuration
+public class BulkheadConfig implements WebMvcConfigurer {
+
+    private final BulkheadProperties bulkheadProperties;
+
+    private final Bulkhead reportsBulkhead;
+
+    public BulkheadConfig(BulkheadProperties bulkheadProperties) {
+        this.bulkheadProperties = bulkheadProperties;
+        this.reportsBulkhead = bulkhead(Bulkhead.REPORTS);
+    }
+
+
+    @Bean(destroyMethod = "shutdown")
+    @Qualifier(Bulkhead.MOVIES)
+    Bulkhead moviesBulkhead() {
+        return bulkhead(Bulkhead.MOVIES);
+    }
+
+
+    @Bean(destroyMethod = "shutdown")
+    @Qualifier(Bulkhead.CATEGORIES)
+    Bulkhead categoriesBulkhead() {
+        return bulkhead(Bulkhead.CATEGORIES);
+    }
+
+
+    @Bean(destroyMethod = "shutdown")
+    @Qualifier(Bulkhead.RENTALS)
+    Bulkhead rentalsBulkhead() {
+        return bulkhead(Bulkhead.RENTALS);
+    }
+
+
+    @Bean(destroyMethod = "shutdown")
+    @Qualifier(Bulkhead.REPORTS)
+    Bulkhead reportsBulkhead() {
+        return reportsBulkhead;
+    }
+
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(reportsBulkhead.getExecutor());
+    }
+
+
+    private Bulkhead bulkhead(String name) {
+        BulkheadProperties.Pool pool = bulkheadProperties.getPools().get(name);
+        if (pool == null) {
+            throw new IllegalStateException("bulkhead.pools." + name + " is not configured");
+        }
+        return new Bulkhead(name, pool);
+    }
+}
@@ -0,0 +1,49 @@
+package com.movie.store.config;
+
+import com.movie.store.metrics.EndpointMetrics;
+import com.movie.store.metrics.EndpointMetricsInterceptor;
+import com.movie.store.metrics.QueryCountingDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+
+/**
+ * This class is for configuration
+ *
+ * It measures latency, JDBC statements and fetched rows of every controller method.
+ * The data source is wrapped, so statements and rows are counted for the request that runs them.
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final EndpointMetrics endpointMetrics;
+
+    public MetricsConfig(EndpointMetrics endpointMetrics) {
+        this.endpointMetrics = endpointMetrics;
+    }
+
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new EndpointMetricsInterceptor(endpointMetrics));
+    }
+
+
+    //static, so the data source is wrapped before this configuration and its dependencies are created
+    @Bean
+    static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof QueryCountingDataSource)) {
+                    return new QueryCountingDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+}
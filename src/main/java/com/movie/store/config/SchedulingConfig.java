@@ -0,0 +1,14 @@
+package com.movie.store.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * This class is for configuration
+ *
+ * It enables scheduled jobs (the expiry scheduler of active rentals)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
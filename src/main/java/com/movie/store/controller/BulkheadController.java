@@ -0,0 +1,44 @@
+package com.movie.store.controller;
+
+
+import com.movie.store.bulkhead.Bulkhead;
+import com.movie.store.dto.BulkheadStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * This class is rest controller for the bulkheads (thread pools of the endpoint groups).
+ */
+@RestController
+@RequestMapping(value = "api", produces = MediaType.APPLICATION_JSON_VALUE)
+public class BulkheadController {
+
+    private final List<Bulkhead> bulkheads;
+
+    @Autowired
+    public BulkheadController(List<Bulkhead> bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+
+    /**
+     * This method returns busy threads, queue depth and amount of completed and rejected requests of every bulkhead.
+     * It runs on the request thread, so it answers also when all bulkheads are full.
+     * @return statistics of the bulkheads.
+     */
+    @GetMapping("bulkheads")
+    public Object getBulkheadStatistics(){
+        List<BulkheadStatistics> statisticsList = new ArrayList<>();
+        for (Bulkhead bulkhead : bulkheads) {
+            statisticsList.add(bulkhead.getStatistics());
+        }
+        return statisticsList;
+    }
+}
@@ -0,0 +1,35 @@
+package com.movie.store.controller;
+
+
+import com.movie.store.service.CacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+
+/**
+ * This class is rest controller for the second-level cache.
+ */
+@RestController
+@RequestMapping(value = "api", produces = MediaType.APPLICATION_JSON_VALUE)
+public class CacheController {
+
+    private final CacheService cacheService;
+
+    @Autowired
+    public CacheController(CacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
+
+    /**
+     * This method returns hit, miss and put counts and sizes of the second-level cache regions.
+     * @return statistics of the cache regions, the first row sums all regions.
+     */
+    @GetMapping("cachestatistics")
+    public Object getCacheStatistics(){
+        return cacheService.getCacheStatistics();
+    }
+}
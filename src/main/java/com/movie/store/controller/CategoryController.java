@@ -1,16 +1,24 @@
 package com.movie.store.controller;
 
 
+import com.movie.store.bulkhead.Bulkhead;
+import com.movie.store.cache.ResponseCache;
 import com.movie.store.dto.Category;
-import com.movie.store.exception.CommonException;
 import com.movie.store.service.CategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.CompletableFuture;
 
 
 /**
  * This class is Rest Controller for categories
+ *
+ * Requests run on the categories bulkhead. Responses of the list of categories and of movies of a category
+ * are kept serialized in the response cache until the catalog changes.
  */
 @RestController
 @RequestMapping(value = "api", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -18,40 +26,43 @@ public class CategoryController {
 
     private final CategoryService categoryService;
 
+    private final Bulkhead categoriesBulkhead;
+
+    private final ResponseCache responseCache;
+
     @Autowired
-    public CategoryController(CategoryService categoryService) {
+    public CategoryController(CategoryService categoryService,
+                              @Qualifier(Bulkhead.CATEGORIES) Bulkhead categoriesBulkhead,
+                              ResponseCache responseCache) {
         this.categoryService = categoryService;
+        this.categoriesBulkhead = categoriesBulkhead;
+        this.responseCache = responseCache;
     }
 
     /**
      * This method returns all categories from the database.
+     * The response has an ETag, a request with the same ETag in If-None-Match gets 304 Not Modified.
+     * @param request is the current request, used for the conditional request headers.
      * @return a list of categories in ascending order (ordered by category ID).
      * If the exception was caught, method returns exception message from service layer.
      */
     @GetMapping("categories")
-    public Object getCategories(){
-        try {
-            return categoryService.getCategories();
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+    public CompletableFuture<Object> getCategories(WebRequest request){
+        return responseCache.respond("categories", request, categoriesBulkhead, categoryService::getCategories);
     }
 
     /**
      * This method returns list of movies assigned to a specified category by category ID.
+     * The response has an ETag, a request with the same ETag in If-None-Match gets 304 Not Modified.
      * @param categoryId is a category ID(required).
+     * @param request is the current request, used for the conditional request headers.
      * @return List of movies assigned to a specified category.
      * If the exception was caught, method returns exception message from service layer.
      */
     @GetMapping("categories/{categoryId}/movies")
-    public Object getMoviesByCategoryId(@PathVariable("categoryId") Long categoryId){
-        try {
-            return categoryService.getMoviesByCategoryId(categoryId);
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+    public CompletableFuture<Object> getMoviesByCategoryId(@PathVariable("categoryId") Long categoryId, WebRequest request){
+        return responseCache.respond("categories/" + categoryId + "/movies", request, categoriesBulkhead,
+                () -> categoryService.getMoviesByCategoryId(categoryId));
     }
 
 
@@ -62,14 +73,11 @@ public class CategoryController {
      * If the exception was caught, method returns exception message from service layer.
      */
     @PostMapping("addcategory")
-    public String addCategory(@RequestBody Category category){
-        try {
+    public CompletableFuture<Object> addCategory(@RequestBody Category category){
+        return categoriesBulkhead.submit(() -> {
             categoryService.addCategory(category);
             return "New category was added to the database";
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+        });
     }
 
 
@@ -80,14 +88,11 @@ public class CategoryController {
      * If the exception was caught, method returns exception message from service layer.
      */
     @DeleteMapping("deletecategory/{categoryId}")
-    public String deleteCategory(@PathVariable("categoryId") Long categoryId){
-        try {
+    public CompletableFuture<Object> deleteCategory(@PathVariable("categoryId") Long categoryId){
+        return categoriesBulkhead.submit(() -> {
             categoryService.deleteCategory(categoryId);
             return "Category with ID: " + categoryId + " was deleted from the database";
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+        });
     }
 
 
@@ -99,16 +104,13 @@ public class CategoryController {
      * If the exception was caught, method returns exception message from service layer.
      */
     @PutMapping(path = "managecategory/{categoryId}")
-    public String manageCategory(
+    public CompletableFuture<Object> manageCategory(
             @PathVariable("categoryId") Long categoryId,
             @RequestParam String categoryName){
-        try {
+        return categoriesBulkhead.submit(() -> {
             categoryService.manageCategory(categoryId, categoryName);
             return "Category with ID: " + categoryId + " was changed in the database";
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+        });
     }
 
 
@@ -121,15 +123,12 @@ public class CategoryController {
      * If the exception was caught, method returns exception message from service layer.
      */
     @PostMapping("/addcategory/{categoryId}/tomovie/{movieId}")
-    public String addCategoryToMovie(
+    public CompletableFuture<Object> addCategoryToMovie(
             @PathVariable("categoryId") Long categoryId,
-            @PathVariable("movieId") Long movieId) {
-        try {
+            @PathVariable("movieId") Long movieId){
+        return categoriesBulkhead.submit(() -> {
             categoryService.addCategoryToMovie(categoryId, movieId);
             return "Category with ID: " + categoryId + " was added to movie with ID " + movieId;
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+        });
     }
 }
@@ -0,0 +1,37 @@
+package com.movie.store.controller;
+
+
+import com.movie.store.metrics.EndpointMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+
+/**
+ * This class is rest controller for the latency and SQL metrics of the endpoints.
+ */
+@RestController
+@RequestMapping(value = "api", produces = MediaType.APPLICATION_JSON_VALUE)
+public class MetricsController {
+
+    private final EndpointMetrics endpointMetrics;
+
+    @Autowired
+    public MetricsController(EndpointMetrics endpointMetrics) {
+        this.endpointMetrics = endpointMetrics;
+    }
+
+
+    /**
+     * This method returns latency percentiles (p50, p99, p999) and JDBC statements and fetched rows per request
+     * of every controller method. A growing amount of statements per request points to an N+1 query.
+     * It runs on the request thread, so it answers also when all bulkheads are full.
+     * @return statistics of the endpoints ordered by endpoint.
+     */
+    @GetMapping("endpointstatistics")
+    public Object getEndpointStatistics(){
+        return endpointMetrics.getStatistics();
+    }
+}
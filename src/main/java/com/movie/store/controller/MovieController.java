@@ -1,18 +1,31 @@
 package com.movie.store.controller;
 
 
+import com.movie.store.bulkhead.Bulkhead;
+import com.movie.store.cache.ResponseCache;
 import com.movie.store.dto.Movie;
-import com.movie.store.exception.CommonException;
+import com.movie.store.encoding.ResponseEncoder;
+import com.movie.store.service.AutocompleteService;
+import com.movie.store.service.MovieImportService;
 import com.movie.store.service.MovieService;
+import com.movie.store.service.RecommendationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.InputStream;
 import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This class is rest controller for movies.
+ *
+ * Requests run on the movies bulkhead, the movie import runs on the reports bulkhead.
+ * Responses of the movie list and of single movies are kept serialized in the response cache until the catalog changes.
  */
 @RestController
 @RequestMapping(value="api", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -20,44 +33,90 @@ public class MovieController {
 
     private final MovieService movieService;
 
+    private final MovieImportService movieImportService;
+
+    private final RecommendationService recommendationService;
+
+    private final AutocompleteService autocompleteService;
+
+    private final Bulkhead moviesBulkhead;
+
+    private final Bulkhead reportsBulkhead;
+
+    private final ResponseCache responseCache;
+
     @Autowired
-    public MovieController(MovieService movieService) {
+    public MovieController(MovieService movieService,
+                           MovieImportService movieImportService,
+                           RecommendationService recommendationService,
+                           AutocompleteService autocompleteService,
+                           @Qualifier(Bulkhead.MOVIES) Bulkhead moviesBulkhead,
+                           @Qualifier(Bulkhead.REPORTS) Bulkhead reportsBulkhead,
+                           ResponseCache responseCache) {
         this.movieService = movieService;
+        this.movieImportService = movieImportService;
+        this.recommendationService = recommendationService;
+        this.autocompleteService = autocompleteService;
+        this.moviesBulkhead = moviesBulkhead;
+        this.reportsBulkhead = reportsBulkhead;
+        this.responseCache = responseCache;
     }
 
 
     /**
-     * This method returns a movie with a specified title. If a title is not specified it will return all movies.
+     * This method returns a page of movies with a specified title. If a title is not specified it will return a page of all movies.
      * @param title specifies the title of the movie customer wants to find (works with a part of a title).
-     * @return all movies or movies with specified title if title is specified.
+     * @param after nextCursor of the previous page. If not specified the first page is returned.
+     * @param limit maximum amount of movies on the page.
+     * @param request is the current request, used for the conditional request headers.
+     * @return a page of movies (ranked by how well the title matches if title is specified) with the cursor of the next page.
+     * The response has an ETag, a request with the same ETag in If-None-Match gets 304 Not Modified.
+     * The response is JSON, Smile or CBOR by the Accept header and compressed with zstd or gzip by Accept-Encoding.
      * If the exception was caught, method returns exception message from service layer.
      */
 
-    @GetMapping("movies")
-    public Object getMovies(@RequestParam(required = false) String title){
-        try {
-            return movieService.getMovies(title);
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+    @GetMapping(value = "movies", produces = {MediaType.APPLICATION_JSON_VALUE,
+            ResponseEncoder.APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public CompletableFuture<Object> getMovies(@RequestParam(required = false) String title,
+                            @RequestParam(required = false) Long after,
+                            @RequestParam(required = false) Integer limit,
+                            WebRequest request){
+        String key = "movies?title=" + title + "&after=" + after + "&limit=" + limit;
+        return responseCache.respond(key, request, moviesBulkhead, () -> {
+            if (title == null){
+                return movieService.getMoviePage(after, limit);
+            }
+            return movieService.getMovies(title, after, limit);
+        });
+    }
 
+    /**
+     * This method returns movies matching a boolean category expression, for example "Action AND Sci-fi NOT Comedy".
+     * Operators are AND, OR, NOT and parentheses, NOT between two categories means AND NOT.
+     * @param expression is a category expression (required).
+     * @param after movie ID after which the page starts (nextCursor of the previous page).
+     * @param limit maximum amount of movies on the page.
+     * @return a page of matching movies ordered by movie ID with the cursor of the next page.
+     * If the exception was caught, method returns exception message from service layer.
+     */
+    @GetMapping("movies/bycategories")
+    public CompletableFuture<Object> getMoviesByCategories(@RequestParam String expression,
+                                        @RequestParam(required = false) Long after,
+                                        @RequestParam(required = false) Integer limit){
+        return moviesBulkhead.submit(() -> movieService.getMoviePageByCategories(expression, after, limit));
     }
 
     /**
      * This method returns movie available in the library by its ID.
      * @param movieId specifies movie ID (required).
+     * @param request is the current request, used for the conditional request headers.
      * @return movie with a specified ID.
+     * The response has an ETag, a request with the same ETag in If-None-Match gets 304 Not Modified.
      * If the exception was caught, method returns exception message from service layer.
      */
     @GetMapping("movies/{movieId}")
-    public Object getMovieById(@PathVariable("movieId") Long movieId){
-        try{
-            return movieService.getMovieById(movieId);
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+    public CompletableFuture<Object> getMovieById(@PathVariable("movieId") Long movieId, WebRequest request){
+        return responseCache.respond("movies/" + movieId, request, moviesBulkhead, () -> movieService.getMovieById(movieId));
     }
 
     /**
@@ -67,13 +126,34 @@ public class MovieController {
      * If the exception was caught, method returns exception message from service layer.
      */
     @GetMapping("movies/{movieId}/categories")
-    public Object getCategoriesByMovieId(@PathVariable("movieId") Long movieId){
-        try {
-            return movieService.getCategoriesByMovieId(movieId);
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+    public CompletableFuture<Object> getCategoriesByMovieId(@PathVariable("movieId") Long movieId){
+        return moviesBulkhead.submit(() -> movieService.getCategoriesByMovieId(movieId));
+    }
+
+    /**
+     * This method returns the most rented movie titles and actor names starting with a prefix (search box autocomplete).
+     * @param prefix is the text typed so far (required).
+     * @param limit maximum amount of completions, 10 if not specified.
+     * @return completions with the type (title or actor), the movie ID of titles and the amount of purchases.
+     * If the exception was caught, method returns exception message from service layer.
+     */
+    @GetMapping("movies/autocomplete")
+    public CompletableFuture<Object> getCompletions(@RequestParam(required = false) String prefix,
+                                                    @RequestParam(required = false) Integer limit){
+        return moviesBulkhead.submit(() -> autocompleteService.getCompletions(prefix, limit));
+    }
+
+    /**
+     * This method returns movies that were most often rented by the users who rented a movie ("renters of this also rented").
+     * @param movieId specifies movie ID (required).
+     * @param limit maximum amount of movies to return, 10 if not specified.
+     * @return recommended movies with the amount of common renters, the most first.
+     * If the exception was caught, method returns exception message from service layer.
+     */
+    @GetMapping("movies/{movieId}/recommendations")
+    public CompletableFuture<Object> getRecommendations(@PathVariable("movieId") Long movieId,
+                                                        @RequestParam(required = false) Integer limit){
+        return moviesBulkhead.submit(() -> recommendationService.getRecommendations(movieId, limit));
     }
 
     /**
@@ -83,14 +163,29 @@ public class MovieController {
      * If the exception was caught, method returns exception message from service layer.
      */
     @PostMapping("addmovie")
-    public String addMovie(@RequestBody Movie movie){
-        try {
+    public CompletableFuture<Object> addMovie(@RequestBody Movie movie){
+        return moviesBulkhead.submit(() -> {
             movieService.addMovie(movie);
             return "New movie was added to the database";
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+        });
+    }
+
+    /**
+     * This method adds many movies to the database at once.
+     * The request body is streamed, either comma separated records (text/csv) or one JSON movie per line (application/x-ndjson).
+     * @param contentType is the format of the request body.
+     * @param body is the request body with movies (required).
+     * @return amount of accepted and rejected movies with reasons of the first rejections.
+     * If the exception was caught, method returns exception message from service layer.
+     */
+    @PostMapping(value = "importmovies", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public CompletableFuture<Object> importMovies(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body){
+        return reportsBulkhead.submit(() -> {
+            if (MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)){
+                return movieImportService.importNdjson(body);
+            }
+            return movieImportService.importCsv(body);
+        });
     }
 
     /**
@@ -100,15 +195,11 @@ public class MovieController {
      * If the exception was caught, method returns exception message from service layer.
      */
     @DeleteMapping("deletemovie/{movieId}")
-    public String deleteMovie(@PathVariable("movieId") Long movieId){
-        try {
+    public CompletableFuture<Object> deleteMovie(@PathVariable("movieId") Long movieId){
+        return moviesBulkhead.submit(() -> {
             movieService.deleteMovie(movieId);
             return "Movie with ID: "+movieId+" was deleted from the database";
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
-
+        });
     }
 
 
@@ -124,21 +215,16 @@ public class MovieController {
      * If the exception was caught, method returns exception message from service layer.
      */
     @PutMapping(path = "managemovie/{movieId}")
-    public String manageMovie(
+    public CompletableFuture<Object> manageMovie(
             @PathVariable("movieId") Long movieId,
             @RequestParam(required = false) String movieTitle,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releaseDate,
             @RequestParam(required = false) String actors,
-            @RequestParam(required = false) String description) {
-
-        try {
+            @RequestParam(required = false) String description){
+        return moviesBulkhead.submit(() -> {
             movieService.manageMovie(movieId,movieTitle,releaseDate,actors,description);
             return "Movie with ID: "+movieId+" was changed in the database";
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
-
+        });
     }
 
 
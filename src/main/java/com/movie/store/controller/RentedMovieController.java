@@ -1,17 +1,27 @@
 package com.movie.store.controller;
 
 
-import com.movie.store.dto.Statistics;
-import com.movie.store.exception.CommonException;
+import com.movie.store.bulkhead.Bulkhead;
+import com.movie.store.encoding.ResponseEncoder;
+import com.movie.store.service.ActiveRentalService;
+import com.movie.store.service.AsyncRentalService;
+import com.movie.store.service.RentedMovieExportService;
 import com.movie.store.service.RentedMovieService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This class is rest controller for rented movies
+ *
+ * Requests run on the rentals bulkhead, the full rental list and the export run on the reports bulkhead.
  */
 @RestController
 @RequestMapping(value = "api", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -19,26 +29,64 @@ public class RentedMovieController {
 
     private final RentedMovieService rentedMovieService;
 
+    private final RentedMovieExportService rentedMovieExportService;
+
+    private final AsyncRentalService asyncRentalService;
+
+    private final ActiveRentalService activeRentalService;
+
+    private final Bulkhead rentalsBulkhead;
+
+    private final Bulkhead reportsBulkhead;
+
+    private final ResponseEncoder responseEncoder;
+
 
     @Autowired
-    public RentedMovieController(RentedMovieService rentedMovieService) {
+    public RentedMovieController(RentedMovieService rentedMovieService,
+                                 RentedMovieExportService rentedMovieExportService,
+                                 AsyncRentalService asyncRentalService,
+                                 ActiveRentalService activeRentalService,
+                                 @Qualifier(Bulkhead.RENTALS) Bulkhead rentalsBulkhead,
+                                 @Qualifier(Bulkhead.REPORTS) Bulkhead reportsBulkhead,
+                                 ResponseEncoder responseEncoder) {
         this.rentedMovieService = rentedMovieService;
+        this.rentedMovieExportService = rentedMovieExportService;
+        this.asyncRentalService = asyncRentalService;
+        this.activeRentalService = activeRentalService;
+        this.rentalsBulkhead = rentalsBulkhead;
+        this.reportsBulkhead = reportsBulkhead;
+        this.responseEncoder = responseEncoder;
     }
 
 
     /**
      * This method returns all movies that were rented.
-     * @return list of rented movies in ascending order(ordered by user ID).
-     * If the exception was caught, method returns exception message from service layer.
+     * The response is JSON, Smile or CBOR by the Accept header and compressed with zstd or gzip by Accept-Encoding.
+     * Rows are serialized and compressed while they are read from the database, the body is written on the reports bulkhead.
+     * @param request is the current request, used for the Accept and Accept-Encoding headers.
+     * @return response body that writes the list of rented movies in ascending order (ordered by user ID),
+     * an empty list if nothing was rented.
      */
-    @GetMapping("rented")
-    public Object getRentedMovies() {
-        try {
-            return rentedMovieService.getRentedMovies();
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+    @GetMapping(value = "rented", produces = {MediaType.APPLICATION_JSON_VALUE,
+            ResponseEncoder.APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<StreamingResponseBody> getRentedMovies(WebRequest request){
+        return responseEncoder.stream(responseEncoder.negotiate(request), rentedMovieExportService::writeRentedMovies);
+    }
+
+
+    /**
+     * This method streams all movies that were rented as newline delimited JSON (one rented movie per line).
+     * Rows are written while they are read from the database, so the size of the rental history does not matter.
+     * The body is written on the reports bulkhead.
+     * @return response body that writes rented movies ordered by user ID.
+     */
+    @GetMapping(value = "rented/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportRentedMovies() {
+        StreamingResponseBody body = rentedMovieExportService::exportRentedMovies;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
 
@@ -49,13 +97,49 @@ public class RentedMovieController {
      * If the exception was caught, method returns exception message from service layer.
      */
     @GetMapping("rentedbyuser/{userId}")
-    public Object getRentedMoviesByUserId(@PathVariable("userId") Long userId){
-        try {
-            return rentedMovieService.getRentedMoviesByUserId(userId);
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+    public CompletableFuture<Object> getRentedMoviesByUserId(@PathVariable("userId") Long userId){
+        return rentalsBulkhead.submit(() -> rentedMovieService.getRentedMoviesByUserId(userId));
+    }
+
+
+    /**
+     * This method returns one page of rentals of a specified user ordered by start date (oldest first).
+     * Rentals have the movie ID and title instead of the whole movie.
+     * @param userId is a user ID (required).
+     * @param after start date and ID of the rental after which the page starts (nextCursor of the previous page).
+     * @param limit maximum amount of rentals on the page.
+     * @return a page of rentals with the cursor of the next page.
+     * If the exception was caught, method returns exception message from service layer.
+     */
+    @GetMapping("rentedbyuser/{userId}/timeline")
+    public CompletableFuture<Object> getRentalTimeline(@PathVariable("userId") Long userId,
+                                                       @RequestParam(required = false) String after,
+                                                       @RequestParam(required = false) Integer limit){
+        return rentalsBulkhead.submit(() -> rentedMovieService.getRentalTimeline(userId, after, limit));
+    }
+
+
+    /**
+     * This method returns active rentals of a specified user (rentals that end today or later).
+     * @param userId is a user ID (required).
+     * @return list of active rentals ordered by end date.
+     * If the exception was caught, method returns exception message from service layer.
+     */
+    @GetMapping("rented/active/{userId}")
+    public CompletableFuture<Object> getActiveRentalsByUserId(@PathVariable("userId") Long userId){
+        return rentalsBulkhead.submit(() -> activeRentalService.getActiveRentalsByUserId(userId));
+    }
+
+
+    /**
+     * This method returns rentals that end within the next days.
+     * @param days amount of days after today, rentals that end today are included. If not specified 7 days are used.
+     * @return list of rentals ordered by end date.
+     * If the exception was caught, method returns exception message from service layer.
+     */
+    @GetMapping("rented/due")
+    public CompletableFuture<Object> getRentalsDue(@RequestParam(required = false) Integer days){
+        return rentalsBulkhead.submit(() -> activeRentalService.getRentalsDue(days));
     }
 
 
@@ -66,13 +150,8 @@ public class RentedMovieController {
      * If the exception was caught, method returns exception message from service layer.
      */
     @GetMapping("rented/{movieId}")
-    public Object getRentedMoviesByMovieId(@PathVariable("movieId") Long movieId){
-        try {
-            return rentedMovieService.getRentedMoviesByMovieId(movieId);
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+    public CompletableFuture<Object> getRentedMoviesByMovieId(@PathVariable("movieId") Long movieId){
+        return rentalsBulkhead.submit(() -> rentedMovieService.getRentedMoviesByMovieId(movieId));
     }
 
 
@@ -85,15 +164,10 @@ public class RentedMovieController {
      *
      */
     @GetMapping("invoicecalculation")
-    public Object getInvoiceCalculation(
+    public CompletableFuture<Object> getInvoiceCalculation(
             @RequestParam List<Long> movieIDs,
             @RequestParam List<Integer> timesInWeeks){
-        try {
-            return rentedMovieService.calculate(movieIDs, timesInWeeks);
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+        return rentalsBulkhead.submit(() -> rentedMovieService.calculate(movieIDs, timesInWeeks));
     }
 
 
@@ -103,30 +177,37 @@ public class RentedMovieController {
      * @param timesInWeeks List of weeks that movies are rented (amount of weeks per each movie) (required).
      * @param userId ID of a user that rents movies (required).
      * @return a message if movies were successfully rented (added to the table rentedmovie).
+     * With rental.async.enabled the movies are added to the table rentedmovie shortly after the message.
      * If the exception was caught, method returns exception message from service layer.
      */
     @PostMapping("rentmovies")
-    public String rentMovie(
+    public CompletableFuture<Object> rentMovie(
             @RequestParam List<Long> movieIDs,
             @RequestParam List<Integer> timesInWeeks,
             @RequestParam Long userId){
-        try {
+        return rentalsBulkhead.submit(() -> {
+            if (asyncRentalService.isEnabled()){
+                asyncRentalService.rentMovie(movieIDs, timesInWeeks, userId);
+                return "Movies with IDs: " + movieIDs + " were accepted for renting for " + timesInWeeks + " weeks by user " + userId;
+            }
             rentedMovieService.rentMovie(movieIDs, timesInWeeks, userId);
             return "Movies with IDs: " + movieIDs + " were rented for " + timesInWeeks + " weeks by user " + userId;
-        }
-        catch (CommonException ex){
-            return ex.getMessage();
-        }
+        });
     }
 
 
     /**
      * This method returns movies in descending order (from popular to unpopular).
+     * @param limit maximum amount of movies to return. If not specified all rented movies are returned.
+     * @param offset amount of movies to skip. If not specified nothing is skipped.
      * @return returns movies in descending order (from the biggest amount of purchases to the smallest amount).
+     * If the exception was caught, method returns exception message from service layer.
      */
     @GetMapping("rented/popular")
-    public List<Statistics> getPopularMovies(){
-        return rentedMovieService.getPopularMovies();
+    public CompletableFuture<Object> getPopularMovies(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Integer offset){
+        return rentalsBulkhead.submit(() -> rentedMovieService.getPopularMovies(limit, offset));
     }
 
 }
@@ -0,0 +1,26 @@
+package com.movie.store.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A rental that has not ended yet (endDate is today or later), kept in the active rental index.
+ */
+@Getter
+@AllArgsConstructor
+public class ActiveRental {
+    private final Long id;
+
+    private final Long userId;
+
+    private final Long movieId;
+
+    private final LocalDate startDate;
+
+    private final LocalDate endDate;
+
+    private final BigDecimal rentalPrice;
+}
@@ -0,0 +1,14 @@
+package com.movie.store.dto;
+
+import lombok.Data;
+
+@Data
+public class BulkheadStatistics {
+    private String name;
+    private Integer activeThreads;
+    private Integer maxThreads;
+    private Integer queueDepth;
+    private Integer queueCapacity;
+    private Long completedTasks;
+    private Long rejectedTasks;
+}
@@ -0,0 +1,12 @@
+package com.movie.store.dto;
+
+import lombok.Data;
+
+@Data
+public class CacheStatistics {
+    private String region;
+    private Long hitCount;
+    private Long missCount;
+    private Long putCount;
+    private Long elementCountInMemory;
+}
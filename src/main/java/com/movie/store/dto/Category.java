@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.HashSet;
@@ -19,6 +20,8 @@ import static javax.persistence.GenerationType.SEQUENCE;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "categories")
 public class Category {
 
@@ -26,7 +29,7 @@ public class Category {
     @SequenceGenerator(
             name = "category_sequence",
             sequenceName = "category_sequence",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = SEQUENCE,
@@ -40,7 +43,8 @@ public class Category {
     private String categoryName;
 
 
-    @ManyToMany(cascade = {CascadeType.MERGE},fetch = FetchType.EAGER,mappedBy = "categories")//inverse side
+    @ManyToMany(cascade = {CascadeType.MERGE},fetch = FetchType.LAZY,mappedBy = "categories")//inverse side
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JsonIgnore
     private Set<Movie> movies = new HashSet<>();
 
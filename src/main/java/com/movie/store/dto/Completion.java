@@ -0,0 +1,21 @@
+package com.movie.store.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Completion {
+    private String text;
+
+    //"title" or "actor"
+    private String type;
+
+    //null for actors
+    private Long movieId;
+
+    //rentals of the movie, or of all movies of the actor
+    private Long purchases;
+}
@@ -0,0 +1,21 @@
+package com.movie.store.dto;
+
+import lombok.Data;
+
+@Data
+public class EndpointStatistics {
+    private String endpoint;
+    private Long requestCount;
+    //latencies in milliseconds
+    private Double latencyP50;
+    private Double latencyP99;
+    private Double latencyP999;
+    private Double latencyMax;
+    //JDBC statements and fetched rows per request
+    private Double statementsMean;
+    private Double statementsP99;
+    private Double statementsMax;
+    private Double rowsMean;
+    private Double rowsP99;
+    private Double rowsMax;
+}
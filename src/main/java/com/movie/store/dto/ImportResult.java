@@ -0,0 +1,15 @@
+package com.movie.store.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ImportResult {
+    private long accepted;
+    private long rejected;
+
+    //reasons of the first rejected rows
+    private List<String> errors = new ArrayList<>();
+}
@@ -1,6 +1,11 @@
 package com.movie.store.dto;
 
+import com.movie.store.pricing.PriceTier;
+import com.movie.store.pricing.PricingEngine;
+import com.movie.store.pricing.TierAssignment;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
@@ -8,7 +13,6 @@ import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.Set;
 
-import static java.time.temporal.ChronoUnit.WEEKS;
 import static javax.persistence.GenerationType.SEQUENCE;
 
 
@@ -17,7 +21,10 @@ import static javax.persistence.GenerationType.SEQUENCE;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "movies")
+@NamedEntityGraph(name = "Movie.categories", attributeNodes = @NamedAttributeNode("categories"))
 @Builder
 public class Movie {
 
@@ -25,7 +32,7 @@ public class Movie {
     @SequenceGenerator(
             name = "movie_sequence",
             sequenceName = "movie_sequence",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = SEQUENCE,
@@ -49,6 +56,13 @@ public class Movie {
     private String priceClass;
 
 
+    //price tier as of today, assigned when the movie is loaded and again only when the movie reaches the next tier
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private TierAssignment tierAssignment;
+
+
     @Column(name = "release_date", nullable = false)
     private LocalDate releaseDate;
 
@@ -62,7 +76,9 @@ public class Movie {
 
 
 
-    @ManyToMany(cascade = {CascadeType.MERGE},fetch = FetchType.EAGER) //owning side
+    @ManyToMany(cascade = {CascadeType.MERGE},fetch = FetchType.LAZY) //owning side, read paths load it with the "Movie.categories" graph
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size = 100)
     @JoinTable(
             name = "movie_categories",//join/link table(movie_categories)
             joinColumns = {@JoinColumn(name = "movie_id")},
@@ -96,17 +112,7 @@ public class Movie {
 
 
     public BigDecimal getPricePerWeek(){
-        long weeks = WEEKS.between(this.releaseDate,LocalDate.now());
-        if(weeks <= 52){
-            return BigDecimal.valueOf(5);
-        }
-        else if(weeks<156){
-            return BigDecimal.valueOf(3.49);
-        }
-        else{
-            return BigDecimal.valueOf(1.99);
-        }
-
+        return priceTier().getPricePerWeek();
     }
 
 
@@ -115,16 +121,34 @@ public class Movie {
     }
 
     public String getPriceClass() {
-        long weeks = WEEKS.between(this.releaseDate,LocalDate.now());
-        if(weeks <= 52){
-            return "New movie";
-        }
-        else if(weeks<156){
-            return "Regular movie";
+        return priceTier().getName();
+    }
+
+
+    public void setReleaseDate(LocalDate releaseDate) {
+        this.releaseDate = releaseDate;
+        this.tierAssignment = null;
+    }
+
+
+    @PostLoad
+    @PostPersist
+    void assignPriceTier() {
+        if (releaseDate != null) {
+            tierAssignment = PricingEngine.current().assign(releaseDate);
         }
-        else{
-            return "Old movie";
+    }
+
+
+    //the getters are called for every movie of every response, a valid assignment is read without date calculations
+    private PriceTier priceTier() {
+        PricingEngine pricingEngine = PricingEngine.current();
+        TierAssignment assignment = tierAssignment;
+        if (assignment == null || !assignment.isValid(pricingEngine)) {
+            assignment = pricingEngine.assign(releaseDate);
+            tierAssignment = assignment;
         }
+        return assignment.getTier();
     }
 }
 
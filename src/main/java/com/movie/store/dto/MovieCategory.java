@@ -0,0 +1,11 @@
+package com.movie.store.dto;
+
+/**
+ * Projection of one row of movie_categories (used for building the category bitmap index).
+ * Category ID is null for a movie without categories.
+ */
+public interface MovieCategory {
+    Long getMovieId();
+
+    Long getCategoryId();
+}
@@ -0,0 +1,16 @@
+package com.movie.store.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class MovieImportRow {
+    private String movieTitle;
+    private LocalDate releaseDate;
+    private String actors;
+    private String description;
+    private List<String> categories = new ArrayList<>();
+}
@@ -0,0 +1,8 @@
+package com.movie.store.dto;
+
+/**
+ * Projection with ID, title and actors of a movie (used for building the autocomplete index).
+ */
+public interface MovieNames extends MovieTitle {
+    String getActors();
+}
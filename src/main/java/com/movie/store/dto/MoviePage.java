@@ -0,0 +1,17 @@
+package com.movie.store.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MoviePage {
+    private List<Movie> movies;
+
+    //movieId to pass as "after" for the next page, null on the last page
+    private Long nextCursor;
+}
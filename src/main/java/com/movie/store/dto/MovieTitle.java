@@ -0,0 +1,10 @@
+package com.movie.store.dto;
+
+/**
+ * Projection with only ID and title of a movie (used for building in-memory indexes).
+ */
+public interface MovieTitle {
+    Long getMovieId();
+
+    String getMovieTitle();
+}
@@ -0,0 +1,16 @@
+package com.movie.store.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Recommendation {
+    private Long movieId;
+    private String movieTitle;
+
+    //users who rented this movie and the requested one
+    private Long renters;
+}
@@ -0,0 +1,26 @@
+package com.movie.store.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+//one rental on the timeline of a user, without the categories and details of the movie
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RentalTimelineEntry {
+    private Long id;
+
+    private Long movieId;
+
+    private String movieTitle;
+
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+
+    private BigDecimal rentalPrice;
+}
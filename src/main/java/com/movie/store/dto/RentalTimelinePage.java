@@ -0,0 +1,17 @@
+package com.movie.store.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RentalTimelinePage {
+    private List<RentalTimelineEntry> rentals;
+
+    //start date and ID of the last rental ("2024-01-31_1234") to pass as "after" for the next page, null on the last page
+    private String nextCursor;
+}
@@ -1,6 +1,7 @@
 package com.movie.store.dto;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,13 +18,28 @@ import static javax.persistence.GenerationType.SEQUENCE;
 @NoArgsConstructor
 @Entity(name = "RentedMovie")
 @Builder
-@Table(name = "rentedmovie")
+@Table(
+        name = "rentedmovie",
+        //a user can have only one active rental of a movie, also when two checkouts of the same user run at the same time
+        uniqueConstraints = {
+                @UniqueConstraint(name = "rentedmovie_user_id_active_movie_id_key", columnNames = {"user_id", "active_movie_id"}),
+                //a row of the rental log is saved once, also when the log is saved again after a crash
+                @UniqueConstraint(name = "rentedmovie_journal_entry_id_movie_id_key", columnNames = {"journal_entry_id", "movie_id"})
+        },
+        //rental timeline of a user in (startDate, id) order
+        indexes = @Index(name = "rentedmovie_user_id_start_date_id_idx", columnList = "user_id, start_date, id")
+)
+@NamedEntityGraph(
+        name = "RentedMovie.movie",
+        attributeNodes = @NamedAttributeNode(value = "movie", subgraph = "movie.categories"),
+        subgraphs = @NamedSubgraph(name = "movie.categories", attributeNodes = @NamedAttributeNode("categories"))
+)
 public class RentedMovie {
     @Id
     @SequenceGenerator(
             name = "rentedmovie_sequence",
             sequenceName = "rentedmovie_sequence",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = SEQUENCE,
@@ -49,12 +65,24 @@ public class RentedMovie {
     private BigDecimal rentalPrice;
 
 
-    @ManyToOne(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @ManyToOne(cascade = CascadeType.ALL, fetch = FetchType.LAZY) //read paths load it with the "RentedMovie.movie" graph
     @JoinColumn(
             name = "movie_id"
     )
     private Movie movie;
 
+
+    //movie ID while the rental is active, set to null when the rental has expired (the movie can be rented again)
+    @JsonIgnore
+    @Column(name = "active_movie_id")
+    private Long activeMovieId;
+
+
+    //ID of the rental log entry of an asynchronous checkout, null for rentals saved by the checkout itself
+    @JsonIgnore
+    @Column(name = "journal_entry_id", updatable = false)
+    private String journalEntryId;
+
     public RentedMovie(LocalDate startDate, LocalDate endDate, Movie movie) {
         this.startDate = startDate;
         this.endDate = endDate;
@@ -67,5 +95,6 @@ public class RentedMovie {
         this.endDate = endDate;
         this.rentalPrice = rentalPrice;
         this.movie = movie;
+        this.activeMovieId = movie.getMovieId();
     }
 }
@@ -0,0 +1,13 @@
+package com.movie.store.encoding;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Writes a streamed response body to a generator of the negotiated format, usually one call of the service layer.
+ */
+@FunctionalInterface
+public interface BodyWriter {
+    void write(JsonGenerator generator) throws IOException;
+}
@@ -0,0 +1,96 @@
+package com.movie.store.encoding;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Compression of a response body, the name is the value of the Accept-Encoding and Content-Encoding headers.
+ */
+public enum ContentCoding {
+
+    IDENTITY("identity") {
+        @Override
+        public byte[] encode(byte[] body) {
+            return body;
+        }
+
+        @Override
+        public OutputStream wrap(OutputStream output) {
+            return output;
+        }
+    },
+
+    GZIP("gzip") {
+        @Override
+        public byte[] encode(byte[] body) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(output, 8192)) {
+                gzip.write(body);
+            }
+            catch (IOException ex) {
+                //a ByteArrayOutputStream does not throw
+                throw new UncheckedIOException(ex);
+            }
+            return output.toByteArray();
+        }
+
+        @Override
+        public OutputStream wrap(OutputStream output) throws IOException {
+            return new GZIPOutputStream(output, 8192);
+        }
+    },
+
+    ZSTD("zstd") {
+        @Override
+        public byte[] encode(byte[] body) {
+            return Zstd.compress(body, ZSTD_LEVEL);
+        }
+
+        @Override
+        public OutputStream wrap(OutputStream output) throws IOException {
+            return new ZstdOutputStream(output, ZSTD_LEVEL);
+        }
+    };
+
+    //the default level of the zstd command line, compresses better than gzip and still faster
+    private static final int ZSTD_LEVEL = 3;
+
+    private final String name;
+
+    ContentCoding(String name) {
+        this.name = name;
+    }
+
+
+    /**
+     * @return the name of the coding in HTTP headers.
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * This method compresses a whole response body.
+     * @param body is the serialized response (required).
+     * @return the compressed body, the same array for IDENTITY.
+     */
+    public abstract byte[] encode(byte[] body);
+
+
+    /**
+     * This method compresses a response body while it is written.
+     * @param output is the stream the compressed body is written to (required).
+     * @return stream that compresses what is written to it, the same stream for IDENTITY.
+     * Closing it finishes the compressed body and closes the output.
+     * @throws IOException if the header of the compressed body can not be written.
+     */
+    public abstract OutputStream wrap(OutputStream output) throws IOException;
+}
@@ -0,0 +1,17 @@
+package com.movie.store.encoding;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.MediaType;
+
+/**
+ * Format and compression of a response, chosen from the Accept and Accept-Encoding headers of the request.
+ */
+@Getter
+@AllArgsConstructor
+public class Representation {
+    //application/json, application/x-jackson-smile or application/cbor
+    private final MediaType format;
+
+    private final ContentCoding coding;
+}
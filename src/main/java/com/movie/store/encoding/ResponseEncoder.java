@@ -0,0 +1,257 @@
+package com.movie.store.encoding;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movie.store.exception.CommonException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * This class serializes and compresses response bodies in the representation the client asked for.
+ *
+ * The format is JSON, Smile or CBOR by the Accept header, JSON if the client accepts anything.
+ * Only formats in "produces" of the controller method are chosen. The compression is zstd or gzip by
+ * the Accept-Encoding header, zstd is preferred when both have the same quality.
+ * Bodies shorter than MIN_COMPRESSED_SIZE are not compressed, the headers would be larger than the saving.
+ * Small bodies (the catalog responses of the response cache) are encoded into a byte array, bulk bodies are streamed:
+ * serialized and compressed while they are written, so they are never held in memory as a whole.
+ */
+@Component
+public class ResponseEncoder {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+    static final int MIN_COMPRESSED_SIZE = 1024;
+
+    private static final ContentCoding[] COMPRESSIONS = {ContentCoding.ZSTD, ContentCoding.GZIP};
+
+    private static final String VARY = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+
+    //in order of preference, the first one is used for */*
+    private final Map<MediaType, ObjectMapper> objectMappers = new LinkedHashMap<>();
+
+
+    @Autowired
+    public ResponseEncoder(ObjectMapper objectMapper,
+                           MappingJackson2SmileHttpMessageConverter smileConverter,
+                           MappingJackson2CborHttpMessageConverter cborConverter) {
+        objectMappers.put(MediaType.APPLICATION_JSON, objectMapper);
+        objectMappers.put(APPLICATION_SMILE, smileConverter.getObjectMapper());
+        objectMappers.put(MediaType.APPLICATION_CBOR, cborConverter.getObjectMapper());
+    }
+
+
+    /**
+     * This method chooses the representation of the response.
+     * @param request is the current request (required).
+     * @return format and compression of the response.
+     */
+    public Representation negotiate(WebRequest request) {
+        @SuppressWarnings("unchecked")
+        Collection<MediaType> producible = (Collection<MediaType>) request.getAttribute(
+                HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return new Representation(
+                negotiateFormat(request.getHeaderValues(HttpHeaders.ACCEPT), producible),
+                negotiateCoding(request.getHeaderValues(HttpHeaders.ACCEPT_ENCODING)));
+    }
+
+
+    /**
+     * This method serializes a response body.
+     * @param body is the response (required).
+     * @param format is JSON, Smile or CBOR (required).
+     * @return the serialized body.
+     * @throws CommonException if the body can not be serialized.
+     */
+    public byte[] serialize(Object body, MediaType format) throws CommonException {
+        try {
+            return objectMappers.get(format).writeValueAsBytes(body);
+        }
+        catch (JsonProcessingException ex) {
+            throw new CommonException("Response could not be serialized: " + ex.getOriginalMessage());
+        }
+    }
+
+
+    /**
+     * This method serializes and compresses a whole response body in memory, bulk bodies are streamed with stream.
+     * @param body is the response (required).
+     * @param representation is the result of negotiate (required).
+     * @return the response with its content type and encoding.
+     * @throws CommonException if the body can not be serialized.
+     */
+    public ResponseEntity<byte[]> encode(Object body, Representation representation) throws CommonException {
+        byte[] serialized = serialize(body, representation.getFormat());
+        ContentCoding coding = codingFor(representation, serialized.length);
+        return response(coding.encode(serialized), representation.getFormat(), coding, null);
+    }
+
+
+    /**
+     * This method builds a response whose body is serialized and compressed while it is written.
+     * Only the buffers of the generator and of the compression are held, so the body can have any size.
+     * The length is not known in advance, so the body is compressed whenever the client accepts a compression.
+     * @param representation is the result of negotiate (required).
+     * @param writer writes the body to a generator of the negotiated format (required).
+     * @return 200 OK with the headers of the representation and a body that runs the writer.
+     */
+    public ResponseEntity<StreamingResponseBody> stream(Representation representation, BodyWriter writer) {
+        MediaType format = representation.getFormat();
+        ContentCoding coding = representation.getCoding();
+        StreamingResponseBody body = outputStream -> {
+            //the servlet container closes its stream, closing the compression only finishes the compressed body
+            try (OutputStream encoded = coding.wrap(StreamUtils.nonClosing(outputStream));
+                 JsonGenerator generator = objectMappers.get(format).createGenerator(encoded)) {
+                writer.write(generator);
+            }
+        };
+        return headers(format, coding, null).body(body);
+    }
+
+
+    /**
+     * @param representation is the result of negotiate (required).
+     * @param length is the length of the serialized body.
+     * @return the coding of the representation, IDENTITY if the body is too short to be compressed.
+     */
+    public ContentCoding codingFor(Representation representation, int length) {
+        return length < MIN_COMPRESSED_SIZE ? ContentCoding.IDENTITY : representation.getCoding();
+    }
+
+
+    /**
+     * This method builds a response from an encoded body.
+     * @param body is the serialized and compressed body (required).
+     * @param format is the format of the body (required).
+     * @param coding is the compression of the body (required).
+     * @param eTag is the ETag of the body, null if the response has none.
+     * @return 200 OK with the body and its headers.
+     */
+    public ResponseEntity<byte[]> response(byte[] body, MediaType format, ContentCoding coding, String eTag) {
+        return headers(format, coding, eTag).body(body);
+    }
+
+
+    /**
+     * @param eTag is the ETag the client already has (required).
+     * @return 304 Not Modified with the ETag and the headers the representation depends on.
+     */
+    public ResponseEntity<byte[]> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .header(HttpHeaders.VARY, VARY)
+                .eTag(eTag)
+                .build();
+    }
+
+
+    private static ResponseEntity.BodyBuilder headers(MediaType format, ContentCoding coding, String eTag) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(format)
+                .header(HttpHeaders.VARY, VARY);
+        if (coding != ContentCoding.IDENTITY) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, coding.getName());
+        }
+        if (eTag != null) {
+            builder.eTag(eTag);
+        }
+        return builder;
+    }
+
+
+    MediaType negotiateFormat(String[] accept, Collection<MediaType> producible) {
+        if (accept == null) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = MediaType.parseMediaTypes(Arrays.asList(accept));
+        }
+        catch (InvalidMediaTypeException ex) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(acceptedTypes);
+        for (MediaType acceptedType : acceptedTypes) {
+            if (acceptedType.getQualityValue() == 0) {
+                continue;
+            }
+            for (MediaType format : objectMappers.keySet()) {
+                if (acceptedType.isCompatibleWith(format) && (producible == null || producible.contains(format))) {
+                    return format;
+                }
+            }
+        }
+        //the request was mapped by produces, so an acceptable format exists, this is only reached without it
+        return MediaType.APPLICATION_JSON;
+    }
+
+
+    ContentCoding negotiateCoding(String[] acceptEncoding) {
+        if (acceptEncoding == null) {
+            return ContentCoding.IDENTITY;
+        }
+        ContentCoding best = ContentCoding.IDENTITY;
+        double bestQuality = 0;
+        for (ContentCoding coding : COMPRESSIONS) {
+            double quality = quality(acceptEncoding, coding.getName());
+            if (quality > bestQuality) {
+                best = coding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+
+    //quality of a coding in Accept-Encoding ("gzip;q=0.5, *;q=0.1"), a named coding takes precedence over *
+    private static double quality(String[] acceptEncoding, String name) {
+        double wildcardQuality = 0;
+        for (String header : acceptEncoding) {
+            for (String element : header.split(",")) {
+                String[] parts = element.split(";");
+                String coding = parts[0].trim();
+                double quality = 1;
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            quality = Double.parseDouble(parameter.substring(2));
+                        }
+                        catch (NumberFormatException ex) {
+                            quality = 0;
+                        }
+                    }
+                }
+                if (coding.equalsIgnoreCase(name)) {
+                    return quality;
+                }
+                if (coding.equals("*")) {
+                    wildcardQuality = quality;
+                }
+            }
+        }
+        return wildcardQuality;
+    }
+}
@@ -0,0 +1,19 @@
+package com.movie.store.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * This event is published by the service layer when a category was added, renamed or deleted.
+ * The category catalog listens to it after the transaction commits.
+ */
+@Getter
+@AllArgsConstructor
+public class CategoryChangedEvent {
+    private final Long categoryId;
+
+    //null if the category was deleted
+    private final String categoryName;
+
+    private final boolean deleted;
+}
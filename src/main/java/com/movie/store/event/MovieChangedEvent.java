@@ -0,0 +1,50 @@
+package com.movie.store.event;
+
+import com.movie.store.dto.Category;
+import com.movie.store.dto.Movie;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This event is published by the service layer when a movie was added, changed or deleted.
+ * In-memory indexes listen to it after the transaction commits.
+ */
+@Getter
+@AllArgsConstructor
+public class MovieChangedEvent {
+    private final Long movieId;
+
+    //null if the movie was deleted
+    private final String movieTitle;
+
+    //IDs of all categories of the movie after the change, empty if the movie was deleted
+    private final List<Long> categoryIds;
+
+    private final boolean deleted;
+
+
+    /**
+     * @param movie is the added or changed movie (required).
+     * @return event with the current title and categories of the movie.
+     */
+    public static MovieChangedEvent changed(Movie movie) {
+        List<Long> categoryIds = new ArrayList<>(movie.getCategories().size());
+        for (Category category : movie.getCategories()) {
+            categoryIds.add(category.getCategoryId());
+        }
+        return new MovieChangedEvent(movie.getMovieId(), movie.getMovieTitle(), categoryIds, false);
+    }
+
+
+    /**
+     * @param movieId is an ID of the deleted movie (required).
+     * @return event of the deleted movie.
+     */
+    public static MovieChangedEvent deleted(Long movieId) {
+        return new MovieChangedEvent(movieId, null, Collections.emptyList(), true);
+    }
+}
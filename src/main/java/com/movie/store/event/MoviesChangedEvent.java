@@ -0,0 +1,17 @@
+package com.movie.store.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * This event is published by the service layer once per committed batch of movie changes (the movie import).
+ * In-memory indexes listen to it after the transaction commits and apply all changes at once.
+ */
+@Getter
+@AllArgsConstructor
+public class MoviesChangedEvent {
+    //one change per movie of the batch
+    private final List<MovieChangedEvent> changes;
+}
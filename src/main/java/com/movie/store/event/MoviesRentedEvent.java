@@ -0,0 +1,19 @@
+package com.movie.store.event;
+
+import com.movie.store.dto.RentedMovie;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * This event is published by the service layer when a user has rented movies.
+ * In-memory indexes listen to it after the transaction commits.
+ */
+@Getter
+@AllArgsConstructor
+public class MoviesRentedEvent {
+    private final Long userId;
+
+    private final List<RentedMovie> rentedMovies;
+}
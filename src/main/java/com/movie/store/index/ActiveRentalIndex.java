@@ -0,0 +1,319 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.ActiveRental;
+import com.movie.store.dto.RentedMovie;
+import com.movie.store.event.MovieChangedEvent;
+import com.movie.store.event.MoviesChangedEvent;
+import com.movie.store.event.MoviesRentedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * This class is an in-memory index of active rentals by user and by expiry day.
+ *
+ * A rental expires on the day after its endDate. Expiry days are kept in a timer wheel of WHEEL_SIZE day slots,
+ * a slot holds IDs of rentals that expire on that day. Rentals that expire later than the wheel reaches wait in an
+ * overflow map and are moved into a slot when the wheel gets to their day.
+ * Advancing the wheel by one day only touches one slot, so expired rentals are found without scanning all rentals.
+ */
+@Component
+public class ActiveRentalIndex {
+
+    //a power of two, the slot of a day is (day & (WHEEL_SIZE - 1))
+    static final int WHEEL_SIZE = 128;
+
+    private static final int SLOT_MASK = WHEEL_SIZE - 1;
+
+    private static final Comparator<ActiveRental> ORDER =
+            Comparator.comparing(ActiveRental::getEndDate).thenComparing(ActiveRental::getId);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Long, ActiveRental> rentals = new HashMap<>();
+
+    private Map<Long, Set<Long>> rentalsByUser = new HashMap<>();
+
+    //rentals that expire in (currentDay, currentDay + WHEEL_SIZE]
+    private List<List<Long>> wheel = emptyWheel();
+
+    //rentals that expire after currentDay + WHEEL_SIZE by expiry day
+    private TreeMap<Long, List<Long>> overflow = new TreeMap<>();
+
+    //epoch day the wheel was advanced to, rentals expiring on it or before are removed
+    private long currentDay = LocalDate.now().toEpochDay();
+
+    private volatile boolean ready;
+
+
+    /**
+     * This method replaces the content of the index.
+     * @param activeRentals rentals that are not retired yet (required).
+     * @param today is the current day (required).
+     * @return IDs of given rentals that have already expired, they are not added to the index.
+     */
+    public List<Long> rebuild(Iterator<? extends ActiveRental> activeRentals, LocalDate today) {
+        Map<Long, ActiveRental> newRentals = new HashMap<>();
+        Map<Long, Set<Long>> newRentalsByUser = new HashMap<>();
+        List<List<Long>> newWheel = emptyWheel();
+        TreeMap<Long, List<Long>> newOverflow = new TreeMap<>();
+        long day = today.toEpochDay();
+        List<Long> expired = new ArrayList<>();
+        while (activeRentals.hasNext()) {
+            ActiveRental rental = activeRentals.next();
+            if (!add(rental, day, newRentals, newRentalsByUser, newWheel, newOverflow)) {
+                expired.add(rental.getId());
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            rentals = newRentals;
+            rentalsByUser = newRentalsByUser;
+            wheel = newWheel;
+            overflow = newOverflow;
+            currentDay = day;
+            ready = true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        return expired;
+    }
+
+
+    /**
+     * This method advances the wheel to a day and removes rentals that have expired until then.
+     * @param today is the current day (required).
+     * @return IDs of removed rentals.
+     */
+    public List<Long> advance(LocalDate today) {
+        long day = today.toEpochDay();
+        List<Long> expired = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            while (currentDay < day) {
+                currentDay++;
+                List<Long> slot = wheel.get(slot(currentDay));
+                for (Long rentalId : slot) {
+                    ActiveRental rental = rentals.get(rentalId);
+                    //the rental may have been removed with its movie
+                    if (rental != null && expiryDay(rental) == currentDay) {
+                        remove(rental);
+                        expired.add(rentalId);
+                    }
+                }
+                slot.clear();
+                //the slot is reused for the day that has just come into the reach of the wheel
+                List<Long> cascaded = overflow.remove(currentDay + WHEEL_SIZE);
+                if (cascaded != null) {
+                    slot.addAll(cascaded);
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        return expired;
+    }
+
+
+    /**
+     * This method returns active rentals of a user.
+     * @param userId is a user ID (required).
+     * @param today is the current day, rentals that ended before it are skipped (required).
+     * @return active rentals ordered by end date and ID.
+     */
+    public List<ActiveRental> activeByUser(Long userId, LocalDate today) {
+        List<ActiveRental> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Long rentalId : rentalsByUser.getOrDefault(userId, Collections.emptySet())) {
+                ActiveRental rental = rentals.get(rentalId);
+                if (!rental.getEndDate().isBefore(today)) {
+                    result.add(rental);
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        result.sort(ORDER);
+        return result;
+    }
+
+
+    /**
+     * This method returns rentals that end between two days, the slots of these days are read and nothing else.
+     * @param from is the first end date (required).
+     * @param to is the last end date (required).
+     * @return rentals ordered by end date and ID.
+     */
+    public List<ActiveRental> dueBetween(LocalDate from, LocalDate to) {
+        List<ActiveRental> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            long firstExpiryDay = Math.max(from.toEpochDay() + 1, currentDay + 1);
+            long lastExpiryDay = to.toEpochDay() + 1;
+            long lastWheelDay = Math.min(lastExpiryDay, currentDay + WHEEL_SIZE);
+            for (long day = firstExpiryDay; day <= lastWheelDay; day++) {
+                collect(wheel.get(slot(day)), day, result);
+            }
+            if (lastExpiryDay > currentDay + WHEEL_SIZE) {
+                long firstOverflowDay = Math.max(firstExpiryDay, currentDay + WHEEL_SIZE + 1);
+                for (Map.Entry<Long, List<Long>> entry : overflow.subMap(firstOverflowDay, true, lastExpiryDay, true).entrySet()) {
+                    collect(entry.getValue(), entry.getKey(), result);
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        result.sort(ORDER);
+        return result;
+    }
+
+
+    /**
+     * @return true if the index was built and can be used.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+
+    /**
+     * This method adds new rentals after the checkout was committed.
+     * @param event describes the rented movies.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMoviesRented(MoviesRentedEvent event) {
+        lock.writeLock().lock();
+        try {
+            for (RentedMovie rentedMovie : event.getRentedMovies()) {
+                ActiveRental rental = new ActiveRental(rentedMovie.getId(), rentedMovie.getUserId(),
+                        rentedMovie.getActiveMovieId(), rentedMovie.getStartDate(), rentedMovie.getEndDate(),
+                        rentedMovie.getRentalPrice());
+                add(rental, currentDay, rentals, rentalsByUser, wheel, overflow);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * This method removes rentals of a deleted movie after the deletion was committed.
+     * Their IDs stay in the wheel and are skipped when their day comes.
+     * @param event describes the changed movie.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieChanged(MovieChangedEvent event) {
+        removeMovies(List.of(event));
+    }
+
+
+    /**
+     * This method removes rentals of the deleted movies of a batch with one pass over the rentals.
+     * @param event describes the changed movies.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMoviesChanged(MoviesChangedEvent event) {
+        removeMovies(event.getChanges());
+    }
+
+
+    private void removeMovies(List<MovieChangedEvent> changes) {
+        Set<Long> deletedMovieIds = new HashSet<>();
+        for (MovieChangedEvent change : changes) {
+            if (change.isDeleted()) {
+                deletedMovieIds.add(change.getMovieId());
+            }
+        }
+        if (deletedMovieIds.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            List<ActiveRental> removed = new ArrayList<>();
+            for (ActiveRental rental : rentals.values()) {
+                if (deletedMovieIds.contains(rental.getMovieId())) {
+                    removed.add(rental);
+                }
+            }
+            for (ActiveRental rental : removed) {
+                remove(rental);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    //returns false if the rental has already expired on the given day
+    private static boolean add(ActiveRental rental, long day, Map<Long, ActiveRental> rentals,
+                               Map<Long, Set<Long>> rentalsByUser, List<List<Long>> wheel,
+                               TreeMap<Long, List<Long>> overflow) {
+        long expiryDay = expiryDay(rental);
+        if (expiryDay <= day) {
+            return false;
+        }
+        rentals.put(rental.getId(), rental);
+        rentalsByUser.computeIfAbsent(rental.getUserId(), userId -> new HashSet<>()).add(rental.getId());
+        if (expiryDay <= day + WHEEL_SIZE) {
+            wheel.get(slot(expiryDay)).add(rental.getId());
+        }
+        else {
+            overflow.computeIfAbsent(expiryDay, expiry -> new ArrayList<>()).add(rental.getId());
+        }
+        return true;
+    }
+
+
+    private void remove(ActiveRental rental) {
+        rentals.remove(rental.getId());
+        Set<Long> userRentals = rentalsByUser.get(rental.getUserId());
+        if (userRentals != null) {
+            userRentals.remove(rental.getId());
+            if (userRentals.isEmpty()) {
+                rentalsByUser.remove(rental.getUserId());
+            }
+        }
+    }
+
+
+    private void collect(List<Long> rentalIds, long expiryDay, List<ActiveRental> result) {
+        for (Long rentalId : rentalIds) {
+            ActiveRental rental = rentals.get(rentalId);
+            if (rental != null && expiryDay(rental) == expiryDay) {
+                result.add(rental);
+            }
+        }
+    }
+
+
+    private static long expiryDay(ActiveRental rental) {
+        return rental.getEndDate().toEpochDay() + 1;
+    }
+
+
+    private static int slot(long day) {
+        return (int) (day & SLOT_MASK);
+    }
+
+
+    private static List<List<Long>> emptyWheel() {
+        List<List<Long>> wheel = new ArrayList<>(WHEEL_SIZE);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        return wheel;
+    }
+}
@@ -0,0 +1,141 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.Completion;
+import com.movie.store.dto.MovieNames;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class is an in-memory autocomplete index over movie titles and actor names.
+ *
+ * Every title and every actor of a movie (actors are separated by commas) is a completion, an actor of several movies
+ * is one completion. Completions are ranked by purchases: of the movie for a title, of all movies of the actor for an actor.
+ * Text is compared without case, accents and repeated spaces, so accented names are completed from plain letters.
+ * The completions are kept in an immutable CompletionTrie. A new trie is built aside and published with one volatile write,
+ * so lookups never wait for a rebuild and always see either the previous or the new catalog.
+ */
+@Component
+public class AutocompleteIndex {
+
+    public static final String TITLE = "title";
+
+    public static final String ACTOR = "actor";
+
+    //completions kept per prefix, the maximum limit of a lookup
+    public static final int MAX_COMPLETIONS = 20;
+
+    private static final Pattern ACTOR_SEPARATOR = Pattern.compile("[,;]");
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private volatile CompletionTrie trie;
+
+
+    /**
+     * This method builds a new trie and replaces the current one with it.
+     * @param movies IDs, titles and actors of all movies (required).
+     * @param purchases amount of purchases by movie ID, movies that were never rented can be missing (required).
+     */
+    public void rebuild(Iterator<? extends MovieNames> movies, Map<Long, Long> purchases) {
+        CompletionTrie.Builder builder = CompletionTrie.builder(MAX_COMPLETIONS);
+        Map<String, Actor> actors = new HashMap<>();
+        Set<String> movieActors = new HashSet<>();
+        while (movies.hasNext()) {
+            MovieNames movie = movies.next();
+            long moviePurchases = purchases.getOrDefault(movie.getMovieId(), 0L);
+            builder.add(normalize(movie.getMovieTitle()).trim(), movie.getMovieTitle().trim(), CompletionTrie.TITLE,
+                    movie.getMovieId(), moviePurchases);
+            if (movie.getActors() == null) {
+                continue;
+            }
+            movieActors.clear();
+            for (String name : ACTOR_SEPARATOR.split(movie.getActors())) {
+                String key = normalize(name).trim();
+                if (key.isEmpty() || !movieActors.add(key)) {
+                    continue;
+                }
+                //the first spelling of an actor is shown
+                actors.computeIfAbsent(key, k -> new Actor(name.trim())).purchases += moviePurchases;
+            }
+        }
+        for (Map.Entry<String, Actor> entry : actors.entrySet()) {
+            builder.add(entry.getKey(), entry.getValue().name, CompletionTrie.ACTOR, 0, entry.getValue().purchases);
+        }
+        trie = builder.build();
+    }
+
+
+    /**
+     * This method returns the most popular titles and actor names starting with a prefix.
+     * @param prefix is the beginning of a title or of an actor name (required).
+     * @param limit maximum amount of completions, not more than MAX_COMPLETIONS.
+     * @return completions from the most to the least purchased, empty if nothing starts with the prefix or the index is not built.
+     */
+    public List<Completion> complete(String prefix, int limit) {
+        CompletionTrie current = trie;
+        if (current == null) {
+            return new ArrayList<>();
+        }
+        return current.complete(normalize(prefix), Math.min(limit, MAX_COMPLETIONS));
+    }
+
+
+    /**
+     * @return true if the index was built and can be used for lookups.
+     */
+    public boolean isReady() {
+        return trie != null;
+    }
+
+
+    /**
+     * @return amount of completions (titles and distinct actors).
+     */
+    public int size() {
+        CompletionTrie current = trie;
+        return current == null ? 0 : current.size();
+    }
+
+
+    //upper case without accents, whitespace runs become one space and leading whitespace is dropped
+    //trailing whitespace is kept, so "star " only completes titles with a word after "Star"
+    static String normalize(String text) {
+        String plain = text;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                //only non-ASCII text can have accents, decomposing is much slower than the rest
+                plain = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+                break;
+            }
+        }
+        StringBuilder normalized = new StringBuilder(plain.length());
+        boolean afterSpace = true;
+        for (int i = 0; i < plain.length(); i++) {
+            char c = plain.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                normalized.append(c);
+                afterSpace = false;
+            }
+            else if (!afterSpace) {
+                normalized.append(' ');
+                afterSpace = true;
+            }
+        }
+        return normalized.toString().toUpperCase(Locale.ROOT);
+    }
+
+
+    private static final class Actor {
+        private final String name;
+
+        private long purchases;
+
+        private Actor(String name) {
+            this.name = name;
+        }
+    }
+}
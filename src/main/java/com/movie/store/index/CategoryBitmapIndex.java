@@ -0,0 +1,181 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.MovieCategory;
+import com.movie.store.event.CategoryChangedEvent;
+import com.movie.store.event.MovieChangedEvent;
+import com.movie.store.event.MoviesChangedEvent;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * This class is an in-memory index of movie categories.
+ *
+ * Every category keeps a compressed bitmap of IDs of its movies, one more bitmap keeps IDs of all movies.
+ * Boolean category expressions are evaluated with bitwise AND, OR and AND NOT of the bitmaps,
+ * so filtering by several categories does not depend on the amount of rows in movie_categories.
+ * Movie IDs are stored as int. A movie ID outside 0 to Integer.MAX_VALUE is rejected with an IllegalArgumentException
+ * and leaves the index not ready, so category queries fail instead of silently missing the movie.
+ */
+@Component
+public class CategoryBitmapIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Long, RoaringBitmap> moviesByCategory = new HashMap<>();
+
+    private RoaringBitmap allMovies = new RoaringBitmap();
+
+    private volatile boolean ready;
+
+
+    /**
+     * This method replaces the content of the index.
+     * @param movieCategories rows of movie_categories, a movie without categories has one row with null category ID (required).
+     * @throws IllegalArgumentException if a movie ID does not fit into the index, the index is not changed.
+     */
+    public void rebuild(Iterator<? extends MovieCategory> movieCategories) {
+        Map<Long, RoaringBitmap> newMoviesByCategory = new HashMap<>();
+        RoaringBitmap newAllMovies = new RoaringBitmap();
+        while (movieCategories.hasNext()) {
+            MovieCategory movieCategory = movieCategories.next();
+            int movieId = toIndex(movieCategory.getMovieId());
+            newAllMovies.add(movieId);
+            if (movieCategory.getCategoryId() != null) {
+                newMoviesByCategory.computeIfAbsent(movieCategory.getCategoryId(), categoryId -> new RoaringBitmap())
+                        .add(movieId);
+            }
+        }
+        newAllMovies.runOptimize();
+        for (RoaringBitmap movies : newMoviesByCategory.values()) {
+            movies.runOptimize();
+        }
+
+        lock.writeLock().lock();
+        try {
+            moviesByCategory = newMoviesByCategory;
+            allMovies = newAllMovies;
+            ready = true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * This method evaluates a category expression.
+     * @param expression is a parsed category expression (required).
+     * @return IDs of matching movies, the bitmap belongs to the caller.
+     */
+    public RoaringBitmap evaluate(CategoryExpression expression) {
+        lock.readLock().lock();
+        try {
+            return expression.evaluate(moviesByCategory, allMovies);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * @return true if the index was built and can be used.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+
+    /**
+     * This method sets categories of a movie after a movie change was committed.
+     * @param event describes the changed movie with all its categories.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieChanged(MovieChangedEvent event) {
+        apply(List.of(event));
+    }
+
+
+    /**
+     * This method sets categories of a batch of movies under one write lock after the batch was committed.
+     * @param event describes the changed movies with all their categories.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMoviesChanged(MoviesChangedEvent event) {
+        apply(event.getChanges());
+    }
+
+
+    private void apply(List<MovieChangedEvent> changes) {
+        int[] movieIds = new int[changes.size()];
+        try {
+            for (int i = 0; i < movieIds.length; i++) {
+                movieIds[i] = toIndex(changes.get(i).getMovieId());
+            }
+        }
+        catch (IllegalArgumentException ex) {
+            //without the movie the index would answer wrong, it is not used until it is rebuilt
+            ready = false;
+            throw ex;
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < movieIds.length; i++) {
+                MovieChangedEvent change = changes.get(i);
+                int movieId = movieIds[i];
+                Set<Long> categoryIds = new HashSet<>(change.getCategoryIds());
+                if (change.isDeleted()) {
+                    allMovies.remove(movieId);
+                }
+                else {
+                    allMovies.add(movieId);
+                }
+                for (Map.Entry<Long, RoaringBitmap> entry : moviesByCategory.entrySet()) {
+                    if (!categoryIds.contains(entry.getKey())) {
+                        entry.getValue().remove(movieId);
+                    }
+                }
+                for (Long categoryId : categoryIds) {
+                    moviesByCategory.computeIfAbsent(categoryId, id -> new RoaringBitmap()).add(movieId);
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * This method drops the bitmap of a deleted category after the deletion was committed.
+     * @param event describes the changed category.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (!event.isDeleted()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            moviesByCategory.remove(event.getCategoryId());
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    private static int toIndex(Long movieId) {
+        if (movieId < 0 || movieId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Movie ID " + movieId + " does not fit into the category index (0 to "
+                    + Integer.MAX_VALUE + ")");
+        }
+        return movieId.intValue();
+    }
+}
@@ -0,0 +1,135 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.Category;
+import com.movie.store.event.CategoryChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+
+/**
+ * This class is an in-memory copy of the categories table.
+ *
+ * Categories are kept in an immutable snapshot. A committed change builds a new snapshot from the current one
+ * and swaps it in, so readers never lock and always see one consistent version of all categories.
+ * Clients validate the categories with the ETag of the response cache, a digest of the serialized list.
+ */
+@Component
+public class CategoryCatalog {
+
+    private volatile Snapshot snapshot;
+
+
+    /**
+     * This method replaces the content of the catalog.
+     * @param categories all categories (required).
+     */
+    public synchronized void rebuild(Collection<Category> categories) {
+        Map<Long, String> namesById = new HashMap<>(categories.size() * 2);
+        for (Category category : categories) {
+            namesById.put(category.getCategoryId(), category.getCategoryName());
+        }
+        snapshot = new Snapshot(namesById);
+    }
+
+
+    /**
+     * @return the current snapshot, null until the catalog was loaded.
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+
+    /**
+     * @return true if the catalog was loaded and can be used.
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+
+    /**
+     * This method applies a committed category change.
+     * @param event describes the changed category.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onCategoryChanged(CategoryChangedEvent event) {
+        Snapshot previous = snapshot;
+        if (previous == null) {
+            return;
+        }
+        Map<Long, String> namesById = new HashMap<>(previous.namesById);
+        if (event.isDeleted()) {
+            namesById.remove(event.getCategoryId());
+        }
+        else {
+            namesById.put(event.getCategoryId(), event.getCategoryName());
+        }
+        snapshot = new Snapshot(namesById);
+    }
+
+
+    /**
+     * One immutable version of all categories.
+     */
+    public static final class Snapshot {
+        private final Map<Long, String> namesById;
+
+        private final Map<String, Long> idsByName;
+
+        private final Long[] categoryIds;
+
+        private Snapshot(Map<Long, String> namesById) {
+            this.namesById = namesById;
+            this.idsByName = new HashMap<>(namesById.size() * 2);
+            for (Map.Entry<Long, String> entry : namesById.entrySet()) {
+                idsByName.put(entry.getValue(), entry.getKey());
+            }
+            this.categoryIds = namesById.keySet().toArray(new Long[0]);
+            Arrays.sort(categoryIds);
+        }
+
+        /**
+         * @param categoryName is a category name (required).
+         * @return ID of the category with given name, null if there is no such category.
+         */
+        public Long getCategoryId(String categoryName) {
+            return idsByName.get(categoryName);
+        }
+
+        /**
+         * @param categoryName is a category name (required).
+         * @return ID of the category with the lowest ID whose name equals the given one ignoring case,
+         * null if there is no such category.
+         */
+        public Long getCategoryIdIgnoreCase(String categoryName) {
+            for (Long categoryId : categoryIds) {
+                if (namesById.get(categoryId).equalsIgnoreCase(categoryName)) {
+                    return categoryId;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param categoryId is a category ID (required).
+         * @return name of the category with given ID, null if there is no such category.
+         */
+        public String getCategoryName(Long categoryId) {
+            return namesById.get(categoryId);
+        }
+
+        /**
+         * @return copies of all categories ordered by category ID, changing them does not change the catalog.
+         */
+        public List<Category> getCategories() {
+            List<Category> categories = new ArrayList<>(categoryIds.length);
+            for (Long categoryId : categoryIds) {
+                categories.add(new Category(categoryId, namesById.get(categoryId), new HashSet<>()));
+            }
+            return categories;
+        }
+    }
+}
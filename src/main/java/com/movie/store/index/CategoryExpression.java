@@ -0,0 +1,128 @@
+package com.movie.store.index;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * This class is a parsed boolean expression over categories, evaluated by the category bitmap index.
+ *
+ * It is built from category leaves, AND terms (with negated parts) and OR of terms,
+ * so "Action AND Sci-fi NOT Comedy" is one AND term with two parts and one negated part.
+ */
+public abstract class CategoryExpression {
+
+    private CategoryExpression() {
+    }
+
+
+    /**
+     * @param categoryId is a category ID (required).
+     * @return expression matching movies of the category.
+     */
+    public static CategoryExpression category(Long categoryId) {
+        return new CategoryLeaf(categoryId);
+    }
+
+
+    /**
+     * @param parts expressions that all have to match, if empty all movies match them.
+     * @param negatedParts expressions that must not match.
+     * @return expression matching movies that match all parts and none of the negated parts.
+     */
+    public static CategoryExpression and(List<CategoryExpression> parts, List<CategoryExpression> negatedParts) {
+        return new And(parts, negatedParts);
+    }
+
+
+    /**
+     * @param parts expressions of which at least one has to match (required).
+     * @return expression matching movies that match any of the parts.
+     */
+    public static CategoryExpression or(List<CategoryExpression> parts) {
+        return new Or(parts);
+    }
+
+
+    //returns a new bitmap, the bitmaps of the index are never changed
+    abstract RoaringBitmap evaluate(Map<Long, RoaringBitmap> moviesByCategory, RoaringBitmap allMovies);
+
+
+    private static List<RoaringBitmap> evaluateAll(List<CategoryExpression> expressions,
+                                                   Map<Long, RoaringBitmap> moviesByCategory,
+                                                   RoaringBitmap allMovies) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>(expressions.size());
+        for (CategoryExpression expression : expressions) {
+            bitmaps.add(expression.evaluate(moviesByCategory, allMovies));
+        }
+        return bitmaps;
+    }
+
+
+    private static final class CategoryLeaf extends CategoryExpression {
+        private final Long categoryId;
+
+        private CategoryLeaf(Long categoryId) {
+            this.categoryId = categoryId;
+        }
+
+        @Override
+        RoaringBitmap evaluate(Map<Long, RoaringBitmap> moviesByCategory, RoaringBitmap allMovies) {
+            RoaringBitmap movies = moviesByCategory.get(categoryId);
+            return movies == null ? new RoaringBitmap() : movies.clone();
+        }
+    }
+
+
+    private static final class And extends CategoryExpression {
+        private final List<CategoryExpression> parts;
+
+        private final List<CategoryExpression> negatedParts;
+
+        private And(List<CategoryExpression> parts, List<CategoryExpression> negatedParts) {
+            this.parts = parts;
+            this.negatedParts = negatedParts;
+        }
+
+        @Override
+        RoaringBitmap evaluate(Map<Long, RoaringBitmap> moviesByCategory, RoaringBitmap allMovies) {
+            RoaringBitmap result;
+            if (parts.isEmpty()) {
+                result = allMovies.clone();
+            }
+            else {
+                //the smallest bitmap first, so every following AND works on as few movies as possible
+                List<RoaringBitmap> bitmaps = evaluateAll(parts, moviesByCategory, allMovies);
+                bitmaps.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+                result = bitmaps.get(0);
+                for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+                    result.and(bitmaps.get(i));
+                }
+            }
+            if (!negatedParts.isEmpty() && !result.isEmpty()) {
+                List<RoaringBitmap> negated = evaluateAll(negatedParts, moviesByCategory, allMovies);
+                result.andNot(FastAggregation.or(negated.iterator()));
+            }
+            return result;
+        }
+    }
+
+
+    private static final class Or extends CategoryExpression {
+        private final List<CategoryExpression> parts;
+
+        private Or(List<CategoryExpression> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        RoaringBitmap evaluate(Map<Long, RoaringBitmap> moviesByCategory, RoaringBitmap allMovies) {
+            return FastAggregation.or(evaluateAll(parts, moviesByCategory, allMovies).iterator());
+        }
+    }
+}
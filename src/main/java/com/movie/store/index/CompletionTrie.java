@@ -0,0 +1,350 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.Completion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * This class is an immutable, path-compressed prefix tree (radix tree) of completions with precomputed top completions.
+ *
+ * Keys are sorted once, the completions below a node are a contiguous range of them. Nodes are flat arrays in
+ * breadth-first order, children of a node are next to each other and sorted by their first character, and an edge
+ * label is not stored but read from the first key of the child's range. A chain of single children is one node,
+ * so there are at most two nodes per key.
+ * A node with more than topK completions keeps its topK most popular ones, merged bottom-up from its children,
+ * so a lookup costs the length of the prefix plus topK and does not depend on the amount of keys.
+ *
+ * The trie is never changed after it was built and can be read by any amount of threads.
+ */
+final class CompletionTrie {
+
+    static final byte TITLE = 0;
+
+    static final byte ACTOR = 1;
+
+    private static final String[] TYPE_NAMES = {AutocompleteIndex.TITLE, AutocompleteIndex.ACTOR};
+
+    private final int topK;
+
+    //completions sorted by key
+    private final String[] keys;
+
+    private final String[] texts;
+
+    private final byte[] types;
+
+    private final long[] movieIds;
+
+    private final long[] weights;
+
+    //nodes, 0 is the root (empty prefix)
+    private final int[] depths;
+
+    private final int[] childStarts;
+
+    private final int[] childEnds;
+
+    private final int[] rangeStarts;
+
+    private final int[] rangeEnds;
+
+    //offset of the topK completions of a node in tops, -1 if the node has topK completions or less
+    private final int[] topStarts;
+
+    private final int[] tops;
+
+
+    private CompletionTrie(int topK, List<Entry> entries) {
+        this.topK = topK;
+        entries.sort((a, b) -> {
+            int byKey = a.key.compareTo(b.key);
+            if (byKey != 0) {
+                return byKey;
+            }
+            return a.weight != b.weight ? Long.compare(b.weight, a.weight) : a.text.compareTo(b.text);
+        });
+        int size = entries.size();
+        keys = new String[size];
+        texts = new String[size];
+        types = new byte[size];
+        movieIds = new long[size];
+        weights = new long[size];
+        for (int i = 0; i < size; i++) {
+            Entry entry = entries.get(i);
+            keys[i] = entry.key;
+            texts[i] = entry.text;
+            types[i] = entry.type;
+            movieIds[i] = entry.movieId;
+            weights[i] = entry.weight;
+        }
+
+        int capacity = 2 * size + 1;
+        int[] nodeDepths = new int[capacity];
+        int[] nodeChildStarts = new int[capacity];
+        int[] nodeChildEnds = new int[capacity];
+        int[] nodeRangeStarts = new int[capacity];
+        int[] nodeRangeEnds = new int[capacity];
+        nodeRangeEnds[0] = size;
+        int nodeCount = 1;
+
+        //the node array is the breadth-first queue, children are appended behind the nodes of the previous level
+        for (int node = 0; node < nodeCount; node++) {
+            int depth = nodeDepths[node];
+            int end = nodeRangeEnds[node];
+            int start = nodeRangeStarts[node];
+            //keys that end at this node come first in the sorted range
+            while (start < end && keys[start].length() == depth) {
+                start++;
+            }
+            nodeChildStarts[node] = nodeCount;
+            while (start < end) {
+                char label = keys[start].charAt(depth);
+                int groupEnd = start + 1;
+                while (groupEnd < end && keys[groupEnd].charAt(depth) == label) {
+                    groupEnd++;
+                }
+                //the first and the last key of a sorted group share the prefix of the whole group
+                nodeDepths[nodeCount] = commonPrefixLength(keys[start], keys[groupEnd - 1], depth + 1);
+                nodeRangeStarts[nodeCount] = start;
+                nodeRangeEnds[nodeCount] = groupEnd;
+                nodeCount++;
+                start = groupEnd;
+            }
+            nodeChildEnds[node] = nodeCount;
+        }
+
+        depths = Arrays.copyOf(nodeDepths, nodeCount);
+        childStarts = Arrays.copyOf(nodeChildStarts, nodeCount);
+        childEnds = Arrays.copyOf(nodeChildEnds, nodeCount);
+        rangeStarts = Arrays.copyOf(nodeRangeStarts, nodeCount);
+        rangeEnds = Arrays.copyOf(nodeRangeEnds, nodeCount);
+        topStarts = new int[nodeCount];
+        tops = computeTops();
+    }
+
+
+    /**
+     * @param topK maximum amount of completions returned by one lookup.
+     * @return builder of a trie.
+     */
+    static Builder builder(int topK) {
+        return new Builder(topK);
+    }
+
+
+    /**
+     * This method returns the most popular completions of a prefix.
+     * @param prefix is a normalized prefix (required).
+     * @param limit maximum amount of completions, not more than topK.
+     * @return completions from the most to the least popular, completions with the same popularity in key order.
+     */
+    List<Completion> complete(String prefix, int limit) {
+        int node = find(prefix);
+        if (node < 0) {
+            return new ArrayList<>();
+        }
+        int[] top = tops;
+        int offset = topStarts[node];
+        int count = Math.min(limit, topK);
+        if (offset < 0) {
+            //topK completions or less, sorting them is as cheap as reading stored ones
+            top = sortedByWeight(rangeStarts[node], rangeEnds[node]);
+            offset = 0;
+            count = Math.min(limit, top.length);
+        }
+        List<Completion> completions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            completions.add(completion(top[offset + i]));
+        }
+        return completions;
+    }
+
+
+    /**
+     * @return amount of completions.
+     */
+    int size() {
+        return keys.length;
+    }
+
+
+    //node whose range has all keys starting with the prefix, -1 if no key starts with it
+    private int find(String prefix) {
+        int node = 0;
+        int matched = 0;
+        while (matched < prefix.length()) {
+            int child = child(node, prefix.charAt(matched));
+            if (child < 0) {
+                return -1;
+            }
+            //the rest of the edge label is compared with the first key below the child
+            String key = keys[rangeStarts[child]];
+            int end = Math.min(depths[child], prefix.length());
+            for (int i = matched + 1; i < end; i++) {
+                if (key.charAt(i) != prefix.charAt(i)) {
+                    return -1;
+                }
+            }
+            matched = end;
+            node = child;
+        }
+        return node;
+    }
+
+
+    //binary search over the first characters of the edge labels of the children
+    private int child(int node, char label) {
+        int depth = depths[node];
+        int low = childStarts[node];
+        int high = childEnds[node] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char middleLabel = keys[rangeStarts[middle]].charAt(depth);
+            if (middleLabel < label) {
+                low = middle + 1;
+            }
+            else if (middleLabel > label) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+
+    //children have higher indexes than their parent, so walking backwards merges finished children into parents
+    private int[] computeTops() {
+        int[] result = new int[64];
+        int size = 0;
+        for (int node = depths.length - 1; node >= 0; node--) {
+            if (rangeEnds[node] - rangeStarts[node] <= topK) {
+                topStarts[node] = -1;
+                continue;
+            }
+            int[] candidates = new int[16];
+            int count = 0;
+            int terminalEnd = childStarts[node] < childEnds[node] ? rangeStarts[childStarts[node]] : rangeEnds[node];
+            for (int entry = rangeStarts[node]; entry < terminalEnd; entry++) {
+                candidates = add(candidates, count++, entry);
+            }
+            for (int child = childStarts[node]; child < childEnds[node]; child++) {
+                if (topStarts[child] >= 0) {
+                    for (int i = 0; i < topK; i++) {
+                        candidates = add(candidates, count++, result[topStarts[child] + i]);
+                    }
+                }
+                else {
+                    for (int entry = rangeStarts[child]; entry < rangeEnds[child]; entry++) {
+                        candidates = add(candidates, count++, entry);
+                    }
+                }
+            }
+            int[] sorted = sortedByWeight(Arrays.copyOf(candidates, count));
+            if (size + topK > result.length) {
+                result = Arrays.copyOf(result, Math.max(result.length * 2, size + topK));
+            }
+            System.arraycopy(sorted, 0, result, size, topK);
+            topStarts[node] = size;
+            size += topK;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+
+    private int[] sortedByWeight(int start, int end) {
+        int[] entries = new int[end - start];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = start + i;
+        }
+        return sortedByWeight(entries);
+    }
+
+
+    //the most popular first, equal popularity in key order
+    private int[] sortedByWeight(int[] entries) {
+        Integer[] boxed = new Integer[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            boxed[i] = entries[i];
+        }
+        Arrays.sort(boxed, (a, b) -> weights[a] != weights[b] ? Long.compare(weights[b], weights[a]) : Integer.compare(a, b));
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = boxed[i];
+        }
+        return entries;
+    }
+
+
+    private Completion completion(int entry) {
+        Long movieId = types[entry] == TITLE ? movieIds[entry] : null;
+        return new Completion(texts[entry], TYPE_NAMES[types[entry]], movieId, weights[entry]);
+    }
+
+
+    private static int[] add(int[] array, int position, int value) {
+        if (position == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+        }
+        array[position] = value;
+        return array;
+    }
+
+
+    private static int commonPrefixLength(String first, String last, int from) {
+        int length = Math.min(first.length(), last.length());
+        int i = from;
+        while (i < length && first.charAt(i) == last.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+
+    /**
+     * Collects completions of a trie, keys have to be normalized.
+     */
+    static final class Builder {
+        private final int topK;
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        private Builder(int topK) {
+            this.topK = topK;
+        }
+
+        void add(String key, String text, byte type, long movieId, long weight) {
+            if (!key.isEmpty()) {
+                entries.add(new Entry(key, text, type, movieId, weight));
+            }
+        }
+
+        CompletionTrie build() {
+            return new CompletionTrie(topK, entries);
+        }
+    }
+
+
+    private static final class Entry {
+        private final String key;
+
+        private final String text;
+
+        private final byte type;
+
+        private final long movieId;
+
+        private final long weight;
+
+        private Entry(String key, String text, byte type, long movieId, long weight) {
+            this.key = key;
+            this.text = text;
+            this.type = type;
+            this.movieId = movieId;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.Movie;
+import com.movie.store.dto.RentedMovie;
+import com.movie.store.dto.Statistics;
+import com.movie.store.event.MovieChangedEvent;
+import com.movie.store.event.MoviesChangedEvent;
+import com.movie.store.event.MoviesRentedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+
+/**
+ * This class is an in-memory ranking of rented movies by amount of purchases.
+ *
+ * It is seeded once from the aggregate query and then incremented by every committed rental,
+ * so reading the most popular movies does not touch the database.
+ * Writers are serialized, readers walk the sorted set without locking (weakly consistent while a rental is applied).
+ * Rentals and movie changes committed while the seed is read are kept aside and applied after the seed,
+ * a rental only if the seed has not counted it, so none is lost or counted twice.
+ */
+@Component
+public class PopularityLeaderboard {
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+
+    private volatile boolean ready;
+
+    //rentals committed while the leaderboard is seeded, by rental ID, null when it is not seeded
+    private Map<Long, Entry> pendingRentals;
+
+    private List<MovieChangedEvent> pendingChanges;
+
+
+    /**
+     * This method replaces the content of the leaderboard.
+     * @param statisticsList purchases of every rented movie (required).
+     */
+    public synchronized void rebuild(List<Statistics> statisticsList) {
+        entries.clear();
+        ranking.clear();
+        for (Statistics statistics : statisticsList) {
+            Entry entry = new Entry(statistics.getMovieId(), statistics.getMovieTitle(), statistics.getPurchases());
+            entries.put(entry.movieId, entry);
+            ranking.add(entry);
+        }
+        ready = true;
+    }
+
+
+    /**
+     * This method starts seeding, rentals and movie changes are kept aside until finishSeeding.
+     * It has to be called before the seed is read.
+     */
+    public synchronized void startSeeding() {
+        pendingRentals = new LinkedHashMap<>();
+        pendingChanges = new ArrayList<>();
+    }
+
+
+    /**
+     * @return IDs of the rentals committed since startSeeding, empty if the leaderboard is not seeded.
+     */
+    public synchronized Set<Long> pendingRentalIds() {
+        return pendingRentals == null ? new HashSet<>() : new HashSet<>(pendingRentals.keySet());
+    }
+
+
+    /**
+     * This method replaces the content of the leaderboard with the seed and applies what was kept aside while it was read.
+     * @param statisticsList purchases of every rented movie, read after startSeeding (required).
+     * @param checkedRentalIds IDs of pending rentals that were looked up in the snapshot of the seed (required).
+     * @param countedRentalIds IDs of checked rentals that the seed has counted (required).
+     * @return true if the leaderboard was seeded, false if a rental committed that was not checked yet.
+     */
+    public synchronized boolean finishSeeding(List<Statistics> statisticsList, Set<Long> checkedRentalIds, Set<Long> countedRentalIds) {
+        if (!checkedRentalIds.containsAll(pendingRentals.keySet())) {
+            return false;
+        }
+        Map<Long, Entry> rentals = pendingRentals;
+        List<MovieChangedEvent> changes = pendingChanges;
+        cancelSeeding();
+        rebuild(statisticsList);
+        for (Map.Entry<Long, Entry> rental : rentals.entrySet()) {
+            if (!countedRentalIds.contains(rental.getKey())) {
+                increment(rental.getValue().movieId, rental.getValue().movieTitle, 1);
+            }
+        }
+        //renaming or deleting again is harmless if the seed has already seen the change
+        for (MovieChangedEvent change : changes) {
+            onMovieChanged(change);
+        }
+        return true;
+    }
+
+
+    /**
+     * This method stops seeding without changing the leaderboard, what was kept aside is dropped.
+     */
+    public synchronized void cancelSeeding() {
+        pendingRentals = null;
+        pendingChanges = null;
+    }
+
+
+    /**
+     * This method adds purchases to a movie.
+     * @param movieId is a movie ID (required).
+     * @param movieTitle is a title of the movie (required).
+     * @param purchases is amount of new purchases.
+     */
+    public synchronized void increment(Long movieId, String movieTitle, long purchases) {
+        Entry previous = entries.get(movieId);
+        long total = previous == null ? purchases : previous.purchases + purchases;
+        replace(previous, new Entry(movieId, movieTitle, total));
+    }
+
+
+    /**
+     * This method returns a part of the ranking.
+     * @param offset amount of movies to skip.
+     * @param limit maximum amount of movies to return.
+     * @return movies from the most to the least purchased, movies with the same amount of purchases are ordered by ID.
+     */
+    public List<Statistics> top(int offset, int limit) {
+        List<Statistics> statisticsList = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<Entry> iterator = ranking.iterator();
+        for (int i = 0; i < offset && iterator.hasNext(); i++) {
+            iterator.next();
+        }
+        while (statisticsList.size() < limit && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            Statistics statistics = new Statistics();
+            statistics.setMovieId(entry.movieId);
+            statistics.setMovieTitle(entry.movieTitle);
+            statistics.setPurchases(entry.purchases);
+            statisticsList.add(statistics);
+        }
+        return statisticsList;
+    }
+
+
+    /**
+     * @param movieId is a movie ID (required).
+     * @return amount of purchases of the movie, 0 if it was never rented.
+     */
+    public synchronized long purchases(Long movieId) {
+        Entry entry = entries.get(movieId);
+        return entry == null ? 0 : entry.purchases;
+    }
+
+
+    /**
+     * @return true if the leaderboard was seeded and can be used.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+
+    /**
+     * This method counts rented movies after the rental was committed.
+     * @param event describes the rental.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onMoviesRented(MoviesRentedEvent event) {
+        for (RentedMovie rentedMovie : event.getRentedMovies()) {
+            Movie movie = rentedMovie.getMovie();
+            if (pendingRentals != null) {
+                //the seed may or may not have counted it, finishSeeding decides
+                pendingRentals.put(rentedMovie.getId(), new Entry(movie.getMovieId(), movie.getMovieTitle(), 1));
+            }
+            else {
+                increment(movie.getMovieId(), movie.getMovieTitle(), 1);
+            }
+        }
+    }
+
+
+    /**
+     * This method keeps titles up to date after a batch of movies was changed.
+     * @param event describes the changed movies.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onMoviesChanged(MoviesChangedEvent event) {
+        for (MovieChangedEvent change : event.getChanges()) {
+            onMovieChanged(change);
+        }
+    }
+
+
+    /**
+     * This method keeps titles up to date after a movie was changed or deleted.
+     * @param event describes the changed movie.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onMovieChanged(MovieChangedEvent event) {
+        if (pendingChanges != null) {
+            pendingChanges.add(event);
+            return;
+        }
+        Entry previous = entries.get(event.getMovieId());
+        if (previous == null) {
+            return;
+        }
+        if (event.isDeleted()) {
+            entries.remove(previous.movieId);
+            ranking.remove(previous);
+        }
+        else if (!previous.movieTitle.equals(event.getMovieTitle())) {
+            replace(previous, new Entry(previous.movieId, event.getMovieTitle(), previous.purchases));
+        }
+    }
+
+
+    private void replace(Entry previous, Entry entry) {
+        entries.put(entry.movieId, entry);
+        if (previous != null && previous.compareTo(entry) == 0) {
+            //same position (only the title changed), the set would keep the previous entry
+            ranking.remove(previous);
+            ranking.add(entry);
+            return;
+        }
+        //the new entry is added first, so readers never miss the movie
+        ranking.add(entry);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+    }
+
+
+    private static final class Entry implements Comparable<Entry> {
+        private final long movieId;
+
+        private final String movieTitle;
+
+        private final long purchases;
+
+        private Entry(long movieId, String movieTitle, long purchases) {
+            this.movieId = movieId;
+            this.movieTitle = movieTitle;
+            this.purchases = purchases;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (purchases != other.purchases) {
+                return Long.compare(other.purchases, purchases);
+            }
+            return Long.compare(movieId, other.movieId);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.MovieTitle;
+import com.movie.store.event.MovieChangedEvent;
+import com.movie.store.event.MoviesChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * This class is an in-memory trigram index over movie titles.
+ *
+ * Every title is upper-cased and split into overlapping 3-character grams, each gram keeps a sorted list of movie IDs.
+ * A substring search intersects the lists of the grams of the searched text (smallest list first)
+ * and then checks the remaining candidates, so only titles sharing all grams with the searched text are looked at.
+ */
+@Component
+public class TitleIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Long, String> titles = new HashMap<>();
+
+    private Map<Long, PostingList> postings = new HashMap<>();
+
+    private volatile boolean ready;
+
+
+    /**
+     * This method replaces the content of the index with given titles.
+     * @param movieTitles IDs and titles of all movies (required).
+     */
+    public void rebuild(Collection<? extends MovieTitle> movieTitles) {
+        Map<Long, String> newTitles = new HashMap<>(movieTitles.size() * 2);
+        Map<Long, PostingList> newPostings = new HashMap<>();
+
+        //ids are added in ascending order, so posting lists are only appended to
+        List<MovieTitle> sorted = new ArrayList<>(movieTitles);
+        sorted.sort(Comparator.comparing(MovieTitle::getMovieId));
+        for (MovieTitle movieTitle : sorted) {
+            String title = normalize(movieTitle.getMovieTitle());
+            newTitles.put(movieTitle.getMovieId(), title);
+            addGrams(newPostings, movieTitle.getMovieId(), title);
+        }
+
+        lock.writeLock().lock();
+        try {
+            titles = newTitles;
+            postings = newPostings;
+            ready = true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * This method adds a movie to the index or replaces its title if the movie is already indexed.
+     * @param movieId is a movie ID (required).
+     * @param movieTitle is a title of the movie (required).
+     */
+    public void put(Long movieId, String movieTitle) {
+        String title = normalize(movieTitle);
+        lock.writeLock().lock();
+        try {
+            String previous = titles.put(movieId, title);
+            if (previous != null) {
+                removeGrams(movieId, previous);
+            }
+            addGrams(postings, movieId, title);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * This method removes a movie from the index.
+     * @param movieId is a movie ID (required).
+     */
+    public void remove(Long movieId) {
+        lock.writeLock().lock();
+        try {
+            String previous = titles.remove(movieId);
+            if (previous != null) {
+                removeGrams(movieId, previous);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * This method returns one page of IDs of movies whose title contains given text (case insensitive).
+     * Results are ranked: exact title first, then titles starting with the text, then titles with a word
+     * starting with the text, then the rest. Within a rank earlier matches and shorter titles come first.
+     * Only the hits of the page are kept while the candidates are ranked, so memory does not depend on the amount of hits.
+     * @param text is a part of a title (required).
+     * @param after movie ID of the last hit of the previous page. If not specified the first page is returned.
+     * @param limit maximum amount of IDs to return.
+     * @return ranked list of movie IDs, empty if nothing matches or the movie of the cursor does not match any more.
+     */
+    public List<Long> search(String text, Long after, int limit) {
+        String needle = normalize(text);
+        //the page is the smallest hits after the cursor, the largest of them is on top of the heap
+        PriorityQueue<Hit> page = new PriorityQueue<>(Collections.reverseOrder());
+
+        lock.readLock().lock();
+        try {
+            Hit cursor = null;
+            if (after != null) {
+                String title = titles.get(after);
+                cursor = title == null ? null : match(after, title, needle);
+                if (cursor == null) {
+                    return new ArrayList<>();
+                }
+            }
+            if (needle.length() < GRAM_LENGTH) {
+                //too short for a gram lookup, the title map is scanned instead
+                for (Map.Entry<Long, String> entry : titles.entrySet()) {
+                    addToPage(page, limit, cursor, match(entry.getKey(), entry.getValue(), needle));
+                }
+            }
+            else {
+                for (long movieId : candidates(needle)) {
+                    addToPage(page, limit, cursor, match(movieId, titles.get(movieId), needle));
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+
+        List<Hit> hits = new ArrayList<>(page);
+        Collections.sort(hits);
+        List<Long> movieIds = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            movieIds.add(hit.movieId);
+        }
+        return movieIds;
+    }
+
+
+    /**
+     * @param movieId is a movie ID (required).
+     * @return title of the movie, null if it is not indexed.
+     */
+    public String title(Long movieId) {
+        lock.readLock().lock();
+        try {
+            return titles.get(movieId);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * @return true if the index was built and can be used for searching.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+
+    /**
+     * @return amount of indexed titles.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return titles.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * This method keeps the index up to date after a movie was added, changed or deleted.
+     * @param event describes the changed movie.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieChanged(MovieChangedEvent event) {
+        apply(List.of(event));
+    }
+
+
+    /**
+     * This method applies a batch of movie changes under one write lock.
+     * @param event describes the changed movies.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMoviesChanged(MoviesChangedEvent event) {
+        apply(event.getChanges());
+    }
+
+
+    private void apply(List<MovieChangedEvent> changes) {
+        //titles are normalized before the lock is taken
+        List<String> normalizedTitles = new ArrayList<>(changes.size());
+        for (MovieChangedEvent change : changes) {
+            normalizedTitles.add(change.isDeleted() ? null : normalize(change.getMovieTitle()));
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < changes.size(); i++) {
+                Long movieId = changes.get(i).getMovieId();
+                String title = normalizedTitles.get(i);
+                String previous = title == null ? titles.remove(movieId) : titles.put(movieId, title);
+                if (previous != null) {
+                    removeGrams(movieId, previous);
+                }
+                if (title != null) {
+                    addGrams(postings, movieId, title);
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    private long[] candidates(String needle) {
+        Set<Long> grams = grams(needle);
+        List<PostingList> lists = new ArrayList<>(grams.size());
+        for (Long gram : grams) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                return new long[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(PostingList::size));
+
+        PostingList smallest = lists.get(0);
+        long[] result = Arrays.copyOf(smallest.ids, smallest.size);
+        int size = result.length;
+        for (int i = 1; i < lists.size() && size > 0; i++) {
+            PostingList list = lists.get(i);
+            int kept = 0;
+            for (int j = 0; j < size; j++) {
+                if (list.contains(result[j])) {
+                    result[kept++] = result[j];
+                }
+            }
+            size = kept;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+
+    private static void addToPage(PriorityQueue<Hit> page, int limit, Hit cursor, Hit hit) {
+        if (hit == null || (cursor != null && hit.compareTo(cursor) <= 0)) {
+            return;
+        }
+        if (page.size() < limit) {
+            page.add(hit);
+        }
+        else if (hit.compareTo(page.peek()) < 0) {
+            page.poll();
+            page.add(hit);
+        }
+    }
+
+
+    //null if the title does not contain the needle
+    private static Hit match(long movieId, String title, String needle) {
+        int position = title.indexOf(needle);
+        if (position < 0) {
+            return null;
+        }
+        int rank;
+        if (title.length() == needle.length()) {
+            rank = 0;
+        }
+        else if (position == 0) {
+            rank = 1;
+        }
+        else if (!Character.isLetterOrDigit(title.charAt(position - 1))) {
+            rank = 2;
+        }
+        else {
+            rank = 3;
+        }
+        return new Hit(movieId, rank, position, title.length());
+    }
+
+
+    private static void addGrams(Map<Long, PostingList> postings, Long movieId, String title) {
+        for (Long gram : grams(title)) {
+            postings.computeIfAbsent(gram, key -> new PostingList()).add(movieId);
+        }
+    }
+
+
+    private void removeGrams(Long movieId, String title) {
+        for (Long gram : grams(title)) {
+            PostingList list = postings.get(gram);
+            if (list != null) {
+                list.remove(movieId);
+                if (list.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+
+    private static Set<Long> grams(String title) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= title.length(); i++) {
+            //three 16 bit chars packed into one long key
+            long gram = ((long) title.charAt(i) << 32) | ((long) title.charAt(i + 1) << 16) | title.charAt(i + 2);
+            grams.add(gram);
+        }
+        return grams;
+    }
+
+
+    static String normalize(String title) {
+        return title.toUpperCase(Locale.ROOT);
+    }
+
+
+    /**
+     * Sorted, growable array of movie IDs for one gram.
+     */
+    private static final class PostingList {
+        private long[] ids = new long[4];
+
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void add(long movieId) {
+            if (size > 0 && ids[size - 1] >= movieId) {
+                int position = Arrays.binarySearch(ids, 0, size, movieId);
+                if (position >= 0) {
+                    return;
+                }
+                insert(-position - 1, movieId);
+            }
+            else {
+                insert(size, movieId);
+            }
+        }
+
+        void remove(long movieId) {
+            int position = Arrays.binarySearch(ids, 0, size, movieId);
+            if (position >= 0) {
+                System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+                size--;
+            }
+        }
+
+        boolean contains(long movieId) {
+            return Arrays.binarySearch(ids, 0, size, movieId) >= 0;
+        }
+
+        private void insert(int position, long movieId) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = movieId;
+            size++;
+        }
+    }
+
+
+    private static final class Hit implements Comparable<Hit> {
+        private final long movieId;
+
+        private final int rank;
+
+        private final int position;
+
+        private final int length;
+
+        private Hit(long movieId, int rank, int position, int length) {
+            this.movieId = movieId;
+            this.rank = rank;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        public int compareTo(Hit other) {
+            if (rank != other.rank) {
+                return Integer.compare(rank, other.rank);
+            }
+            if (position != other.position) {
+                return Integer.compare(position, other.position);
+            }
+            if (length != other.length) {
+                return Integer.compare(length, other.length);
+            }
+            return Long.compare(movieId, other.movieId);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.movie.store.metrics;
+
+import com.movie.store.dto.EndpointStatistics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValuePercentile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This class keeps latency, JDBC statement and fetched row distributions of every controller method.
+ *
+ * The meters are registered in the Micrometer registry (endpoint.latency, endpoint.statements, endpoint.rows,
+ * tagged with endpoint=Controller.method), so they are also in /actuator/metrics.
+ * Percentiles are computed over a sliding window of the last minutes, counts and maximums since the start.
+ */
+@Component
+public class EndpointMetrics {
+
+    static final String LATENCY = "endpoint.latency";
+
+    static final String STATEMENTS = "endpoint.statements";
+
+    static final String ROWS = "endpoint.rows";
+
+    static final String ENDPOINT_TAG = "endpoint";
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    private final MeterRegistry registry;
+
+    private final Map<String, Meters> metersByEndpoint = new ConcurrentHashMap<>();
+
+
+    @Autowired
+    public EndpointMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+
+    /**
+     * This method records one finished request.
+     * @param endpoint is the controller method ("MovieController.getMovies") (required).
+     * @param latencyNanos time from the start of the request until the response was written.
+     * @param statements amount of JDBC statements the request has run.
+     * @param rows amount of rows the request has fetched.
+     */
+    public void record(String endpoint, long latencyNanos, long statements, long rows) {
+        Meters meters = metersByEndpoint.computeIfAbsent(endpoint, this::register);
+        meters.latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+        meters.statements.record(statements);
+        meters.rows.record(rows);
+    }
+
+
+    /**
+     * This method returns latency percentiles and statements and rows per request of every endpoint that was called.
+     * @return statistics ordered by endpoint.
+     */
+    public List<EndpointStatistics> getStatistics() {
+        List<EndpointStatistics> statisticsList = new ArrayList<>();
+        for (Map.Entry<String, Meters> entry : new TreeMap<>(metersByEndpoint).entrySet()) {
+            HistogramSnapshot latency = entry.getValue().latency.takeSnapshot();
+            HistogramSnapshot statements = entry.getValue().statements.takeSnapshot();
+            HistogramSnapshot rows = entry.getValue().rows.takeSnapshot();
+
+            EndpointStatistics statistics = new EndpointStatistics();
+            statistics.setEndpoint(entry.getKey());
+            statistics.setRequestCount(latency.count());
+            statistics.setLatencyP50(percentile(latency, 0, TimeUnit.MILLISECONDS));
+            statistics.setLatencyP99(percentile(latency, 1, TimeUnit.MILLISECONDS));
+            statistics.setLatencyP999(percentile(latency, 2, TimeUnit.MILLISECONDS));
+            statistics.setLatencyMax(latency.max(TimeUnit.MILLISECONDS));
+            statistics.setStatementsMean(statements.mean());
+            statistics.setStatementsP99(percentile(statements, 1, null));
+            statistics.setStatementsMax(statements.max());
+            statistics.setRowsMean(rows.mean());
+            statistics.setRowsP99(percentile(rows, 1, null));
+            statistics.setRowsMax(rows.max());
+            statisticsList.add(statistics);
+        }
+        return statisticsList;
+    }
+
+
+    private Meters register(String endpoint) {
+        Timer latency = Timer.builder(LATENCY)
+                .description("Latency of requests of a controller method")
+                .tag(ENDPOINT_TAG, endpoint)
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+        DistributionSummary statements = DistributionSummary.builder(STATEMENTS)
+                .description("JDBC statements per request of a controller method")
+                .tag(ENDPOINT_TAG, endpoint)
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+        DistributionSummary rows = DistributionSummary.builder(ROWS)
+                .description("Fetched rows per request of a controller method")
+                .tag(ENDPOINT_TAG, endpoint)
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+        return new Meters(latency, statements, rows);
+    }
+
+
+    //index into PERCENTILES, unit is null for distribution summaries
+    private static Double percentile(HistogramSnapshot snapshot, int index, TimeUnit unit) {
+        ValuePercentile[] values = snapshot.percentileValues();
+        if (index >= values.length) {
+            return null;
+        }
+        return unit == null ? values[index].value() : values[index].value(unit);
+    }
+
+
+    private static final class Meters {
+        private final Timer latency;
+
+        private final DistributionSummary statements;
+
+        private final DistributionSummary rows;
+
+        private Meters(Timer latency, DistributionSummary statements, DistributionSummary rows) {
+            this.latency = latency;
+            this.statements = statements;
+            this.rows = rows;
+        }
+    }
+}
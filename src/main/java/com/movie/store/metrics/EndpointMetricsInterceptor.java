@@ -0,0 +1,74 @@
+package com.movie.store.metrics;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+
+/**
+ * This class measures every request handled by a controller of the application.
+ *
+ * The latency is measured from the first dispatch of the request until the response was written,
+ * also when the controller returns a CompletableFuture and the work runs on a bulkhead.
+ * The QueryCounter of the request is attached to the request thread and travels with the work to the bulkhead threads.
+ */
+public class EndpointMetricsInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String CONTROLLER_PACKAGE = "com.movie.store.controller";
+
+    private static final String START_ATTRIBUTE = EndpointMetricsInterceptor.class.getName() + ".start";
+
+    private static final String COUNTER_ATTRIBUTE = EndpointMetricsInterceptor.class.getName() + ".counter";
+
+    private final EndpointMetrics endpointMetrics;
+
+
+    public EndpointMetricsInterceptor(EndpointMetrics endpointMetrics) {
+        this.endpointMetrics = endpointMetrics;
+    }
+
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!isMeasured(handler)) {
+            return true;
+        }
+        //preHandle runs again when the result of an asynchronous request is dispatched
+        QueryCounter counter = (QueryCounter) request.getAttribute(COUNTER_ATTRIBUTE);
+        if (counter == null) {
+            counter = new QueryCounter();
+            request.setAttribute(COUNTER_ATTRIBUTE, counter);
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        QueryCounter.attach(counter);
+        return true;
+    }
+
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryCounter.attach(null);
+    }
+
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        QueryCounter counter = (QueryCounter) request.getAttribute(COUNTER_ATTRIBUTE);
+        if (counter == null) {
+            return;
+        }
+        QueryCounter.attach(null);
+        long latency = System.nanoTime() - (Long) request.getAttribute(START_ATTRIBUTE);
+        HandlerMethod handlerMethod = (HandlerMethod) handler;
+        String endpoint = handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+        endpointMetrics.record(endpoint, latency, counter.getStatements(), counter.getRows());
+    }
+
+
+    private static boolean isMeasured(Object handler) {
+        return handler instanceof HandlerMethod
+                && ((HandlerMethod) handler).getBeanType().getPackageName().equals(CONTROLLER_PACKAGE);
+    }
+}
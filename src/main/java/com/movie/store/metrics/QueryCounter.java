@@ -0,0 +1,86 @@
+package com.movie.store.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class counts JDBC statements and fetched rows of one request.
+ *
+ * The counter of the request is attached to the thread that works on the request. Work handed to a bulkhead
+ * takes the counter with it (propagate is the task decorator of the bulkhead executors), so statements run
+ * on bulkhead threads are counted for the request that submitted them.
+ * Statements of threads without a counter (scheduled jobs, the rental log writer) are not counted.
+ */
+public final class QueryCounter {
+
+    private static final ThreadLocal<QueryCounter> CURRENT = new ThreadLocal<>();
+
+    private final AtomicLong statements = new AtomicLong();
+
+    private final AtomicLong rows = new AtomicLong();
+
+
+    /**
+     * @return the counter attached to the current thread, null if there is none.
+     */
+    public static QueryCounter current() {
+        return CURRENT.get();
+    }
+
+
+    /**
+     * This method attaches a counter to the current thread.
+     * @param counter is the counter of the request, null detaches the current counter.
+     */
+    public static void attach(QueryCounter counter) {
+        if (counter == null) {
+            CURRENT.remove();
+        }
+        else {
+            CURRENT.set(counter);
+        }
+    }
+
+
+    /**
+     * This method wraps a task, so it runs with the counter of the thread that submitted it.
+     * @param task is the submitted task (required).
+     * @return the task that attaches the counter while it runs.
+     */
+    public static Runnable propagate(Runnable task) {
+        QueryCounter counter = CURRENT.get();
+        if (counter == null) {
+            return task;
+        }
+        return () -> {
+            QueryCounter previous = CURRENT.get();
+            attach(counter);
+            try {
+                task.run();
+            }
+            finally {
+                attach(previous);
+            }
+        };
+    }
+
+
+    void statementExecuted() {
+        statements.incrementAndGet();
+    }
+
+
+    void rowFetched() {
+        rows.incrementAndGet();
+    }
+
+
+    public long getStatements() {
+        return statements.get();
+    }
+
+
+    public long getRows() {
+        return rows.get();
+    }
+}
@@ -0,0 +1,135 @@
+package com.movie.store.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+
+
+/**
+ * This class is a data source that counts executed statements and fetched rows for the QueryCounter of the current thread.
+ *
+ * Connections, statements and result sets are wrapped in proxies that only count and call the real objects.
+ * Every execute call is one statement (a JDBC batch is one statement), every successful ResultSet.next is one row.
+ */
+public class QueryCountingDataSource extends DelegatingDataSource {
+
+    public QueryCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(Connection.class, super.getConnection());
+    }
+
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(Connection.class, super.getConnection(username, password));
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <T> T wrap(Class<T> type, T target) {
+        InvocationHandler handler;
+        if (type == Connection.class) {
+            handler = new ConnectionHandler(target);
+        }
+        else if (type == ResultSet.class) {
+            handler = new ResultSetHandler(target);
+        }
+        else {
+            handler = new StatementHandler(target);
+        }
+        return (T) Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+
+    private static Object invoke(Object proxy, Object target, Method method, Object[] args) throws Throwable {
+        //a proxy is only equal to itself, the pool and hibernate compare the objects they have got
+        if (method.getName().equals("equals") && args != null && args.length == 1) {
+            return proxy == args[0];
+        }
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Object connection;
+
+        private ConnectionHandler(Object connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryCountingDataSource.invoke(proxy, connection, method, args);
+            if (result instanceof CallableStatement) {
+                return wrap(CallableStatement.class, (CallableStatement) result);
+            }
+            if (result instanceof PreparedStatement) {
+                return wrap(PreparedStatement.class, (PreparedStatement) result);
+            }
+            if (result instanceof Statement) {
+                return wrap(Statement.class, (Statement) result);
+            }
+            return result;
+        }
+    }
+
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Object statement;
+
+        private StatementHandler(Object statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().startsWith("execute")) {
+                QueryCounter counter = QueryCounter.current();
+                if (counter != null) {
+                    counter.statementExecuted();
+                }
+            }
+            Object result = QueryCountingDataSource.invoke(proxy, statement, method, args);
+            if (result instanceof ResultSet) {
+                return wrap(ResultSet.class, (ResultSet) result);
+            }
+            return result;
+        }
+    }
+
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final Object resultSet;
+
+        private ResultSetHandler(Object resultSet) {
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryCountingDataSource.invoke(proxy, resultSet, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                QueryCounter counter = QueryCounter.current();
+                if (counter != null) {
+                    counter.rowFetched();
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.movie.store.pricing;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * This class is one price tier: movies up to maxAgeInWeeks weeks old are rented for pricePerWeek.
+ * Instances are created once by PricingEngine and shared, so reading a tier does not allocate.
+ */
+@Getter
+public class PriceTier {
+    private final String name;
+
+    private final long maxAgeInWeeks;
+
+    private final BigDecimal pricePerWeek;
+
+    private final long pricePerWeekInCents;
+
+    public PriceTier(String name, long maxAgeInWeeks, BigDecimal pricePerWeek) {
+        this.name = name;
+        this.maxAgeInWeeks = maxAgeInWeeks;
+        this.pricePerWeek = pricePerWeek;
+        this.pricePerWeekInCents = pricePerWeek.movePointRight(2).longValueExact();
+    }
+}
@@ -0,0 +1,247 @@
+package com.movie.store.pricing;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import static java.time.temporal.ChronoUnit.WEEKS;
+
+
+/**
+ * This class prices movie rentals.
+ *
+ * A movie moves to the next tier as it gets older, also during a rental. Instead of adding the price week by week,
+ * the rental is split into the weeks that fall into each tier and every part is multiplied by the tier price,
+ * so the price of a rental is calculated in a constant amount of steps whatever the rental length is.
+ * Calculations are done in cents with primitive longs, only the returned BigDecimal is allocated.
+ *
+ * Today's date is kept as the pricing day and replaced at midnight (pricing.refresh-cron) or by the first call after it,
+ * so pricing a movie does not read the clock and the time zone on every call.
+ */
+@Component
+public class PricingEngine {
+
+    private static volatile PricingEngine current = new PricingEngine(new PricingProperties());
+
+    private final PriceTier[] tiers;
+
+    private volatile PricingDay pricingDay;
+
+
+    @Autowired
+    public PricingEngine(PricingProperties properties) {
+        List<PricingProperties.Tier> configuredTiers = properties.getTiers();
+        if (configuredTiers == null || configuredTiers.isEmpty()) {
+            throw new IllegalStateException("At least one price tier has to be configured");
+        }
+
+        tiers = new PriceTier[configuredTiers.size()];
+        long previousMaxAge = Long.MIN_VALUE;
+        for (int i = 0; i < tiers.length; i++) {
+            PricingProperties.Tier tier = configuredTiers.get(i);
+            boolean last = i == tiers.length - 1;
+            if (last != (tier.getMaxAgeInWeeks() == null)) {
+                throw new IllegalStateException("Only the last price tier must be without maxAgeInWeeks");
+            }
+            long maxAge = last ? Long.MAX_VALUE : tier.getMaxAgeInWeeks();
+            if (maxAge <= previousMaxAge) {
+                throw new IllegalStateException("Price tiers must be ordered by maxAgeInWeeks");
+            }
+            tiers[i] = new PriceTier(tier.getName(), maxAge, tier.getPricePerWeek());
+            previousMaxAge = maxAge;
+        }
+    }
+
+
+    @PostConstruct
+    void register() {
+        current = this;
+    }
+
+
+    /**
+     * This method gives access to the engine from places that are not Spring beans (for example entities).
+     * @return the engine configured by Spring, or an engine with default tiers before the context has started.
+     */
+    public static PricingEngine current() {
+        return current;
+    }
+
+
+    /**
+     * @param releaseDate is a release date of a movie (required).
+     * @param date is the date the age is calculated for (required).
+     * @return amount of full weeks between release date and given date.
+     */
+    public long ageInWeeks(LocalDate releaseDate, LocalDate date) {
+        return WEEKS.between(releaseDate, date);
+    }
+
+
+    /**
+     * @param ageInWeeks is age of a movie in weeks.
+     * @return the price tier of a movie with given age.
+     */
+    public PriceTier tierFor(long ageInWeeks) {
+        for (PriceTier tier : tiers) {
+            if (ageInWeeks <= tier.getMaxAgeInWeeks()) {
+                return tier;
+            }
+        }
+        return tiers[tiers.length - 1];
+    }
+
+
+    /**
+     * @param releaseDate is a release date of a movie (required).
+     * @return the price tier of a movie released on given date as of today.
+     */
+    public PriceTier tierFor(LocalDate releaseDate) {
+        return assign(releaseDate).getTier();
+    }
+
+
+    /**
+     * This method assigns a movie its price tier as of today.
+     * @param releaseDate is a release date of a movie (required).
+     * @return the tier and the day on which the movie moves to the next tier.
+     */
+    public TierAssignment assign(LocalDate releaseDate) {
+        return assign(releaseDate.toEpochDay(), today());
+    }
+
+
+    //a movie is in the first tier whose last day (release day + (maxAgeInWeeks + 1) weeks - 1) is not before today
+    TierAssignment assign(long releaseDay, long today) {
+        for (PriceTier tier : tiers) {
+            if (tier.getMaxAgeInWeeks() == Long.MAX_VALUE) {
+                return new TierAssignment(this, tier, Long.MAX_VALUE);
+            }
+            long nextTierDay = releaseDay + (tier.getMaxAgeInWeeks() + 1) * 7;
+            if (today < nextTierDay) {
+                return new TierAssignment(this, tier, nextTierDay);
+            }
+        }
+        return new TierAssignment(this, tiers[tiers.length - 1], Long.MAX_VALUE);
+    }
+
+
+    /**
+     * @return today's date as epoch day.
+     */
+    public long today() {
+        return pricingDay().epochDay;
+    }
+
+
+    /**
+     * This method replaces the pricing day with today, it runs at midnight.
+     */
+    @Scheduled(cron = "${pricing.refresh-cron:0 0 0 * * *}")
+    public void refreshPricingDay() {
+        LocalDate date = LocalDate.now();
+        long end = date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        pricingDay = new PricingDay(date, end);
+    }
+
+
+    private PricingDay pricingDay() {
+        PricingDay day = pricingDay;
+        if (day == null || System.currentTimeMillis() >= day.endMillis) {
+            refreshPricingDay();
+            day = pricingDay;
+        }
+        return day;
+    }
+
+
+    /**
+     * This method returns the price of a rental in cents without allocating.
+     * @param ageInWeeks is age of a movie in weeks when the rental starts.
+     * @param rentingTimeInWeeks is amount of rented weeks.
+     * @return price of the rental in cents.
+     */
+    public long rentalPriceInCents(long ageInWeeks, int rentingTimeInWeeks) {
+        if (rentingTimeInWeeks <= 0) {
+            return 0;
+        }
+        long firstWeek = ageInWeeks;
+        long lastWeek = ageInWeeks + rentingTimeInWeeks - 1;
+
+        long total = 0;
+        long tierStart = Long.MIN_VALUE;
+        for (PriceTier tier : tiers) {
+            long from = Math.max(firstWeek, tierStart);
+            long to = Math.min(lastWeek, tier.getMaxAgeInWeeks());
+            if (to >= from) {
+                total += (to - from + 1) * tier.getPricePerWeekInCents();
+            }
+            if (tier.getMaxAgeInWeeks() >= lastWeek) {
+                break;
+            }
+            tierStart = tier.getMaxAgeInWeeks() + 1;
+        }
+        return total;
+    }
+
+
+    /**
+     * This method returns the price of a rental.
+     * The scale of the result is the largest scale of the used tier prices, as if the weekly prices were added up.
+     * @param ageInWeeks is age of a movie in weeks when the rental starts.
+     * @param rentingTimeInWeeks is amount of rented weeks.
+     * @return price of the rental.
+     */
+    public BigDecimal rentalPrice(long ageInWeeks, int rentingTimeInWeeks) {
+        long cents = rentalPriceInCents(ageInWeeks, rentingTimeInWeeks);
+
+        int scale = 0;
+        if (rentingTimeInWeeks > 0) {
+            long lastWeek = ageInWeeks + rentingTimeInWeeks - 1;
+            long tierStart = Long.MIN_VALUE;
+            for (PriceTier tier : tiers) {
+                if (ageInWeeks <= tier.getMaxAgeInWeeks() && lastWeek >= tierStart) {
+                    scale = Math.max(scale, tier.getPricePerWeek().scale());
+                }
+                if (tier.getMaxAgeInWeeks() >= lastWeek) {
+                    break;
+                }
+                tierStart = tier.getMaxAgeInWeeks() + 1;
+            }
+        }
+        return BigDecimal.valueOf(cents, 2).setScale(scale);
+    }
+
+
+    /**
+     * This method returns the price of a rental that starts today.
+     * @param releaseDate is a release date of a movie (required).
+     * @param rentingTimeInWeeks is amount of rented weeks.
+     * @return price of the rental.
+     */
+    public BigDecimal rentalPrice(LocalDate releaseDate, int rentingTimeInWeeks) {
+        return rentalPrice(ageInWeeks(releaseDate, pricingDay().date), rentingTimeInWeeks);
+    }
+
+
+    private static final class PricingDay {
+        private final LocalDate date;
+
+        private final long epochDay;
+
+        //first millisecond of the next day
+        private final long endMillis;
+
+        private PricingDay(LocalDate date, long endMillis) {
+            this.date = date;
+            this.epochDay = date.toEpochDay();
+            this.endMillis = endMillis;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.movie.store.pricing;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class holds price tiers from application.properties (prefix "pricing").
+ * Tiers are ordered by movie age, the last tier has no maxAgeInWeeks and covers all older movies.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "pricing")
+public class PricingProperties {
+
+    private List<Tier> tiers = new ArrayList<>(List.of(
+            new Tier("New movie", 52L, new BigDecimal("5")),
+            new Tier("Regular movie", 155L, new BigDecimal("3.49")),
+            new Tier("Old movie", null, new BigDecimal("1.99"))
+    ));
+
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Tier {
+        private String name;
+
+        //inclusive, null for the last tier
+        private Long maxAgeInWeeks;
+
+        private BigDecimal pricePerWeek;
+
+        public Tier(String name, Long maxAgeInWeeks, BigDecimal pricePerWeek) {
+            this.name = name;
+            this.maxAgeInWeeks = maxAgeInWeeks;
+            this.pricePerWeek = pricePerWeek;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.movie.store.pricing;
+
+/**
+ * This class is the price tier of one movie and the first day on which the movie is old enough for the next tier.
+ *
+ * A movie keeps its assignment, so the tier is computed when the movie is loaded and again only when the movie
+ * reaches its next tier, reading the tier in between only compares the pricing day with validUntilDay.
+ */
+public final class TierAssignment {
+
+    private final PricingEngine engine;
+
+    private final PriceTier tier;
+
+    //epoch day, Long.MAX_VALUE in the last tier
+    private final long validUntilDay;
+
+
+    TierAssignment(PricingEngine engine, PriceTier tier, long validUntilDay) {
+        this.engine = engine;
+        this.tier = tier;
+        this.validUntilDay = validUntilDay;
+    }
+
+
+    public PriceTier getTier() {
+        return tier;
+    }
+
+
+    public long getValidUntilDay() {
+        return validUntilDay;
+    }
+
+
+    /**
+     * @param engine is the engine that prices the movie now (required).
+     * @return true if the assignment was made by given engine and the movie has not reached the next tier yet.
+     */
+    public boolean isValid(PricingEngine engine) {
+        return this.engine == engine && engine.today() < validUntilDay;
+    }
+}
@@ -0,0 +1,582 @@
+package com.movie.store.recommendation;
+
+import com.movie.store.dto.Recommendation;
+import com.movie.store.event.MovieChangedEvent;
+import com.movie.store.event.MoviesChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * This class is an in-memory sparse matrix of movies rented by the same users ("renters of this also rented").
+ *
+ * Movie IDs are mapped to dense int indexes, every movie has a row of neighbor index -> amount of users
+ * who rented both movies, all in open-addressing arrays of primitive ints (no boxed keys or map entries).
+ * A rented movie is counted with the last userWindow distinct movies of the same user, a movie the user
+ * still has in the window is not counted again. A row keeps at most maxNeighbors neighbors: when it is full,
+ * the half that was rented together least often is dropped, so the memory is bounded by movies * maxNeighbors
+ * and counts of dropped neighbors start again from zero (popular pairs stay, rare ones are approximate).
+ * Writers and readers use a read-write lock, a rebuild fills a new table and swaps it in.
+ */
+@Component
+public class CoOccurrenceMatrix {
+
+    private final int userWindow;
+
+    private final int maxNeighbors;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Table table = new Table();
+
+    private volatile boolean ready;
+
+
+    @Autowired
+    public CoOccurrenceMatrix(RecommendationProperties properties) {
+        this(properties.getUserWindow(), properties.getMaxNeighbors());
+    }
+
+
+    public CoOccurrenceMatrix(int userWindow, int maxNeighbors) {
+        if (userWindow < 1 || maxNeighbors < 1) {
+            throw new IllegalStateException("userWindow and maxNeighbors must be positive");
+        }
+        this.userWindow = userWindow;
+        this.maxNeighbors = maxNeighbors;
+    }
+
+
+    /**
+     * @return a builder that replaces the content of the matrix, rentals have to be added ordered by user.
+     */
+    public Builder builder() {
+        return new Builder();
+    }
+
+
+    /**
+     * This method counts movies rented by a user.
+     * @param previousMovieIds movies the user has rented before, the most recent first (required).
+     * Only the first userWindow distinct movies are used.
+     * @param rentedMovieIds the rented movies in the order of the rental (required).
+     */
+    public void addRentals(List<Long> previousMovieIds, List<Long> rentedMovieIds) {
+        lock.writeLock().lock();
+        try {
+            Window window = new Window(userWindow);
+            //oldest first, so the most recent movie ends up at the front
+            for (int i = Math.min(previousMovieIds.size(), userWindow) - 1; i >= 0; i--) {
+                window.moveToFront(table.add(previousMovieIds.get(i)));
+                window.trim();
+            }
+            for (Long movieId : rentedMovieIds) {
+                rent(table, window, table.add(movieId));
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * This method returns movies most often rented by the renters of a movie.
+     * @param movieId is a movie ID (required).
+     * @param limit maximum amount of movies to return.
+     * @return movies ordered by amount of common renters (the most first), then by movie ID,
+     * without titles, empty if the movie was never rented together with another one.
+     */
+    public List<Recommendation> top(Long movieId, int limit) {
+        lock.readLock().lock();
+        try {
+            int movie = table.indexOf(movieId);
+            if (movie < 0 || table.rows[movie] == null || limit <= 0) {
+                return new ArrayList<>();
+            }
+            return table.rows[movie].top(table.movieIds, limit);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * This method removes a movie, rows of other movies skip it from now on.
+     * @param movieId is a movie ID (required).
+     */
+    public void remove(Long movieId) {
+        lock.writeLock().lock();
+        try {
+            int movie = table.indexOf(movieId);
+            if (movie >= 0) {
+                table.rows[movie] = null;
+                table.movieIds[movie] = Table.REMOVED;
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * @return true if the matrix was built and can be used.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+
+    /**
+     * @return amount of movies with a row.
+     */
+    public int getMovieCount() {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (int i = 0; i < table.size; i++) {
+                if (table.rows[i] != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * @return amount of stored (movie, neighbor) counts, every pair is stored in the rows of both movies.
+     */
+    public long getNeighborCount() {
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (int i = 0; i < table.size; i++) {
+                if (table.rows[i] != null) {
+                    count += table.rows[i].size;
+                }
+            }
+            return count;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * This method estimates the heap used by the matrix from the lengths of its arrays
+     * (16 bytes per array and object header, 4 bytes per reference).
+     * @return estimated size of the matrix in bytes.
+     */
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 16 + 16L + 8L * table.indexKeys.length + 16 + 4L * table.indexValues.length
+                    + 16 + 8L * table.movieIds.length + 16 + 4L * table.rows.length;
+            for (int i = 0; i < table.size; i++) {
+                Row row = table.rows[i];
+                if (row != null) {
+                    bytes += 24 + 2 * (16 + 4L * row.keys.length);
+                }
+            }
+            return bytes;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * This method removes a deleted movie after the change was committed.
+     * @param event describes the changed movie.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieChanged(MovieChangedEvent event) {
+        if (event.isDeleted()) {
+            remove(event.getMovieId());
+        }
+    }
+
+
+    /**
+     * This method removes the deleted movies of a batch after the batch was committed.
+     * @param event describes the changed movies.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMoviesChanged(MoviesChangedEvent event) {
+        for (MovieChangedEvent change : event.getChanges()) {
+            onMovieChanged(change);
+        }
+    }
+
+
+    //counts a rented movie with the movies in the window of the user
+    private void rent(Table target, Window window, int movie) {
+        if (window.moveToFront(movie)) {
+            return;
+        }
+        for (int i = 1; i < window.size; i++) {
+            int other = window.movies[i];
+            target.row(movie).increment(other, maxNeighbors);
+            target.row(other).increment(movie, maxNeighbors);
+        }
+        window.trim();
+    }
+
+
+    /**
+     * Fills a new table from rentals ordered by user and swaps it in with build.
+     */
+    public final class Builder {
+
+        private final Table target = new Table();
+
+        private final Window window = new Window(userWindow);
+
+        private long userId;
+
+        private boolean empty = true;
+
+        private Builder() {
+        }
+
+        /**
+         * This method counts one rental, rentals of a user have to be added in the order they were rented.
+         * @param userId is a user ID.
+         * @param movieId is a movie ID.
+         */
+        public void add(long userId, long movieId) {
+            if (empty || userId != this.userId) {
+                window.clear();
+                this.userId = userId;
+                empty = false;
+            }
+            rent(target, window, target.add(movieId));
+        }
+
+        /**
+         * This method replaces the content of the matrix with the added rentals.
+         */
+        public void build() {
+            lock.writeLock().lock();
+            try {
+                table = target;
+                ready = true;
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+
+    //movie ID -> dense index in an open-addressing table, rows by index
+    private static final class Table {
+
+        //movieIds of deleted movies, so stale neighbors are skipped
+        private static final long REMOVED = Long.MIN_VALUE;
+
+        private long[] indexKeys = new long[16];
+
+        //index + 1, 0 is an empty slot
+        private int[] indexValues = new int[16];
+
+        private long[] movieIds = new long[16];
+
+        private Row[] rows = new Row[16];
+
+        private int size;
+
+        private int indexOf(long movieId) {
+            int mask = indexKeys.length - 1;
+            for (int slot = hash(movieId) & mask; indexValues[slot] != 0; slot = (slot + 1) & mask) {
+                if (indexKeys[slot] == movieId) {
+                    int movie = indexValues[slot] - 1;
+                    return movieIds[movie] == REMOVED ? -1 : movie;
+                }
+            }
+            return -1;
+        }
+
+        private int add(long movieId) {
+            int mask = indexKeys.length - 1;
+            int slot = hash(movieId) & mask;
+            for (; indexValues[slot] != 0; slot = (slot + 1) & mask) {
+                if (indexKeys[slot] == movieId) {
+                    return indexValues[slot] - 1;
+                }
+            }
+            if (size == movieIds.length) {
+                movieIds = Arrays.copyOf(movieIds, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            movieIds[size] = movieId;
+            indexKeys[slot] = movieId;
+            indexValues[slot] = ++size;
+            if (size * 4 > indexKeys.length * 3) {
+                resizeIndex();
+            }
+            return size - 1;
+        }
+
+        private Row row(int movie) {
+            Row row = rows[movie];
+            if (row == null) {
+                row = new Row();
+                rows[movie] = row;
+            }
+            return row;
+        }
+
+        private void resizeIndex() {
+            long[] oldKeys = indexKeys;
+            int[] oldValues = indexValues;
+            indexKeys = new long[oldKeys.length * 2];
+            indexValues = new int[oldKeys.length * 2];
+            int mask = indexKeys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != 0) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (indexValues[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    indexKeys[slot] = oldKeys[i];
+                    indexValues[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            //finalizer of MurmurHash3, IDs from a sequence would otherwise fill neighboring slots
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+    }
+
+
+    //neighbor index + 1 -> amount of common renters, in an open-addressing table
+    private static final class Row {
+
+        private int[] keys = new int[4];
+
+        private int[] counts = new int[4];
+
+        private int size;
+
+        private void increment(int neighbor, int maxNeighbors) {
+            int key = neighbor + 1;
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            for (; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    counts[slot]++;
+                    return;
+                }
+            }
+            if (size >= maxNeighbors) {
+                prune();
+                put(key, 1);
+                return;
+            }
+            keys[slot] = key;
+            counts[slot] = 1;
+            size++;
+            if (size * 4 > keys.length * 3) {
+                rehash(keys.length * 2);
+            }
+        }
+
+        //keeps the half of the neighbors with the highest counts, ties at the median are kept in slot order
+        private void prune() {
+            int[] sortedCounts = new int[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    sortedCounts[n++] = counts[i];
+                }
+            }
+            Arrays.sort(sortedCounts);
+            int keep = size / 2;
+            if (keep == 0) {
+                rehash(keys.length, Integer.MAX_VALUE, 0);
+                return;
+            }
+            int threshold = sortedCounts[size - keep];
+            int aboveThreshold = 0;
+            for (int i = size - 1; i >= 0 && sortedCounts[i] > threshold; i--) {
+                aboveThreshold++;
+            }
+            rehash(keys.length, threshold, keep - aboveThreshold);
+        }
+
+        private void rehash(int capacity) {
+            rehash(capacity, 0, 0);
+        }
+
+        //moves neighbors with a count above minCount and the first atMinCount with minCount into new arrays
+        private void rehash(int capacity, int minCount, int atMinCount) {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new int[capacity];
+            counts = new int[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0 && (oldCounts[i] > minCount || (oldCounts[i] == minCount && atMinCount-- > 0))) {
+                    put(oldKeys[i], oldCounts[i]);
+                }
+            }
+        }
+
+        private void put(int key, int count) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            counts[slot] = count;
+            size++;
+        }
+
+        //the limit most common neighbors with a min-heap on (count, -movieId)
+        private List<Recommendation> top(long[] movieIds, int limit) {
+            int capacity = Math.min(limit, size);
+            int[] heapCounts = new int[capacity];
+            long[] heapMovieIds = new long[capacity];
+            int heapSize = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == 0) {
+                    continue;
+                }
+                long movieId = movieIds[keys[i] - 1];
+                if (movieId == Table.REMOVED) {
+                    continue;
+                }
+                int count = counts[i];
+                if (heapSize < capacity) {
+                    heapCounts[heapSize] = count;
+                    heapMovieIds[heapSize] = movieId;
+                    siftUp(heapCounts, heapMovieIds, heapSize++);
+                }
+                else if (capacity > 0 && isBefore(count, movieId, heapCounts[0], heapMovieIds[0])) {
+                    heapCounts[0] = count;
+                    heapMovieIds[0] = movieId;
+                    siftDown(heapCounts, heapMovieIds, heapSize);
+                }
+            }
+
+            Recommendation[] recommendations = new Recommendation[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                recommendations[i] = new Recommendation(heapMovieIds[0], null, (long) heapCounts[0]);
+                heapCounts[0] = heapCounts[i];
+                heapMovieIds[0] = heapMovieIds[i];
+                siftDown(heapCounts, heapMovieIds, i);
+            }
+            return new ArrayList<>(Arrays.asList(recommendations));
+        }
+
+        private static boolean isBefore(int count, long movieId, int otherCount, long otherMovieId) {
+            return count > otherCount || (count == otherCount && movieId < otherMovieId);
+        }
+
+        //the root of the heap is the recommendation that comes last
+        private static void siftUp(int[] heapCounts, long[] heapMovieIds, int position) {
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (!isBefore(heapCounts[parent], heapMovieIds[parent], heapCounts[position], heapMovieIds[position])) {
+                    return;
+                }
+                swap(heapCounts, heapMovieIds, parent, position);
+                position = parent;
+            }
+        }
+
+        private static void siftDown(int[] heapCounts, long[] heapMovieIds, int heapSize) {
+            int position = 0;
+            while (true) {
+                int last = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < heapSize && isBefore(heapCounts[last], heapMovieIds[last], heapCounts[left], heapMovieIds[left])) {
+                    last = left;
+                }
+                if (right < heapSize && isBefore(heapCounts[last], heapMovieIds[last], heapCounts[right], heapMovieIds[right])) {
+                    last = right;
+                }
+                if (last == position) {
+                    return;
+                }
+                swap(heapCounts, heapMovieIds, position, last);
+                position = last;
+            }
+        }
+
+        private static void swap(int[] heapCounts, long[] heapMovieIds, int i, int j) {
+            int count = heapCounts[i];
+            heapCounts[i] = heapCounts[j];
+            heapCounts[j] = count;
+            long movieId = heapMovieIds[i];
+            heapMovieIds[i] = heapMovieIds[j];
+            heapMovieIds[j] = movieId;
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+
+    //the last distinct movies of one user, the most recent first
+    private static final class Window {
+
+        private final int[] movies;
+
+        private int size;
+
+        private Window(int capacity) {
+            //one more for the rented movie, it is at the front while it is counted with the others
+            movies = new int[capacity + 1];
+        }
+
+        //puts a movie to the front, returns true if it already was in the window
+        private boolean moveToFront(int movie) {
+            int position = 0;
+            while (position < size && movies[position] != movie) {
+                position++;
+            }
+            boolean found = position < size;
+            if (!found) {
+                size++;
+            }
+            System.arraycopy(movies, 0, movies, 1, position);
+            movies[0] = movie;
+            return found;
+        }
+
+        //drops the oldest movie after a new one was counted
+        private void trim() {
+            size = Math.min(size, movies.length - 1);
+        }
+
+        private void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.movie.store.recommendation;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * This class holds settings of the co-occurrence matrix from application.properties (prefix "recommendation").
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "recommendation")
+public class RecommendationProperties {
+
+    //a rented movie is counted together with this many movies the user rented last
+    private int userWindow = 20;
+
+    //neighbors kept per movie, the least rented together are dropped when a row is full
+    private int maxNeighbors = 200;
+}
@@ -0,0 +1,276 @@
+package com.movie.store.rental;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+
+/**
+ * This class is an append-only log of accepted checkouts on the local disk.
+ *
+ * Every entry is one line. append returns after the entry was forced to the disk (fsync),
+ * entries appended at the same time share one fsync. A checkpoint file keeps the offset up to which entries
+ * were saved to the database, entries after it are read again after a restart.
+ * A line without its line break at the end of the file was never acknowledged and is dropped when the log is opened.
+ * Once all entries are saved and the log is larger than COMPACT_SIZE it is truncated.
+ * Entries that can not be saved are appended to a dead letter file next to the log, which is never truncated.
+ *
+ * append may be called from any thread, read, checkpoint and deadLetter only from one writer thread.
+ */
+public class RentalJournal implements Closeable {
+
+    static final String LOG_FILE = "rentals.log";
+
+    static final String CHECKPOINT_FILE = "rentals.checkpoint";
+
+    static final String DEAD_LETTER_FILE = "rentals.deadletter";
+
+    private static final long COMPACT_SIZE = 64L * 1024 * 1024;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel log;
+
+    private final Path checkpointFile;
+
+    private final Path deadLetterFile;
+
+    private final Object appendLock = new Object();
+
+    private final Object forceLock = new Object();
+
+    //end of the last appended entry, guarded by appendLock
+    private long appendedPosition;
+
+    //end of the last entry on the disk, entries up to it can be read
+    private volatile long forcedPosition;
+
+    private long checkpoint;
+
+
+    /**
+     * This method opens the log in a directory, the directory and the files are created if they do not exist.
+     * @param directory is a directory of the log (required).
+     * @throws IOException if the log can not be opened.
+     */
+    public RentalJournal(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.log = FileChannel.open(directory.resolve(LOG_FILE), CREATE, READ, WRITE);
+        this.checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        this.deadLetterFile = directory.resolve(DEAD_LETTER_FILE);
+
+        long end = endOfLastEntry();
+        if (end < log.size()) {
+            log.truncate(end);
+            log.force(true);
+        }
+        //a checkpoint behind the end is left by a crash while the log was truncated
+        checkpoint = Math.min(readCheckpoint(), end);
+        appendedPosition = end;
+        forcedPosition = end;
+    }
+
+
+    /**
+     * This method appends an entry and waits until it is on the disk.
+     * @param entry is one entry without line breaks (required).
+     * @throws IOException if the entry could not be written.
+     */
+    public void append(byte[] entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length + 1);
+        buffer.put(entry).put((byte) '\n').flip();
+
+        long end;
+        synchronized (appendLock) {
+            long position = appendedPosition;
+            while (buffer.hasRemaining()) {
+                position += log.write(buffer, position);
+            }
+            appendedPosition = position;
+            end = position;
+        }
+
+        synchronized (forceLock) {
+            //an fsync of another thread may already have covered this entry
+            if (forcedPosition < end) {
+                long target;
+                synchronized (appendLock) {
+                    target = appendedPosition;
+                }
+                log.force(false);
+                forcedPosition = target;
+            }
+        }
+    }
+
+
+    /**
+     * This method reads entries that are on the disk.
+     * @param position is the offset of the first entry to read, getCheckpoint or the end of the previous batch.
+     * @param maxEntries maximum amount of entries to read.
+     * @return read entries and the offset after the last of them.
+     * @throws IOException if the log can not be read.
+     */
+    public Batch read(long position, int maxEntries) throws IOException {
+        long end = forcedPosition;
+        List<byte[]> entries = new ArrayList<>();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        long readPosition = position;
+        long entriesEnd = position;
+        while (entries.size() < maxEntries && readPosition < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - readPosition));
+            int read = log.read(buffer, readPosition);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining() && entries.size() < maxEntries) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    entries.add(line.toByteArray());
+                    line.reset();
+                    entriesEnd = readPosition + buffer.position();
+                }
+                else {
+                    line.write(b);
+                }
+            }
+            readPosition += read;
+        }
+        return new Batch(entries, entriesEnd);
+    }
+
+
+    /**
+     * @return offset of the first entry that is not saved to the database.
+     */
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+
+    /**
+     * This method stores the offset up to which entries are saved to the database.
+     * The log is truncated if all entries are saved and it is larger than COMPACT_SIZE.
+     * @param position is the end of the saved batch.
+     * @throws IOException if the checkpoint can not be written.
+     */
+    public void checkpoint(long position) throws IOException {
+        if (position >= COMPACT_SIZE) {
+            synchronized (forceLock) {
+                synchronized (appendLock) {
+                    if (position == appendedPosition) {
+                        log.truncate(0);
+                        log.force(true);
+                        appendedPosition = 0;
+                        forcedPosition = 0;
+                        position = 0;
+                    }
+                }
+            }
+        }
+        Path temporaryFile = checkpointFile.resolveSibling(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(Long.toString(position).getBytes(StandardCharsets.US_ASCII)));
+            channel.force(true);
+        }
+        Files.move(temporaryFile, checkpointFile, ATOMIC_MOVE, REPLACE_EXISTING);
+        checkpoint = position;
+    }
+
+
+    /**
+     * This method appends entries that can not be saved to the dead letter file and waits until they are on the disk.
+     * @param entries are entries without line breaks (required).
+     * @throws IOException if the entries could not be written.
+     */
+    public void deadLetter(List<byte[]> entries) throws IOException {
+        try (FileChannel channel = FileChannel.open(deadLetterFile, CREATE, WRITE, APPEND)) {
+            for (byte[] entry : entries) {
+                ByteBuffer buffer = ByteBuffer.allocate(entry.length + 1);
+                buffer.put(entry).put((byte) '\n').flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(false);
+        }
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        String value = new String(Files.readAllBytes(checkpointFile), StandardCharsets.US_ASCII).trim();
+        return value.isEmpty() ? 0 : Long.parseLong(value);
+    }
+
+
+    //offset after the last line break, scanned backwards from the end of the file
+    private long endOfLastEntry() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        long end = log.size();
+        while (end > 0) {
+            int length = (int) Math.min(buffer.capacity(), end);
+            buffer.clear();
+            buffer.limit(length);
+            long start = end - length;
+            while (buffer.hasRemaining()) {
+                if (log.read(buffer, start + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+
+    /**
+     * Entries read from the log and the offset after the last of them.
+     */
+    public static final class Batch {
+        private final List<byte[]> entries;
+
+        private final long endPosition;
+
+        private Batch(List<byte[]> entries, long endPosition) {
+            this.entries = entries;
+            this.endPosition = endPosition;
+        }
+
+        public List<byte[]> getEntries() {
+            return entries;
+        }
+
+        public long getEndPosition() {
+            return endPosition;
+        }
+    }
+}
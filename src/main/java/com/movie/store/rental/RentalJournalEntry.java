@@ -0,0 +1,39 @@
+package com.movie.store.rental;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One accepted checkout in the rental log.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RentalJournalEntry {
+    //unique ID of the checkout, saved with its rows so saving the entry again changes nothing
+    private String id;
+
+    private Long userId;
+
+    private LocalDate startDate;
+
+    private List<Row> rows = new ArrayList<>();
+
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Row {
+        private Long movieId;
+
+        private LocalDate endDate;
+
+        private BigDecimal rentalPrice;
+    }
+}
@@ -0,0 +1,33 @@
+package com.movie.store.rental;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * This class holds settings of the asynchronous checkout from application.properties (prefix "rental.async").
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "rental.async")
+public class RentalJournalProperties {
+
+    //if false rentMovie writes to the database before it answers
+    private boolean enabled = false;
+
+    //directory of the rental log and its checkpoint
+    private String directory = "rental-journal";
+
+    //maximum amount of checkouts written to the database in one transaction
+    private int batchSize = 500;
+
+    //how long the background writer waits for new checkouts when the log is drained
+    private Duration pollInterval = Duration.ofMillis(200);
+
+    //how long the background writer waits after the database could not be written
+    private Duration retryInterval = Duration.ofSeconds(5);
+}
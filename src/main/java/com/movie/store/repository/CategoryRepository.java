@@ -19,6 +19,7 @@ public interface CategoryRepository extends JpaRepository<Category,Long> {
 
 
 
+
     Optional<Category> findByCategoryName(String categoryName);
 
 
@@ -2,20 +2,63 @@ package com.movie.store.repository;
 
 import com.movie.store.dto.Category;
 import com.movie.store.dto.Movie;
+import com.movie.store.dto.MovieCategory;
+import com.movie.store.dto.MovieNames;
+import com.movie.store.dto.MovieTitle;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface MovieRepository extends JpaRepository<Movie,Long> {
 
+    //rows fetched per database round trip when streaming
+    int STREAM_FETCH_SIZE = 5000;
+
+
+    //for getMoviePage (keyset pagination on movieId), movies of the page are then loaded with findByMovieIdIn
+    @Query(value = "SELECT m.movieId FROM Movie m WHERE m.movieId > ?1 ORDER BY m.movieId")
+    List<Long> findMovieIdsAfter(Long movieId, Pageable pageable);
+
+
+    //for getMovies until the title index is built (keyset pagination on movieId)
+    @Query(value = "SELECT m.movieId FROM Movie m WHERE upper(m.movieTitle) LIKE %?1% AND m.movieId > ?2 ORDER BY m.movieId")
+    List<Long> findMovieIdsByTitleAfter(String title, Long movieId, Pageable pageable);
+
+
+    //for building the title index
+    @Query(value = "SELECT m.movieId AS movieId, m.movieTitle AS movieTitle FROM Movie m")
+    List<MovieTitle> findAllTitles();
+
 
-    //for getMovies
-    @Query(value = "SELECT m FROM Movie m WHERE upper(m.movieTitle) LIKE %?1%")
-    List<Movie> findByMovieTitleContainingIgnoreCase(String title);
+    //for building the category bitmap index, read with a forward-only cursor (has to be consumed inside a transaction)
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query(value = "SELECT m.movieId AS movieId, c.categoryId AS categoryId FROM Movie m LEFT JOIN m.categories c")
+    Stream<MovieCategory> streamMovieCategories();
+
+
+    //for building the autocomplete index, read with a forward-only cursor (has to be consumed inside a transaction)
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query(value = "SELECT m.movieId AS movieId, m.movieTitle AS movieTitle, m.actors AS actors FROM Movie m")
+    Stream<MovieNames> streamAllNames();
 
 
     //for addMovie
@@ -23,13 +66,21 @@ public interface MovieRepository extends JpaRepository<Movie,Long> {
     Optional<Movie> findByMovieTitle(String title);
 
 
-    List<Movie> findMoviesByCategories(Category category);
+    //for importing movies, returns titles of the given list that are already in the database
+    @Query(value = "SELECT m.movieTitle FROM Movie m WHERE m.movieTitle IN ?1")
+    List<String> findExistingTitles(Collection<String> titles);
 
 
-    List<Movie> findMoviesByCategoriesOrderByMovieId(Category category);
+    List<Movie> findMoviesByCategories(Category category);
+
 
     Movie findMovieByMovieId(Long movieId);
 
+
+    //for calculate, getMoviePage and title search, loads all requested movies with their categories in one query
+    @EntityGraph(value = "Movie.categories")
+    List<Movie> findByMovieIdIn(Collection<Long> movieIds);
+
     boolean existsByMovieId(Long movieId);
 
 
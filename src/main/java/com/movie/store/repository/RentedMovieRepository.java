@@ -1,25 +1,140 @@
 package com.movie.store.repository;
 
+import com.movie.store.dto.ActiveRental;
 import com.movie.store.dto.Movie;
+import com.movie.store.dto.RentalTimelineEntry;
 import com.movie.store.dto.RentedMovie;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface RentedMovieRepository extends JpaRepository<RentedMovie,Long> {
 
-    boolean existsByUserId(Long userId);
+    //rows fetched per database round trip when streaming
+    int STREAM_FETCH_SIZE = 500;
+
+    //for exportRentedMovies and writeRentedMovies, read with a forward-only cursor (has to be consumed inside a transaction)
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query(value = "SELECT r FROM RentedMovie r JOIN FETCH r.movie ORDER BY r.userId, r.id")
+    Stream<RentedMovie> streamAllOrderByUserId();
+
+
+    //for getRentedMovies
+    @Override
+    @EntityGraph(value = "RentedMovie.movie")
+    List<RentedMovie> findAll(Sort sort);
 
+
+    @EntityGraph(value = "RentedMovie.movie")
     List<RentedMovie> findByUserIdOrderByMovie(Long userId);
 
 
+    //for the rental timeline, first page, reads the (user_id, start_date, id) index in order and stops after the page
+    @Query(value = "SELECT new com.movie.store.dto.RentalTimelineEntry(r.id, m.movieId, m.movieTitle, r.startDate, r.endDate, r.rentalPrice) " +
+            "FROM RentedMovie r JOIN r.movie m WHERE r.userId = ?1 ORDER BY r.startDate, r.id")
+    List<RentalTimelineEntry> findTimeline(Long userId, Pageable pageable);
+
+
+    //for the rental timeline, pages after the rental (startDate, id), startDate >= ?2 bounds the index range
+    @Query(value = "SELECT new com.movie.store.dto.RentalTimelineEntry(r.id, m.movieId, m.movieTitle, r.startDate, r.endDate, r.rentalPrice) " +
+            "FROM RentedMovie r JOIN r.movie m WHERE r.userId = ?1 AND r.startDate >= ?2 AND (r.startDate > ?2 OR r.id > ?3) " +
+            "ORDER BY r.startDate, r.id")
+    List<RentalTimelineEntry> findTimelineAfter(Long userId, LocalDate startDate, Long id, Pageable pageable);
+
+
+    @EntityGraph(value = "RentedMovie.movie")
     List<RentedMovie> findByMovie(Movie movie);
 
 
-    long countByUserIdAndMovie(Long userId, Movie movie);
+    //for rentMovie, rentals of the given movies that are not retired yet (uses the unique (user_id, active_movie_id) index)
+    List<RentedMovie> findByUserIdAndActiveMovieIdIn(Long userId, Collection<Long> movieIds);
+
+
+    //for the asynchronous checkout, returns the given movie IDs that the user has an active rental of
+    @Query(value = "SELECT r.activeMovieId FROM RentedMovie r WHERE r.userId = ?1 AND r.activeMovieId IN ?2 AND r.endDate >= ?3")
+    List<Long> findOwnedMovieIds(Long userId, Collection<Long> movieIds, LocalDate today);
+
+
+    //for loading the active rental index
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query(value = "SELECT new com.movie.store.dto.ActiveRental(r.id, r.userId, r.activeMovieId, r.startDate, r.endDate, r.rentalPrice) " +
+            "FROM RentedMovie r WHERE r.activeMovieId IS NOT NULL")
+    Stream<ActiveRental> streamActive();
+
+
+    //for active rentals of a user while the active rental index is loading
+    @Query(value = "SELECT new com.movie.store.dto.ActiveRental(r.id, r.userId, r.activeMovieId, r.startDate, r.endDate, r.rentalPrice) " +
+            "FROM RentedMovie r WHERE r.userId = ?1 AND r.activeMovieId IS NOT NULL AND r.endDate >= ?2 ORDER BY r.endDate, r.id")
+    List<ActiveRental> findActiveByUserId(Long userId, LocalDate today);
+
+
+    //for due rentals while the active rental index is loading
+    @Query(value = "SELECT new com.movie.store.dto.ActiveRental(r.id, r.userId, r.activeMovieId, r.startDate, r.endDate, r.rentalPrice) " +
+            "FROM RentedMovie r WHERE r.activeMovieId IS NOT NULL AND r.endDate BETWEEN ?1 AND ?2 ORDER BY r.endDate, r.id")
+    List<ActiveRental> findActiveByEndDateBetween(LocalDate from, LocalDate to);
+
+
+    //for retiring expired rentals, so the movies can be rented again
+    @Modifying
+    @Query(value = "UPDATE RentedMovie r SET r.activeMovieId = NULL WHERE r.id IN ?1 AND r.endDate < ?2")
+    int retire(Collection<Long> ids, LocalDate today);
+
+
+    //for loading the active rental index, marks rentals of databases created before active_movie_id that have not ended,
+    //an unexpired rental is never retired, so later starts change nothing
+    @Modifying
+    @Query(value = "UPDATE RentedMovie r SET r.activeMovieId = r.movie.movieId WHERE r.activeMovieId IS NULL AND r.endDate >= ?1")
+    int markActive(LocalDate today);
+
+
+    //for saving asynchronous checkouts, retires expired rentals of the given users that are not retired yet
+    @Modifying
+    @Query(value = "UPDATE RentedMovie r SET r.activeMovieId = NULL WHERE r.userId IN ?1 AND r.activeMovieId IS NOT NULL AND r.endDate < ?2")
+    int retireExpired(Collection<Long> userIds, LocalDate today);
+
+    //for saving asynchronous checkouts, (rental log entry ID, movie ID) of rows of the given entries that are already saved
+    @Query(value = "SELECT r.journalEntryId, r.movie.movieId FROM RentedMovie r WHERE r.journalEntryId IN ?1")
+    List<Object[]> findSavedJournalRows(Collection<String> journalEntryIds);
+
+    //for building the co-occurrence matrix, (user ID, movie ID) of every rental in the order users rented them
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query(value = "SELECT r.userId, r.movie.movieId FROM RentedMovie r ORDER BY r.userId, r.startDate, r.id")
+    Stream<Object[]> streamMovieIdsOrderByUserId();
+
+
+    //for updating the co-occurrence matrix, movie IDs of the last rentals of a user, the most recent first
+    @Query(value = "SELECT r.movie.movieId FROM RentedMovie r WHERE r.userId = ?1 ORDER BY r.startDate DESC, r.id DESC")
+    List<Long> findRecentMovieIds(Long userId, Pageable pageable);
+
+
+    //for recommendations while the co-occurrence matrix is loading, (movie ID, title, renters) of movies rented by the same users
+    @Query(value = "SELECT m.movieId, m.movieTitle, COUNT(DISTINCT other.userId) AS renters " +
+            "FROM RentedMovie r, RentedMovie other JOIN other.movie m " +
+            "WHERE r.movie.movieId = ?1 AND other.userId = r.userId AND m.movieId <> ?1 " +
+            "GROUP BY m.movieId, m.movieTitle ORDER BY renters DESC, m.movieId")
+    List<Object[]> findCoRentedMovies(Long movieId, Pageable pageable);
+
+    //for seeding the popularity leaderboard, IDs of the given rentals that the snapshot of the transaction sees
+    @Query(value = "SELECT r.id FROM RentedMovie r WHERE r.id IN ?1")
+    List<Long> findRentalIds(Collection<Long> ids);
 
     @Query(value = "SELECT r.movie.movieId, r.movie.movieTitle, COUNT(r.movie.movieId) AS purchases FROM RentedMovie r GROUP BY r.movie.movieId, r.movie.movieTitle ORDER BY purchases DESC")
     List<List> findMostPopularMovies();
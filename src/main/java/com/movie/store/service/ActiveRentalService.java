@@ -0,0 +1,135 @@
+package com.movie.store.service;
+
+import com.movie.store.dto.ActiveRental;
+import com.movie.store.exception.CommonException;
+import com.movie.store.index.ActiveRentalIndex;
+import com.movie.store.repository.RentedMovieRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+
+/**
+ * This class is a service layer for active rentals (rentals whose end date is today or later).
+ *
+ * Active rentals are kept in the active rental index. The expiry scheduler advances its timer wheel
+ * and retires rentals that have expired (active_movie_id is set to null), after that the movie can be rented again.
+ * rentMovie does not depend on the scheduler: an expired rental that is not retired yet is retired by the checkout.
+ */
+@Service
+public class ActiveRentalService {
+
+    private static final Logger log = LoggerFactory.getLogger(ActiveRentalService.class);
+
+    //retired rentals per UPDATE statement
+    private static final int RETIRE_BATCH_SIZE = 1000;
+
+    private static final int DEFAULT_DUE_DAYS = 7;
+
+    private final RentedMovieRepository rentedMovieRepository;
+
+    private final ActiveRentalIndex activeRentalIndex;
+
+
+    @Autowired
+    public ActiveRentalService(RentedMovieRepository rentedMovieRepository, ActiveRentalIndex activeRentalIndex) {
+        this.rentedMovieRepository = rentedMovieRepository;
+        this.activeRentalIndex = activeRentalIndex;
+    }
+
+
+    /**
+     * This method loads rentals that are not retired into the active rental index when the application has started
+     * and retires those that have expired while the application was not running.
+     * Rentals that have not ended but have no active_movie_id (rows of a database created before the column) are marked
+     * active first, otherwise the user could rent the movie again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void loadActiveRentalIndex() {
+        LocalDate today = LocalDate.now();
+        int marked = rentedMovieRepository.markActive(today);
+        if (marked > 0) {
+            log.info("Marked {} rentals of an upgraded database as active", marked);
+        }
+        List<Long> expired;
+        try (Stream<ActiveRental> activeRentals = rentedMovieRepository.streamActive()) {
+            expired = activeRentalIndex.rebuild(activeRentals.iterator(), today);
+        }
+        retire(expired, today);
+    }
+
+
+    /**
+     * This method advances the timer wheel of the active rental index to today and retires rentals that have expired.
+     * It runs with rental.expiry.cron (every hour by default), only the rentals that expire are read and updated.
+     * If retiring fails, the rentals are retired by the next checkout of the movie or when the index is loaded again.
+     */
+    @Scheduled(cron = "${rental.expiry.cron:0 0 * * * *}")
+    @Transactional
+    public void retireExpiredRentals() {
+        if (!activeRentalIndex.isReady()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        List<Long> expired = activeRentalIndex.advance(today);
+        retire(expired, today);
+        if (!expired.isEmpty()) {
+            log.info("Retired {} expired rentals", expired.size());
+        }
+    }
+
+
+    /**
+     * This method returns active rentals of a user.
+     * @param userId is a user ID (required).
+     * @return list of active rentals ordered by end date.
+     * @throws CommonException if user ID is not specified.
+     */
+    public List<ActiveRental> getActiveRentalsByUserId(Long userId) throws CommonException {
+        if (userId == null) {
+            throw new CommonException("User ID is not specified");
+        }
+        LocalDate today = LocalDate.now();
+        if (!activeRentalIndex.isReady()) {
+            return rentedMovieRepository.findActiveByUserId(userId, today);
+        }
+        return activeRentalIndex.activeByUser(userId, today);
+    }
+
+
+    /**
+     * This method returns rentals that end within the next days.
+     * @param days amount of days after today, rentals that end today are included. If not specified 7 days are used.
+     * @return list of rentals ordered by end date.
+     * @throws CommonException if days is negative.
+     */
+    public List<ActiveRental> getRentalsDue(Integer days) throws CommonException {
+        int dueDays = days == null ? DEFAULT_DUE_DAYS : days;
+        if (dueDays < 0) {
+            throw new CommonException("Amount of days can not be negative");
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate lastDay = today.plusDays(dueDays);
+        if (!activeRentalIndex.isReady()) {
+            return rentedMovieRepository.findActiveByEndDateBetween(today, lastDay);
+        }
+        return activeRentalIndex.dueBetween(today, lastDay);
+    }
+
+
+    private void retire(List<Long> rentalIds, LocalDate today) {
+        for (int i = 0; i < rentalIds.size(); i += RETIRE_BATCH_SIZE) {
+            rentedMovieRepository.retire(rentalIds.subList(i, Math.min(i + RETIRE_BATCH_SIZE, rentalIds.size())), today);
+        }
+    }
+}
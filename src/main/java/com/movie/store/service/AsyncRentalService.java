@@ -0,0 +1,457 @@
+package com.movie.store.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.movie.store.dto.Invoice;
+import com.movie.store.dto.InvoiceRow;
+import com.movie.store.dto.Movie;
+import com.movie.store.dto.RentedMovie;
+import com.movie.store.event.MoviesRentedEvent;
+import com.movie.store.exception.CommonException;
+import com.movie.store.rental.RentalJournal;
+import com.movie.store.rental.RentalJournalEntry;
+import com.movie.store.rental.RentalJournalProperties;
+import com.movie.store.repository.MovieRepository;
+import com.movie.store.repository.RentedMovieRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.DataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+
+
+/**
+ * This class is a service layer for the asynchronous checkout (enabled with rental.async.enabled).
+ *
+ * A validated and priced checkout is appended to a local log that is forced to the disk, then the client gets the answer.
+ * A background thread saves checkouts from the log to the rentedmovie table in batches, one transaction per batch,
+ * and continues after a restart from the last saved batch.
+ * Saving again after a crash is harmless: every checkout has an ID that is saved with its rows, rows that are already saved
+ * are skipped (the unique (journal_entry_id, movie_id) constraint guards it).
+ * Entries that can not be read and rows that the database rejects (for example a conflict with another active rental
+ * of the user) are logged and moved to the dead letter file of the log, so they do not hold back the checkouts after them.
+ * Other database errors are retried after rental.async.retry-interval.
+ * Movies that are in the log but not yet in the database are counted as owned, so they can not be rented twice.
+ */
+@Service
+public class AsyncRentalService {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncRentalService.class);
+
+    private final RentalJournalProperties properties;
+
+    private final RentedMovieService rentedMovieService;
+
+    private final RentedMovieRepository rentedMovieRepository;
+
+    private final MovieRepository movieRepository;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ObjectReader entryReader;
+
+    private final ObjectWriter entryWriter;
+
+    //movie IDs per user that are in the log but not yet saved, guarded by itself
+    private final Map<Long, Set<Long>> pendingMovies = new HashMap<>();
+
+    private final Object signal = new Object();
+
+    private RentalJournal journal;
+
+    private Thread writer;
+
+    private volatile boolean running;
+
+    @Autowired
+    public AsyncRentalService(RentalJournalProperties properties,
+                              RentedMovieService rentedMovieService,
+                              RentedMovieRepository rentedMovieRepository,
+                              MovieRepository movieRepository,
+                              EntityManager entityManager,
+                              TransactionTemplate transactionTemplate,
+                              ApplicationEventPublisher eventPublisher,
+                              ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.rentedMovieService = rentedMovieService;
+        this.rentedMovieRepository = rentedMovieRepository;
+        this.movieRepository = movieRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.entryReader = objectMapper.readerFor(RentalJournalEntry.class);
+        this.entryWriter = objectMapper.writerFor(RentalJournalEntry.class);
+    }
+
+
+    /**
+     * This method opens the rental log, collects checkouts that are not saved yet and starts the background writer.
+     * @throws IOException if the rental log can not be opened.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        journal = new RentalJournal(Paths.get(properties.getDirectory()));
+
+        long position = journal.getCheckpoint();
+        RentalJournal.Batch batch;
+        while (!(batch = journal.read(position, properties.getBatchSize())).getEntries().isEmpty()) {
+            //lines that can not be read are moved to the dead letter file by the writer
+            for (RentalJournalEntry entry : readEntries(batch, new ArrayList<>())) {
+                addPending(entry);
+            }
+            position = batch.getEndPosition();
+        }
+
+        running = true;
+        writer = new Thread(this::writeLoop, "rental-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+
+    /**
+     * This method stops the background writer after its current batch, unsaved checkouts stay in the log.
+     * @throws IOException if the rental log can not be closed.
+     */
+    @PreDestroy
+    public void stop() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        running = false;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        try {
+            writer.join(properties.getRetryInterval().toMillis() * 2);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+
+    /**
+     * @return true if checkouts are saved in the background.
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+
+    /**
+     * This method accepts movies that a specified user rents, they are saved to the database in the background.
+     * Returns after the checkout is on the local disk, without a database transaction.
+     * @param movieIDs List of movie IDs (required).
+     * @param timesInWeeks List of weeks that movies are rented (amount of weeks per each movie) (required).
+     * @param userId ID of a user that rents movies (required).
+     * @throws CommonException if movie with given ID does not exist.
+     * @throws CommonException if there are duplicate movie IDs in the request.
+     * @throws CommonException if amount of renting weeks per each movie is not present in the request.
+     * @throws CommonException if User with specified ID already owns one of the requested movies.
+     * @throws CommonException if the checkout could not be written to the rental log.
+     */
+    public void rentMovie(List<Long> movieIDs, List<Integer> timesInWeeks, Long userId) throws CommonException {
+        Invoice invoice = rentedMovieService.calculate(movieIDs, timesInWeeks);
+        if (invoice.getInvoiceRows().isEmpty()) {
+            return;
+        }
+
+        LocalDate startDate = LocalDate.now();
+        RentalJournalEntry entry = new RentalJournalEntry();
+        entry.setId(UUID.randomUUID().toString());
+        entry.setUserId(userId);
+        entry.setStartDate(startDate);
+        for (InvoiceRow invoiceRow : invoice.getInvoiceRows()) {
+            entry.getRows().add(new RentalJournalEntry.Row(invoiceRow.getMovie().getMovieId(),
+                    startDate.plusWeeks(invoiceRow.getRentingTimeInWeeks()), invoiceRow.getPricePerMovieRental()));
+        }
+
+        //reserved before the database check, so two checkouts of the same movie can not both pass
+        reservePending(entry);
+        try {
+            List<Long> ownedMovieIds = rentedMovieRepository.findOwnedMovieIds(userId, movieIDs, startDate);
+            if (!ownedMovieIds.isEmpty()) {
+                throw new CommonException("User with id: " + userId + " already owns movie with ID: " + ownedMovieIds.get(0));
+            }
+            journal.append(entryWriter.writeValueAsBytes(entry));
+        }
+        catch (CommonException ex) {
+            removePending(entry);
+            throw ex;
+        }
+        catch (IOException ex) {
+            removePending(entry);
+            throw new CommonException("Rental could not be saved: " + ex.getMessage());
+        }
+
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+
+    private void writeLoop() {
+        while (running) {
+            try {
+                RentalJournal.Batch batch = journal.read(journal.getCheckpoint(), properties.getBatchSize());
+                if (batch.getEntries().isEmpty()) {
+                    await(properties.getPollInterval().toMillis());
+                    continue;
+                }
+                List<byte[]> rejected = new ArrayList<>();
+                List<RentalJournalEntry> entries = readEntries(batch, rejected);
+                if (!rejected.isEmpty()) {
+                    log.error("{} entries of the rental log can not be read and were moved to the dead letter file", rejected.size());
+                }
+                saveBatch(entries, rejected);
+                //written before the checkpoint, an entry is never lost (after a crash it can be in the file twice)
+                if (!rejected.isEmpty()) {
+                    journal.deadLetter(rejected);
+                }
+                journal.checkpoint(batch.getEndPosition());
+                for (RentalJournalEntry entry : entries) {
+                    removePending(entry);
+                }
+            }
+            catch (RuntimeException | IOException ex) {
+                log.warn("Rentals from the rental log could not be saved, retrying in {}", properties.getRetryInterval(), ex);
+                await(properties.getRetryInterval().toMillis());
+            }
+        }
+    }
+
+
+    //all entries in one transaction, row by row if the database rejects a row, so only that row goes to rejected
+    private void saveBatch(List<RentalJournalEntry> entries, List<byte[]> rejected) throws IOException {
+        try {
+            transactionTemplate.executeWithoutResult(status -> save(entries));
+        }
+        catch (RuntimeException ex) {
+            if (!isRejected(ex)) {
+                throw ex;
+            }
+            for (RentalJournalEntry entry : entries) {
+                for (RentalJournalEntry.Row row : entry.getRows()) {
+                    RentalJournalEntry single = new RentalJournalEntry(entry.getId(), entry.getUserId(), entry.getStartDate(), List.of(row));
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> save(List.of(single)));
+                    }
+                    catch (RuntimeException rowEx) {
+                        if (!isRejected(rowEx)) {
+                            throw rowEx;
+                        }
+                        //saved rows are skipped, so a unique violation is another active rental of the movie (a checkout that did not use the log)
+                        log.error("Rental of movie with ID: {} by user {} from rental log entry {} was rejected and moved to the dead letter file",
+                                row.getMovieId(), entry.getUserId(), entry.getId(), rowEx);
+                        rejected.add(entryWriter.writeValueAsBytes(single));
+                    }
+                }
+            }
+        }
+    }
+
+
+    //rows that are already saved are skipped, the log is saved again from the checkpoint after a crash
+    private void save(List<RentalJournalEntry> entries) {
+        Map<Long, Movie> moviesById = findMovies(entries);
+        Map<String, Set<Long>> savedMovieIds = findSavedMovieIds(entries);
+        retireExpired(entries);
+        for (RentalJournalEntry entry : entries) {
+            save(entry, moviesById, savedMovieIds.getOrDefault(entry.getId(), Set.of()));
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+
+    private void save(RentalJournalEntry entry, Map<Long, Movie> moviesById, Set<Long> savedMovieIds) {
+        List<RentedMovie> rentedMovies = new ArrayList<>(entry.getRows().size());
+        for (RentalJournalEntry.Row row : entry.getRows()) {
+            if (savedMovieIds.contains(row.getMovieId())) {
+                continue;
+            }
+            Movie movie = moviesById.get(row.getMovieId());
+            if (movie == null) {
+                //the movie was deleted after the checkout was accepted
+                log.warn("Movie with ID: {} rented by user {} does not exist anymore", row.getMovieId(), entry.getUserId());
+                continue;
+            }
+            RentedMovie rentedMovie = new RentedMovie(entry.getUserId(), entry.getStartDate(), row.getEndDate(),
+                    row.getRentalPrice(), movie);
+            rentedMovie.setJournalEntryId(entry.getId());
+            entityManager.persist(rentedMovie);
+            rentedMovies.add(rentedMovie);
+        }
+        if (!rentedMovies.isEmpty()) {
+            //listeners run after the transaction commits
+            eventPublisher.publishEvent(new MoviesRentedEvent(entry.getUserId(), rentedMovies));
+        }
+    }
+
+
+    //movie IDs by log entry ID of rows that were saved before
+    private Map<String, Set<Long>> findSavedMovieIds(List<RentalJournalEntry> entries) {
+        Set<String> entryIds = new HashSet<>();
+        for (RentalJournalEntry entry : entries) {
+            entryIds.add(entry.getId());
+        }
+        Map<String, Set<Long>> savedMovieIds = new HashMap<>();
+        for (Object[] row : rentedMovieRepository.findSavedJournalRows(entryIds)) {
+            savedMovieIds.computeIfAbsent((String) row[0], entryId -> new HashSet<>()).add((Long) row[1]);
+        }
+        return savedMovieIds;
+    }
+
+
+    //the data of a row is wrong (constraint violation, value out of range), saving it again would fail again
+    //flush errors of the entity manager are not translated by Spring
+    private static boolean isRejected(RuntimeException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException || cause instanceof ConstraintViolationException
+                    || cause instanceof DataException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    //expired rentals of the users that are not retired by the expiry scheduler yet would block renting the movies again
+    private void retireExpired(List<RentalJournalEntry> entries) {
+        Set<Long> userIds = new HashSet<>();
+        for (RentalJournalEntry entry : entries) {
+            userIds.add(entry.getUserId());
+        }
+        rentedMovieRepository.retireExpired(userIds, LocalDate.now());
+    }
+
+
+    private Map<Long, Movie> findMovies(List<RentalJournalEntry> entries) {
+        Set<Long> movieIds = new HashSet<>();
+        for (RentalJournalEntry entry : entries) {
+            for (RentalJournalEntry.Row row : entry.getRows()) {
+                movieIds.add(row.getMovieId());
+            }
+        }
+        Map<Long, Movie> moviesById = new HashMap<>();
+        for (Movie movie : movieRepository.findByMovieIdIn(movieIds)) {
+            moviesById.put(movie.getMovieId(), movie);
+        }
+        return moviesById;
+    }
+
+
+    //entries that can be read, lines that can not be read are added to unreadable
+    private List<RentalJournalEntry> readEntries(RentalJournal.Batch batch, List<byte[]> unreadable) {
+        List<RentalJournalEntry> entries = new ArrayList<>(batch.getEntries().size());
+        for (byte[] bytes : batch.getEntries()) {
+            RentalJournalEntry entry;
+            try {
+                entry = entryReader.readValue(bytes);
+            }
+            catch (IOException ex) {
+                unreadable.add(bytes);
+                continue;
+            }
+            if (!isComplete(entry)) {
+                unreadable.add(bytes);
+                continue;
+            }
+            if (entry.getId() == null) {
+                //written before entries had an ID, the same line always gets the same one
+                entry.setId(UUID.nameUUIDFromBytes(bytes).toString());
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+
+    private static boolean isComplete(RentalJournalEntry entry) {
+        if (entry.getUserId() == null || entry.getStartDate() == null || entry.getRows() == null) {
+            return false;
+        }
+        for (RentalJournalEntry.Row row : entry.getRows()) {
+            if (row == null || row.getMovieId() == null || row.getEndDate() == null || row.getRentalPrice() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private void reservePending(RentalJournalEntry entry) throws CommonException {
+        synchronized (pendingMovies) {
+            Set<Long> movieIds = pendingMovies.get(entry.getUserId());
+            if (movieIds != null) {
+                for (RentalJournalEntry.Row row : entry.getRows()) {
+                    if (movieIds.contains(row.getMovieId())) {
+                        throw new CommonException("User with id: " + entry.getUserId() + " already owns movie with ID: " + row.getMovieId());
+                    }
+                }
+            }
+            addPending(entry);
+        }
+    }
+
+
+    private void addPending(RentalJournalEntry entry) {
+        synchronized (pendingMovies) {
+            Set<Long> movieIds = pendingMovies.computeIfAbsent(entry.getUserId(), userId -> new HashSet<>());
+            for (RentalJournalEntry.Row row : entry.getRows()) {
+                movieIds.add(row.getMovieId());
+            }
+        }
+    }
+
+
+    private void removePending(RentalJournalEntry entry) {
+        synchronized (pendingMovies) {
+            Set<Long> movieIds = pendingMovies.get(entry.getUserId());
+            if (movieIds == null) {
+                return;
+            }
+            for (RentalJournalEntry.Row row : entry.getRows()) {
+                movieIds.remove(row.getMovieId());
+            }
+            if (movieIds.isEmpty()) {
+                pendingMovies.remove(entry.getUserId());
+            }
+        }
+    }
+
+
+    private void await(long millis) {
+        synchronized (signal) {
+            try {
+                signal.wait(millis);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+}
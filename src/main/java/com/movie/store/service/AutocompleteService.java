@@ -0,0 +1,184 @@
+package com.movie.store.service;
+
+import com.movie.store.bulkhead.Bulkhead;
+import com.movie.store.dto.Completion;
+import com.movie.store.dto.MovieNames;
+import com.movie.store.dto.Statistics;
+import com.movie.store.event.MovieChangedEvent;
+import com.movie.store.event.MoviesChangedEvent;
+import com.movie.store.exception.CommonException;
+import com.movie.store.index.AutocompleteIndex;
+import com.movie.store.metrics.QueryCounter;
+import com.movie.store.repository.MovieRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+
+/**
+ * This class is a service layer for autocomplete of the search box.
+ *
+ * Completions are read from the autocomplete index. The index is rebuilt from the movies table on the reports bulkhead
+ * after the application has started, after every committed movie change and with autocomplete.refresh-cron
+ * (every hour by default), which brings purchases of new rentals into the ranking.
+ * Changes committed while a rebuild runs are picked up by one more rebuild, so an import of many batches
+ * causes a couple of rebuilds and not one per batch.
+ */
+@Service
+public class AutocompleteService {
+
+    private static final Logger log = LoggerFactory.getLogger(AutocompleteService.class);
+
+    public static final int DEFAULT_LIMIT = 10;
+
+    private final MovieRepository movieRepository;
+
+    private final RentedMovieService rentedMovieService;
+
+    private final AutocompleteIndex autocompleteIndex;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Bulkhead reportsBulkhead;
+
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+
+    @Autowired
+    public AutocompleteService(MovieRepository movieRepository,
+                               RentedMovieService rentedMovieService,
+                               AutocompleteIndex autocompleteIndex,
+                               TransactionTemplate transactionTemplate,
+                               @Qualifier(Bulkhead.REPORTS) Bulkhead reportsBulkhead) {
+        this.movieRepository = movieRepository;
+        this.rentedMovieService = rentedMovieService;
+        this.autocompleteIndex = autocompleteIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.reportsBulkhead = reportsBulkhead;
+    }
+
+
+    /**
+     * This method starts building the autocomplete index when the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAutocompleteIndex() {
+        requestRebuild();
+    }
+
+
+    /**
+     * This method rebuilds the autocomplete index with current purchases, it runs with autocomplete.refresh-cron.
+     */
+    @Scheduled(cron = "${autocomplete.refresh-cron:0 0 * * * *}")
+    public void refreshAutocompleteIndex() {
+        requestRebuild();
+    }
+
+
+    /**
+     * This method rebuilds the autocomplete index after a movie was added, changed or deleted.
+     * @param event describes the changed movie.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieChanged(MovieChangedEvent event) {
+        requestRebuild();
+    }
+
+
+    /**
+     * This method rebuilds the autocomplete index once after a batch of movies was added.
+     * @param event describes the changed movies.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMoviesChanged(MoviesChangedEvent event) {
+        requestRebuild();
+    }
+
+
+    /**
+     * This method returns the most purchased movie titles and actor names that start with a prefix.
+     * Case, accents and repeated spaces are ignored.
+     * @param prefix is the text typed so far (required).
+     * @param limit maximum amount of completions. If not specified DEFAULT_LIMIT is used.
+     * @return completions from the most to the least purchased, empty if nothing starts with the prefix.
+     * @throws CommonException if prefix is not specified.
+     * @throws CommonException if limit is not between 1 and AutocompleteIndex.MAX_COMPLETIONS.
+     * @throws CommonException if the autocomplete index is not built yet.
+     */
+    public List<Completion> getCompletions(String prefix, Integer limit) throws CommonException {
+        if (prefix == null || prefix.isBlank()) {
+            throw new CommonException("Prefix is not specified");
+        }
+        int size = limit == null ? DEFAULT_LIMIT : limit;
+        if (size < 1 || size > AutocompleteIndex.MAX_COMPLETIONS) {
+            throw new CommonException("Limit must be between 1 and " + AutocompleteIndex.MAX_COMPLETIONS);
+        }
+        if (!autocompleteIndex.isReady()) {
+            throw new CommonException("Autocomplete index is not loaded yet, please try again later");
+        }
+        return autocompleteIndex.complete(prefix, size);
+    }
+
+
+    private void requestRebuild() {
+        //a rebuild is already waiting and will read this change
+        if (!rebuildPending.compareAndSet(false, true)) {
+            return;
+        }
+        //the rebuild is not work of the request that changed the movie, so its statements are not counted for it
+        QueryCounter counter = QueryCounter.current();
+        QueryCounter.attach(null);
+        try {
+            reportsBulkhead.getExecutor().execute(this::rebuild);
+        }
+        catch (RejectedExecutionException ex) {
+            rebuildPending.set(false);
+            log.warn("Autocomplete index was not rebuilt, the reports bulkhead is full");
+        }
+        finally {
+            QueryCounter.attach(counter);
+        }
+    }
+
+
+    //one rebuild at a time, so an older catalog never replaces a newer one
+    private synchronized void rebuild() {
+        //cleared before reading, a change committed during the read requests another rebuild
+        rebuildPending.set(false);
+        long start = System.nanoTime();
+        try {
+            Map<Long, Long> purchases = new HashMap<>();
+            for (Statistics statistics : rentedMovieService.getPopularMovies(null, null)) {
+                purchases.put(statistics.getMovieId(), statistics.getPurchases());
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<MovieNames> movies = movieRepository.streamAllNames()) {
+                    autocompleteIndex.rebuild(movies.iterator(), purchases);
+                }
+            });
+        }
+        catch (CommonException | RuntimeException ex) {
+            //the previous index is kept until the next rebuild
+            log.error("Autocomplete index was not rebuilt", ex);
+            return;
+        }
+        log.info("Autocomplete index of {} completions built in {} ms",
+                autocompleteIndex.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,100 @@
+package com.movie.store.service;
+
+import com.movie.store.cache.ResponseCache;
+import com.movie.store.dto.CacheStatistics;
+import com.movie.store.dto.Category;
+import com.movie.store.event.MovieChangedEvent;
+import com.movie.store.event.MoviesChangedEvent;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * This class is a service layer for the Hibernate second-level cache.
+ *
+ * Movie, Category and Movie.categories are kept up to date by Hibernate when they are written through the entity manager.
+ * Category.movies is the inverse side of movie_categories, Hibernate does not change it when a movie is added,
+ * deleted or gets a new category, so it is evicted after every committed movie change.
+ */
+@Service
+public class CacheService {
+
+    private static final String CATEGORY_MOVIES_REGION = Category.class.getName() + ".movies";
+
+    private final SessionFactory sessionFactory;
+
+    private final ResponseCache responseCache;
+
+    @Autowired
+    public CacheService(EntityManagerFactory entityManagerFactory, ResponseCache responseCache) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.responseCache = responseCache;
+    }
+
+
+    /**
+     * This method returns hit, miss and put counts and the current size of every second-level cache region.
+     * @return statistics of the cache regions ordered by region name, the first row ("total") sums all regions,
+     * the last row ("responses") is the cache of serialized catalog responses and is not part of the total.
+     */
+    public List<CacheStatistics> getCacheStatistics() {
+        Statistics statistics = sessionFactory.getStatistics();
+        List<CacheStatistics> cacheStatisticsList = new ArrayList<>();
+
+        CacheStatistics total = new CacheStatistics();
+        total.setRegion("total");
+        total.setHitCount(statistics.getSecondLevelCacheHitCount());
+        total.setMissCount(statistics.getSecondLevelCacheMissCount());
+        total.setPutCount(statistics.getSecondLevelCachePutCount());
+        total.setElementCountInMemory(0L);
+        cacheStatisticsList.add(total);
+
+        String[] regionNames = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(regionNames);
+        for (String regionName : regionNames) {
+            CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(regionName);
+            CacheStatistics cacheStatistics = new CacheStatistics();
+            cacheStatistics.setRegion(regionName);
+            cacheStatistics.setHitCount(regionStatistics.getHitCount());
+            cacheStatistics.setMissCount(regionStatistics.getMissCount());
+            cacheStatistics.setPutCount(regionStatistics.getPutCount());
+            //negative if the provider does not report the size
+            cacheStatistics.setElementCountInMemory(regionStatistics.getElementCountInMemory());
+            if (regionStatistics.getElementCountInMemory() > 0) {
+                total.setElementCountInMemory(total.getElementCountInMemory() + regionStatistics.getElementCountInMemory());
+            }
+            cacheStatisticsList.add(cacheStatistics);
+        }
+        cacheStatisticsList.add(responseCache.getStatistics());
+        return cacheStatisticsList;
+    }
+
+
+    /**
+     * This method evicts movies of categories from the cache after a movie change was committed.
+     * @param event describes the changed movie.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieChanged(MovieChangedEvent event) {
+        sessionFactory.getCache().evictCollectionData(CATEGORY_MOVIES_REGION);
+    }
+
+
+    /**
+     * This method evicts movies of categories from the cache once after a batch of movie changes was committed.
+     * @param event describes the changed movies.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMoviesChanged(MoviesChangedEvent event) {
+        sessionFactory.getCache().evictCollectionData(CATEGORY_MOVIES_REGION);
+    }
+}
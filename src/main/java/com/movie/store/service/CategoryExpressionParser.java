@@ -0,0 +1,222 @@
+package com.movie.store.service;
+
+import com.movie.store.exception.CommonException;
+import com.movie.store.index.CategoryCatalog;
+import com.movie.store.index.CategoryExpression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * This class parses boolean category expressions like "Action AND Sci-fi NOT Comedy" or "(Drama OR Comedy) AND NOT Horror".
+ *
+ * Operators are AND, OR, NOT (any case) and parentheses, AND binds stronger than OR.
+ * NOT between two categories means AND NOT, categories in quotes next to each other are joined with AND.
+ * Category names are matched exactly first and ignoring case otherwise, a name can have spaces ("Science Fiction").
+ */
+class CategoryExpressionParser {
+
+    private static final String AND = "AND";
+
+    private static final String OR = "OR";
+
+    private static final String NOT = "NOT";
+
+    private final CategoryCatalog.Snapshot categories;
+
+    private final String expression;
+
+    private final List<Token> tokens;
+
+    private int position;
+
+
+    CategoryExpressionParser(CategoryCatalog.Snapshot categories, String expression) {
+        this.categories = categories;
+        this.expression = expression;
+        this.tokens = tokenize(expression);
+    }
+
+
+    /**
+     * This method parses the whole expression.
+     * @return parsed expression.
+     * @throws CommonException if the expression is empty or invalid.
+     * @throws CommonException if a category in the expression does not exist.
+     */
+    CategoryExpression parse() throws CommonException {
+        if (tokens.isEmpty()) {
+            throw new CommonException("Category expression is empty");
+        }
+        CategoryExpression result = parseOr();
+        if (position < tokens.size()) {
+            throw invalid("unexpected " + tokens.get(position));
+        }
+        return result;
+    }
+
+
+    private CategoryExpression parseOr() throws CommonException {
+        List<CategoryExpression> parts = new ArrayList<>();
+        parts.add(parseAnd());
+        while (nextIs(OR)) {
+            position++;
+            parts.add(parseAnd());
+        }
+        return parts.size() == 1 ? parts.get(0) : CategoryExpression.or(parts);
+    }
+
+
+    private CategoryExpression parseAnd() throws CommonException {
+        List<CategoryExpression> parts = new ArrayList<>();
+        List<CategoryExpression> negatedParts = new ArrayList<>();
+        parseFactor(parts, negatedParts);
+        while (position < tokens.size()) {
+            if (nextIs(AND)) {
+                position++;
+            }
+            else if (!nextIs(NOT) && !nextIs("(") && tokens.get(position).keyword) {
+                //OR or ")" ends the term
+                break;
+            }
+            parseFactor(parts, negatedParts);
+        }
+        if (parts.size() == 1 && negatedParts.isEmpty()) {
+            return parts.get(0);
+        }
+        return CategoryExpression.and(parts, negatedParts);
+    }
+
+
+    //adds one factor to parts, or to negatedParts if it is preceded by an odd amount of NOT
+    private void parseFactor(List<CategoryExpression> parts, List<CategoryExpression> negatedParts) throws CommonException {
+        boolean negated = false;
+        while (nextIs(NOT)) {
+            position++;
+            negated = !negated;
+        }
+        if (position >= tokens.size()) {
+            throw invalid("category is missing at the end");
+        }
+        Token token = tokens.get(position++);
+        CategoryExpression factor;
+        if (token.keyword && token.text.equals("(")) {
+            factor = parseOr();
+            if (!nextIs(")")) {
+                throw invalid("missing )");
+            }
+            position++;
+        }
+        else if (token.keyword) {
+            throw invalid("unexpected " + token);
+        }
+        else {
+            factor = CategoryExpression.category(categoryId(token.text));
+        }
+        (negated ? negatedParts : parts).add(factor);
+    }
+
+
+    private Long categoryId(String categoryName) throws CommonException {
+        Long categoryId = categories.getCategoryId(categoryName);
+        if (categoryId != null) {
+            return categoryId;
+        }
+        categoryId = categories.getCategoryIdIgnoreCase(categoryName);
+        if (categoryId != null) {
+            return categoryId;
+        }
+        throw new CommonException("Category with name: " + categoryName + " does not exist");
+    }
+
+
+    private boolean nextIs(String keyword) {
+        if (position >= tokens.size()) {
+            return false;
+        }
+        Token token = tokens.get(position);
+        return token.keyword && token.text.equals(keyword);
+    }
+
+
+    private CommonException invalid(String reason) {
+        return new CommonException("Invalid category expression: " + expression + " (" + reason + ")");
+    }
+
+
+    //splits the expression into keywords, parentheses and category names, unquoted words next to each other form one name
+    private static List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        StringBuilder name = new StringBuilder();
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            }
+            else if (c == '(' || c == ')') {
+                addName(tokens, name);
+                tokens.add(new Token(String.valueOf(c), true));
+                i++;
+            }
+            else if (c == '"') {
+                addName(tokens, name);
+                int end = expression.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = expression.length();
+                }
+                tokens.add(new Token(expression.substring(i + 1, end), false));
+                i = end + 1;
+            }
+            else {
+                int end = i;
+                while (end < expression.length() && !Character.isWhitespace(expression.charAt(end))
+                        && "()\"".indexOf(expression.charAt(end)) < 0) {
+                    end++;
+                }
+                String word = expression.substring(i, end);
+                String upperCaseWord = word.toUpperCase();
+                if (upperCaseWord.equals(AND) || upperCaseWord.equals(OR) || upperCaseWord.equals(NOT)) {
+                    addName(tokens, name);
+                    tokens.add(new Token(upperCaseWord, true));
+                }
+                else {
+                    if (name.length() > 0) {
+                        name.append(' ');
+                    }
+                    name.append(word);
+                }
+                i = end;
+            }
+        }
+        addName(tokens, name);
+        return tokens;
+    }
+
+
+    private static void addName(List<Token> tokens, StringBuilder name) {
+        if (name.length() > 0) {
+            tokens.add(new Token(name.toString(), false));
+            name.setLength(0);
+        }
+    }
+
+
+    private static final class Token {
+        private final String text;
+
+        //operator or parenthesis, otherwise a category name
+        private final boolean keyword;
+
+        private Token(String text, boolean keyword) {
+            this.text = text;
+            this.keyword = keyword;
+        }
+
+        @Override
+        public String toString() {
+            return "\"" + text + "\"";
+        }
+    }
+}
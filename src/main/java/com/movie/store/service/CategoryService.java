@@ -3,18 +3,25 @@ package com.movie.store.service;
 
 import com.movie.store.dto.Category;
 import com.movie.store.dto.Movie;
+import com.movie.store.event.CategoryChangedEvent;
+import com.movie.store.event.MovieChangedEvent;
 import com.movie.store.exception.CommonException;
+import com.movie.store.index.CategoryCatalog;
 import com.movie.store.repository.CategoryRepository;
 import com.movie.store.repository.MovieRepository;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.util.ObjectUtils;
 
 import javax.transaction.Transactional;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Optional;
 
 
 /**
@@ -26,24 +33,50 @@ public class CategoryService {
 
     private final MovieRepository movieRepository;
 
+    private final CategoryCatalog categoryCatalog;
+
+    private final ApplicationEventPublisher eventPublisher;
+
     @Autowired
-    public CategoryService(MovieRepository movieRepository,CategoryRepository categoryRepository) {
+    public CategoryService(MovieRepository movieRepository,
+                           CategoryRepository categoryRepository,
+                           CategoryCatalog categoryCatalog,
+                           ApplicationEventPublisher eventPublisher) {
         this.movieRepository = movieRepository;
         this.categoryRepository = categoryRepository;
+        this.categoryCatalog = categoryCatalog;
+        this.eventPublisher = eventPublisher;
+    }
+
+
+    /**
+     * This method loads the category catalog from the categories table when the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void loadCategoryCatalog() {
+        categoryCatalog.rebuild(categoryRepository.findAll());
     }
 
 
     /**
-     * This method returns all categories from the database.
+     * This method returns all categories.
+     * Categories are read from the in-memory catalog, the database is only queried until the catalog is loaded.
+     * Categories of the catalog are copies, changing them does not change the catalog.
      * @return a list of categories in ascending order (ordered by category ID).
      * @throws CommonException if category list is empty.
      *
      */
     @Transactional
     public List<Category> getCategories()throws CommonException{
-        List<Category> categories = new ArrayList<>();
-        categoryRepository.findAll(Sort.by(Sort.Direction.ASC, "categoryId"))
-                .forEach(categories::add);
+        List<Category> categories;
+        CategoryCatalog.Snapshot snapshot = categoryCatalog.snapshot();
+        if (snapshot != null){
+            categories = snapshot.getCategories();
+        }
+        else{
+            categories = categoryRepository.findAll(Sort.by(Sort.Direction.ASC, "categoryId"));
+        }
         if (categories.isEmpty()){
             throw new CommonException("Category list is empty");
         }
@@ -54,18 +87,22 @@ public class CategoryService {
 
     /**
      * This method returns list of movies assigned to a specified category by category ID.
+     * The category, its movies and their categories are read from the second-level cache,
+     * on a cache miss categories of the movies are loaded in batches.
      * @param categoryId is a category ID(required).
-     * @return List of movies assigned to a specified category.
+     * @return List of movies assigned to a specified category ordered by movie ID.
      * @throws CommonException if category with given ID does not exist.
      * @throws CommonException if there was no movie with given category ID.
      */
+    @Transactional
     public List<Movie> getMoviesByCategoryId(Long categoryId)throws CommonException {
-        if (!categoryRepository.existsById(categoryId)) {
-            throw new CommonException("Not found Category with id = " + categoryId);
+        Category category = categoryRepository.findById(categoryId)
+                .orElseThrow(() -> new CommonException("Not found Category with id = " + categoryId));
+        List<Movie> movies = new ArrayList<>(category.getMovies());
+        movies.sort(Comparator.comparing(Movie::getMovieId));
+        for (Movie movie : movies) {
+            Hibernate.initialize(movie.getCategories());
         }
-        Category category = categoryRepository.findCategoryByCategoryId(categoryId);
-
-        List<Movie> movies = movieRepository.findMoviesByCategoriesOrderByMovieId(category);
         if (movies.isEmpty()){
             throw new CommonException("No movie with categoryId: "+categoryId);
         }
@@ -84,21 +121,17 @@ public class CategoryService {
      */
     @Transactional
     public void addCategory(Category category)throws CommonException {
-        Optional<Category> categoryByName = categoryRepository.findByCategoryName(category.getCategoryName());
-
-        if(category.getCategoryId() != null){
-            Optional<Category> categoryById = categoryRepository.findById(category.getCategoryId());
-            if (categoryById.isPresent()){
-                throw new CommonException("Category with ID: "+category.getCategoryId()+" already exists");
-            }
-
+        if(category.getCategoryId() != null && categoryExists(category.getCategoryId())){
+            throw new CommonException("Category with ID: "+category.getCategoryId()+" already exists");
         }
 
-        if (categoryByName.isPresent()){
+        if (categoryNameExists(category.getCategoryName())){
             throw new CommonException("Category with name: "+category.getCategoryName()+" already exists");
         }
         else{
-            categoryRepository.save(category);
+            Category savedCategory = categoryRepository.save(category);
+            eventPublisher.publishEvent(new CategoryChangedEvent(
+                    savedCategory.getCategoryId(), savedCategory.getCategoryName(), false));
         }
     }
 
@@ -111,7 +144,7 @@ public class CategoryService {
      */
     @Transactional
     public void deleteCategory(Long categoryId)throws CommonException {
-        boolean exists = categoryRepository.existsById(categoryId);
+        boolean exists = categoryExists(categoryId);
 
         if(!exists){
             throw new CommonException("Category with id " +categoryId+ " does not exist");
@@ -124,6 +157,7 @@ public class CategoryService {
             throw new CommonException("You can not delete category that is connected to a movie");
         }
         categoryRepository.deleteById(categoryId);
+        eventPublisher.publishEvent(new CategoryChangedEvent(categoryId, null, true));
 
     }
 
@@ -154,6 +188,7 @@ public class CategoryService {
 
         else
             category.setCategoryName(categoryName);
+        eventPublisher.publishEvent(new CategoryChangedEvent(categoryId, categoryName, false));
 
     }
 
@@ -166,10 +201,11 @@ public class CategoryService {
      * @throws CommonException if Movie with given ID does not exist.
      * @throws CommonException if Movie with given ID already has category with given ID.
      */
+    @Transactional
     public void addCategoryToMovie(Long categoryId, Long movieId)throws CommonException {
-        Category category = categoryRepository.findById(categoryId)
-                .orElseThrow(() -> new CommonException(
-                        "Category with id " +categoryId+ " does not exist"));
+        if (!categoryExists(categoryId)){
+            throw new CommonException("Category with id " +categoryId+ " does not exist");
+        }
         Movie movie = movieRepository.findById(movieId)
                 .orElseThrow(() -> new CommonException(
                         "Movie with id "+movieId+" does not exist"
@@ -180,10 +216,30 @@ public class CategoryService {
         if(alreadyExists){
             throw new CommonException("Movie with ID: "+movieId+ " already has category with ID: "+categoryId);
         }
-        movie.getCategories().add(category);
+        movie.getCategories().add(categoryRepository.getById(categoryId));
         movieRepository.save(movie);
+        eventPublisher.publishEvent(MovieChangedEvent.changed(movie));
 
 
 
     }
+
+
+    //the catalog is used once it is loaded, the database before that
+    private boolean categoryExists(Long categoryId) {
+        CategoryCatalog.Snapshot snapshot = categoryCatalog.snapshot();
+        if (snapshot != null){
+            return snapshot.getCategoryName(categoryId) != null;
+        }
+        return categoryRepository.existsById(categoryId);
+    }
+
+
+    private boolean categoryNameExists(String categoryName) {
+        CategoryCatalog.Snapshot snapshot = categoryCatalog.snapshot();
+        if (snapshot != null){
+            return snapshot.getCategoryId(categoryName) != null;
+        }
+        return categoryRepository.findByCategoryName(categoryName).isPresent();
+    }
 }
@@ -0,0 +1,101 @@
+package com.movie.store.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * This class reads comma separated records one by one (RFC 4180 quoting, quoted fields can span lines).
+ */
+class CsvRecordReader {
+
+    private final BufferedReader reader;
+
+    private long lineCount;
+
+    private long recordLineNumber;
+
+
+    CsvRecordReader(Reader reader) {
+        this.reader = new BufferedReader(reader);
+    }
+
+
+    /**
+     * This method reads the next record, empty lines are skipped.
+     * @return fields of the next record or null at the end of the input.
+     * @throws IOException if the input can not be read.
+     */
+    List<String> next() throws IOException {
+        String line = readLine();
+        while (line != null && line.isEmpty()) {
+            line = readLine();
+        }
+        if (line == null) {
+            return null;
+        }
+        recordLineNumber = lineCount;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                String nextLine = quoted ? readLine() : null;
+                if (nextLine == null) {
+                    //end of the record (an unterminated quote is closed at the end of the input)
+                    fields.add(field.toString());
+                    return fields;
+                }
+                field.append('\n');
+                line = nextLine;
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                }
+                else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                }
+                else {
+                    quoted = false;
+                }
+            }
+            else if (c == '"') {
+                quoted = true;
+            }
+            else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else {
+                field.append(c);
+            }
+        }
+    }
+
+
+    /**
+     * @return number of the line where the last returned record starts (counted from 1).
+     */
+    long getRecordLineNumber() {
+        return recordLineNumber;
+    }
+
+
+    private String readLine() throws IOException {
+        String line = reader.readLine();
+        if (line != null) {
+            lineCount++;
+        }
+        return line;
+    }
+}
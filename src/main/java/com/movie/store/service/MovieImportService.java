@@ -0,0 +1,312 @@
+package com.movie.store.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.movie.store.dto.Category;
+import com.movie.store.dto.ImportResult;
+import com.movie.store.dto.Movie;
+import com.movie.store.dto.MovieImportRow;
+import com.movie.store.event.MovieChangedEvent;
+import com.movie.store.event.MoviesChangedEvent;
+import com.movie.store.exception.CommonException;
+import com.movie.store.repository.CategoryRepository;
+import com.movie.store.repository.MovieRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ObjectUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+
+/**
+ * This class is a service layer for importing many movies at once.
+ *
+ * The request body is read record by record and saved in batches of BATCH_SIZE movies, every batch in its own transaction.
+ * Category names are resolved against a map loaded once per import and title uniqueness is checked with one query per batch.
+ * A batch that the database rejects is saved again movie by movie, so only the movies that fail are rejected.
+ */
+@Service
+public class MovieImportService {
+
+    public static final int BATCH_SIZE = 1000;
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final String CATEGORY_SEPARATOR = ";";
+
+    private final MovieRepository movieRepository;
+
+    private final CategoryRepository categoryRepository;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ObjectReader rowReader;
+
+    @Autowired
+    public MovieImportService(MovieRepository movieRepository,
+                              CategoryRepository categoryRepository,
+                              EntityManager entityManager,
+                              TransactionTemplate transactionTemplate,
+                              ApplicationEventPublisher eventPublisher,
+                              ObjectMapper objectMapper) {
+        this.movieRepository = movieRepository;
+        this.categoryRepository = categoryRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.rowReader = objectMapper.readerFor(MovieImportRow.class);
+    }
+
+
+    /**
+     * This method imports movies from comma separated records.
+     * Columns are movieTitle, releaseDate (yyyy-MM-dd), actors, description and categories (category names separated by ";").
+     * A header line starting with "movieTitle" is skipped.
+     * @param inputStream is the request body (required).
+     * @return amount of accepted and rejected movies with reasons of the first rejections.
+     * @throws CommonException if the request body can not be read.
+     */
+    public ImportResult importCsv(InputStream inputStream) throws CommonException {
+        ImportRun run = new ImportRun();
+        try {
+            CsvRecordReader reader = new CsvRecordReader(new InputStreamReader(inputStream, UTF_8));
+            boolean firstRecord = true;
+            List<String> fields;
+            while ((fields = reader.next()) != null) {
+                long lineNumber = reader.getRecordLineNumber();
+                if (firstRecord && fields.get(0).trim().equalsIgnoreCase("movieTitle")) {
+                    firstRecord = false;
+                    continue;
+                }
+                firstRecord = false;
+
+                if (fields.size() != 5) {
+                    run.reject(lineNumber, "Expected 5 columns but found " + fields.size());
+                    continue;
+                }
+                MovieImportRow row = new MovieImportRow();
+                row.setMovieTitle(fields.get(0).trim());
+                try {
+                    row.setReleaseDate(LocalDate.parse(fields.get(1).trim()));
+                }
+                catch (DateTimeParseException ex) {
+                    run.reject(lineNumber, "Invalid releaseDate: " + fields.get(1));
+                    continue;
+                }
+                row.setActors(fields.get(2).trim());
+                row.setDescription(fields.get(3));
+                for (String categoryName : fields.get(4).split(CATEGORY_SEPARATOR)) {
+                    if (!categoryName.isBlank()) {
+                        row.getCategories().add(categoryName.trim());
+                    }
+                }
+                run.add(lineNumber, row);
+            }
+        }
+        catch (IOException ex) {
+            throw new CommonException("Could not read the import: " + ex.getMessage());
+        }
+        return run.finish();
+    }
+
+
+    /**
+     * This method imports movies from newline delimited JSON, one movie object per line
+     * with fields movieTitle, releaseDate, actors, description and categories (list of category names).
+     * @param inputStream is the request body (required).
+     * @return amount of accepted and rejected movies with reasons of the first rejections.
+     * @throws CommonException if the request body can not be read.
+     */
+    public ImportResult importNdjson(InputStream inputStream) throws CommonException {
+        ImportRun run = new ImportRun();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, UTF_8));
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                MovieImportRow row;
+                try {
+                    row = rowReader.readValue(line);
+                }
+                catch (JsonProcessingException ex) {
+                    run.reject(lineNumber, "Invalid JSON: " + ex.getOriginalMessage());
+                    continue;
+                }
+                run.add(lineNumber, row);
+            }
+        }
+        catch (IOException ex) {
+            throw new CommonException("Could not read the import: " + ex.getMessage());
+        }
+        return run.finish();
+    }
+
+
+    /**
+     * State of one import: counters, known categories, titles seen so far and the batch that is being collected.
+     */
+    private final class ImportRun {
+
+        private final ImportResult result = new ImportResult();
+
+        private final Map<String, Long> categoryIdsByName = new HashMap<>();
+
+        private final Set<String> importedTitles = new HashSet<>();
+
+        private final List<Long> lineNumbers = new ArrayList<>(BATCH_SIZE);
+
+        private final List<MovieImportRow> rows = new ArrayList<>(BATCH_SIZE);
+
+        private ImportRun() {
+            for (Category category : categoryRepository.findAll()) {
+                categoryIdsByName.put(category.getCategoryName(), category.getCategoryId());
+            }
+        }
+
+        private void add(long lineNumber, MovieImportRow row) {
+            String error = validate(row);
+            if (error != null) {
+                reject(lineNumber, error);
+                return;
+            }
+            if (!importedTitles.add(row.getMovieTitle())) {
+                reject(lineNumber, "Movie with given title is already in the import");
+                return;
+            }
+            lineNumbers.add(lineNumber);
+            rows.add(row);
+            if (rows.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void reject(long lineNumber, String reason) {
+            result.setRejected(result.getRejected() + 1);
+            if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+                result.getErrors().add("Line " + lineNumber + ": " + reason);
+            }
+        }
+
+        private ImportResult finish() {
+            flush();
+            return result;
+        }
+
+        private String validate(MovieImportRow row) {
+            if (ObjectUtils.isEmpty(row.getMovieTitle())) {
+                return "movieTitle is required";
+            }
+            if (row.getReleaseDate() == null) {
+                return "releaseDate is required";
+            }
+            if (row.getActors() == null) {
+                return "actors is required";
+            }
+            if (row.getDescription() == null) {
+                row.setDescription("");
+            }
+            if (row.getCategories() == null) {
+                row.setCategories(new ArrayList<>());
+            }
+            for (String categoryName : row.getCategories()) {
+                if (!categoryIdsByName.containsKey(categoryName)) {
+                    return "Category with name: " + categoryName + " does not exist";
+                }
+            }
+            return null;
+        }
+
+        private void flush() {
+            if (rows.isEmpty()) {
+                return;
+            }
+            try {
+                List<Integer> existingRows = transactionTemplate.execute(status -> saveBatch(rows));
+                for (Integer index : existingRows) {
+                    reject(lineNumbers.get(index), "Movie with given title already exists");
+                }
+                result.setAccepted(result.getAccepted() + rows.size() - existingRows.size());
+            }
+            catch (DataAccessException | PersistenceException | TransactionException ex) {
+                //one bad movie rolls back the whole batch, saved one by one only the bad movies are rejected
+                for (int i = 0; i < rows.size(); i++) {
+                    List<MovieImportRow> row = List.of(rows.get(i));
+                    try {
+                        if (transactionTemplate.execute(status -> saveBatch(row)).isEmpty()) {
+                            result.setAccepted(result.getAccepted() + 1);
+                        }
+                        else {
+                            reject(lineNumbers.get(i), "Movie with given title already exists");
+                        }
+                    }
+                    catch (DataAccessException | PersistenceException | TransactionException rowEx) {
+                        reject(lineNumbers.get(i), "Movie was not saved: " + rowEx.getMessage());
+                    }
+                }
+            }
+            rows.clear();
+            lineNumbers.clear();
+        }
+
+        //runs in a transaction, returns indexes of rows whose title is already in the database
+        private List<Integer> saveBatch(List<MovieImportRow> batch) {
+            List<String> titles = new ArrayList<>(batch.size());
+            for (MovieImportRow row : batch) {
+                titles.add(row.getMovieTitle());
+            }
+            Set<String> existingTitles = new HashSet<>(movieRepository.findExistingTitles(titles));
+
+            List<Integer> existingRows = new ArrayList<>();
+            List<Movie> movies = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                MovieImportRow row = batch.get(i);
+                if (existingTitles.contains(row.getMovieTitle())) {
+                    existingRows.add(i);
+                    continue;
+                }
+                Movie movie = new Movie(row.getMovieTitle(), row.getReleaseDate(), row.getActors(), row.getDescription());
+                for (String categoryName : row.getCategories()) {
+                    movie.getCategories().add(entityManager.getReference(Category.class, categoryIdsByName.get(categoryName)));
+                }
+                entityManager.persist(movie);
+                movies.add(movie);
+            }
+            //the batch is written with JDBC batching and detached, so memory stays bounded by BATCH_SIZE
+            entityManager.flush();
+            entityManager.clear();
+
+            //one event per batch, the indexes apply it at once after the commit
+            List<MovieChangedEvent> changes = new ArrayList<>(movies.size());
+            for (Movie movie : movies) {
+                changes.add(MovieChangedEvent.changed(movie));
+            }
+            if (!changes.isEmpty()) {
+                eventPublisher.publishEvent(new MoviesChangedEvent(changes));
+            }
+            return existingRows;
+        }
+    }
+}
@@ -2,19 +2,37 @@ package com.movie.store.service;
 
 import com.movie.store.dto.Category;
 import com.movie.store.dto.Movie;
+import com.movie.store.dto.MovieCategory;
+import com.movie.store.dto.MoviePage;
+import com.movie.store.event.MovieChangedEvent;
 import com.movie.store.exception.CommonException;
+import com.movie.store.index.CategoryBitmapIndex;
+import com.movie.store.index.CategoryCatalog;
+import com.movie.store.index.TitleIndex;
 import com.movie.store.repository.CategoryRepository;
 import com.movie.store.repository.MovieRepository;
+import org.hibernate.Hibernate;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Sort;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.util.ObjectUtils;
 
 import javax.transaction.Transactional;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
 /**
@@ -22,81 +40,192 @@ import java.util.Optional;
  */
 @Service
 public class MovieService {
+
+    private static final Logger log = LoggerFactory.getLogger(MovieService.class);
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    public static final int MAX_PAGE_SIZE = 500;
+
     private final CategoryRepository categoryRepository;
 
     private final MovieRepository movieRepository;
 
+    private final TitleIndex titleIndex;
+
+    private final CategoryBitmapIndex categoryBitmapIndex;
+
+    private final CategoryCatalog categoryCatalog;
+
+    private final ApplicationEventPublisher eventPublisher;
+
     @Autowired
-    public MovieService(MovieRepository movieRepository,CategoryRepository categoryRepository) {
+    public MovieService(MovieRepository movieRepository,
+                        CategoryRepository categoryRepository,
+                        TitleIndex titleIndex,
+                        CategoryBitmapIndex categoryBitmapIndex,
+                        CategoryCatalog categoryCatalog,
+                        ApplicationEventPublisher eventPublisher) {
         this.movieRepository = movieRepository;
         this.categoryRepository = categoryRepository;
+        this.titleIndex = titleIndex;
+        this.categoryBitmapIndex = categoryBitmapIndex;
+        this.categoryCatalog = categoryCatalog;
+        this.eventPublisher = eventPublisher;
     }
 
 
     /**
-     * This method returns a movie with a specified title. If a title is not specified it will return all movies.
-     * @param movieTitle specifies the title of the movie customer wants to find (works with a part of a title).
-     * @return all movies or movies with specified title if title is specified.
-     * @throws CommonException if Movie list is empty (no movies in the database).
-     * @throws CommonException if there is no such movie with a given title (if title is specified).
+     * This method builds the title index from the movies table when the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void loadTitleIndex() {
+        titleIndex.rebuild(movieRepository.findAllTitles());
+    }
+
+
+    /**
+     * This method builds the category bitmap index from the movie_categories table when the application has started.
+     * If a movie ID does not fit into the index, the index stays not ready and category queries are refused.
      */
+    @EventListener(ApplicationReadyEvent.class)
     @Transactional
-    public List<Movie> getMovies(String movieTitle)throws CommonException {
-        List<Movie> movies = new ArrayList<>();
-        int flag = 0;
-        if(movieTitle == null){
-            movieRepository.findAll(Sort.by(Sort.Direction.ASC, "movieId"))
-                    .forEach(movies::add);
-            flag = 1;
+    public void loadCategoryBitmapIndex() {
+        try (Stream<MovieCategory> movieCategories = movieRepository.streamMovieCategories()) {
+            categoryBitmapIndex.rebuild(movieCategories.iterator());
         }
-        else{
-            movieTitle = movieTitle.toUpperCase();
-            movieRepository.findByMovieTitleContainingIgnoreCase(movieTitle).forEach(movies::add);
-            flag = 2;
+        catch (IllegalArgumentException ex) {
+            log.error("Category index was not built", ex);
         }
+    }
+
+
+    /**
+     * This method returns one page of movies ordered by movie ID (keyset pagination).
+     * Only the rows of the requested page are loaded, so memory per request does not depend on the catalog size.
+     * Runs two queries: IDs of the page, then the movies of the page with their categories.
+     * @param after movie ID after which the page starts (the nextCursor of the previous page). If not specified the first page is returned.
+     * @param limit maximum amount of movies on the page. If not specified DEFAULT_PAGE_SIZE is used.
+     * @return a page of movies and the cursor of the next page (null if this is the last page).
+     * @throws CommonException if limit is not between 1 and MAX_PAGE_SIZE.
+     * @throws CommonException if Movie list is empty (no movies in the database).
+     */
+    @Transactional
+    public MoviePage getMoviePage(Long after, Integer limit)throws CommonException {
+        int pageSize = pageSize(limit);
+        long cursor = after == null ? 0L : after;
+
+        //one extra row tells whether there is a next page without a count query
+        List<Long> movieIds = new ArrayList<>(movieRepository
+                .findMovieIdsAfter(cursor, PageRequest.of(0, pageSize + 1)));
 
-        if (movies.isEmpty() && flag==1){
+        if (movieIds.isEmpty() && after == null){
             throw new CommonException("Movie list is empty");
         }
-        else if(movies.isEmpty() && flag==2){
-            throw new CommonException("No such movie with title: "+movieTitle);
+        return toPage(movieIds, pageSize);
+    }
+
+
+    /**
+     * This method returns one page of movies matching a boolean category expression, ordered by movie ID.
+     * The expression is evaluated on the in-memory category bitmap index, only movies of the page are loaded from the database.
+     * @param expression is a category expression like "Action AND Sci-fi NOT Comedy", operators are AND, OR, NOT and parentheses (required).
+     * @param after movie ID after which the page starts (the nextCursor of the previous page). If not specified the first page is returned.
+     * @param limit maximum amount of movies on the page. If not specified DEFAULT_PAGE_SIZE is used.
+     * @return a page of matching movies and the cursor of the next page (null if this is the last page).
+     * @throws CommonException if limit is not between 1 and MAX_PAGE_SIZE.
+     * @throws CommonException if the expression is invalid or contains a category that does not exist.
+     * @throws CommonException if the category index is not loaded yet.
+     */
+    @Transactional
+    public MoviePage getMoviePageByCategories(String expression, Long after, Integer limit)throws CommonException {
+        int pageSize = pageSize(limit);
+        CategoryCatalog.Snapshot categories = categoryCatalog.snapshot();
+        if (categories == null || !categoryBitmapIndex.isReady()){
+            throw new CommonException("Category index is not loaded yet, please try again later");
+        }
+        RoaringBitmap matchingMovies = categoryBitmapIndex.evaluate(
+                new CategoryExpressionParser(categories, expression).parse());
+
+        List<Long> movieIds = new ArrayList<>(pageSize + 1);
+        //the index holds movie IDs from 0 to Integer.MAX_VALUE, a cursor at or above the end has no next page
+        if (after == null || after < Integer.MAX_VALUE){
+            PeekableIntIterator iterator = matchingMovies.getIntIterator();
+            if (after != null){
+                iterator.advanceIfNeeded((int) Math.max(after + 1, 0));
+            }
+            while (iterator.hasNext() && movieIds.size() <= pageSize){
+                movieIds.add((long) iterator.next());
+            }
+        }
+        return toPage(movieIds, pageSize);
+    }
+
+
+    /**
+     * This method returns one page of movies with a specified title.
+     * The search uses the in-memory title index and ranks the movies by how well the title matches,
+     * only the movies of the page are loaded from the database.
+     * Until the index is built the database is queried and the movies are ordered by movie ID.
+     * @param movieTitle specifies the title of the movie customer wants to find (works with a part of a title) (required).
+     * @param after movie ID of the last movie of the previous page (the nextCursor of the previous page). If not specified the first page is returned.
+     * @param limit maximum amount of movies on the page. If not specified DEFAULT_PAGE_SIZE is used.
+     * @return a page of movies with specified title and the cursor of the next page (null if this is the last page).
+     * @throws CommonException if limit is not between 1 and MAX_PAGE_SIZE.
+     * @throws CommonException if there is no such movie with a given title.
+     */
+    @Transactional
+    public MoviePage getMovies(String movieTitle, Long after, Integer limit)throws CommonException {
+        int pageSize = pageSize(limit);
+        movieTitle = movieTitle.toUpperCase();
+        List<Long> movieIds;
+        if (titleIndex.isReady()){
+            movieIds = titleIndex.search(movieTitle, after, pageSize + 1);
         }
         else{
-            return movies;
+            movieIds = new ArrayList<>(movieRepository.findMovieIdsByTitleAfter(
+                    movieTitle, after == null ? 0L : after, PageRequest.of(0, pageSize + 1)));
         }
 
+        if(movieIds.isEmpty() && after == null){
+            throw new CommonException("No such movie with title: "+movieTitle);
+        }
+        return toPage(movieIds, pageSize);
     }
 
 
     /**
      * This method returns movie available in the library by its ID.
+     * The movie and its categories are read from the second-level cache, the database is only queried on a cache miss.
      * @param movieId specifies movie ID (required).
      * @return movie with a specified ID.
      * @throws CommonException if Movie with given ID does not exist.
      */
     @Transactional
     public Movie getMovieById(Long movieId)throws CommonException {
-        return movieRepository.findById(movieId)
+        Movie movie = movieRepository.findById(movieId)
                .orElseThrow(() -> new CommonException(
                     "Movie with id " + movieId + " does not exist"));
+        Hibernate.initialize(movie.getCategories());
+        return movie;
     }
 
 
     /**
      * This method returns categories assigned to a movie with given ID.
+     * The movie and its categories are read from the second-level cache, the database is only queried on a cache miss.
      * @param movieId specifies movie ID (required).
-     * @return categories assigned to a movie.
+     * @return categories assigned to a movie ordered by category ID.
      * @throws CommonException if movie with given ID was not found.
      * @throws CommonException if there were no categories assigned to a movie.
      */
     @Transactional
     public List<Category> getCategoriesByMovieId(Long movieId)throws CommonException {
-        if (!movieRepository.existsById(movieId)) {
-            throw new CommonException("Not found Movie with id = " + movieId);
-        }
-        Movie movie = movieRepository.findMovieByMovieId(movieId);
-
-        List<Category> categories = categoryRepository.findCategoriesByMovies(movie);
+        Movie movie = movieRepository.findById(movieId)
+                .orElseThrow(() -> new CommonException("Not found Movie with id = " + movieId));
+        List<Category> categories = new ArrayList<>(movie.getCategories());
+        categories.sort(Comparator.comparing(Category::getCategoryId));
 
         if (categories.isEmpty()){
             throw new CommonException("No category with movieId: "+movieId);
@@ -120,7 +249,8 @@ public class MovieService {
             throw new CommonException("Movie with given title already exists");
         }
         else{
-            movieRepository.save(movie);
+            Movie savedMovie = movieRepository.save(movie);
+            eventPublisher.publishEvent(MovieChangedEvent.changed(savedMovie));
         }
     }
 
@@ -137,6 +267,7 @@ public class MovieService {
             throw new CommonException("Movie with id " + movieId + " does not exist");
         }
         movieRepository.deleteById(movieId);
+        eventPublisher.publishEvent(MovieChangedEvent.deleted(movieId));
     }
 
 
@@ -177,8 +308,47 @@ public class MovieService {
             movie.setDescription(description);
         }
 
+        eventPublisher.publishEvent(MovieChangedEvent.changed(movie));
+
+    }
+
+
+    private static int pageSize(Integer limit) throws CommonException {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if(pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+            throw new CommonException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return pageSize;
     }
 
 
+    //movieIds has at most pageSize + 1 IDs, the extra one only tells that there is a next page
+    private MoviePage toPage(List<Long> movieIds, int pageSize) {
+        Long nextCursor = null;
+        if (movieIds.size() > pageSize){
+            movieIds.remove(pageSize);
+            nextCursor = movieIds.get(pageSize - 1);
+        }
+        return new MoviePage(findAllInOrder(movieIds), nextCursor);
+    }
 
+
+    //loads movies with their categories by IDs and keeps the order of the given IDs
+    private List<Movie> findAllInOrder(List<Long> movieIds) {
+        if (movieIds.isEmpty()){
+            return new ArrayList<>();
+        }
+        Map<Long, Movie> moviesById = new HashMap<>();
+        for (Movie movie : movieRepository.findByMovieIdIn(movieIds)) {
+            moviesById.put(movie.getMovieId(), movie);
+        }
+        List<Movie> movies = new ArrayList<>(movieIds.size());
+        for (Long movieId : movieIds) {
+            Movie movie = moviesById.get(movieId);
+            if (movie != null){
+                movies.add(movie);
+            }
+        }
+        return movies;
+    }
 }
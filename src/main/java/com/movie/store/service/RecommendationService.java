@@ -0,0 +1,190 @@
+package com.movie.store.service;
+
+import com.movie.store.bulkhead.Bulkhead;
+import com.movie.store.dto.Movie;
+import com.movie.store.dto.Recommendation;
+import com.movie.store.dto.RentedMovie;
+import com.movie.store.event.MoviesRentedEvent;
+import com.movie.store.exception.CommonException;
+import com.movie.store.index.TitleIndex;
+import com.movie.store.recommendation.CoOccurrenceMatrix;
+import com.movie.store.recommendation.RecommendationProperties;
+import com.movie.store.repository.MovieRepository;
+import com.movie.store.repository.RentedMovieRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+
+/**
+ * This class is a service layer for "renters of this also rented" recommendations.
+ *
+ * Recommendations are read from the co-occurrence matrix. It is built from the rentedmovie table in one pass
+ * on the reports bulkhead after the application has started, and updated by every committed rental.
+ * While it is being built, recommendations are counted by the database.
+ */
+@Service
+public class RecommendationService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecommendationService.class);
+
+    public static final int DEFAULT_LIMIT = 10;
+
+    public static final int MAX_LIMIT = 100;
+
+    private final RentedMovieRepository rentedMovieRepository;
+
+    private final MovieRepository movieRepository;
+
+    private final CoOccurrenceMatrix coOccurrenceMatrix;
+
+    private final TitleIndex titleIndex;
+
+    private final RecommendationProperties properties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Bulkhead reportsBulkhead;
+
+
+    @Autowired
+    public RecommendationService(RentedMovieRepository rentedMovieRepository,
+                                 MovieRepository movieRepository,
+                                 CoOccurrenceMatrix coOccurrenceMatrix,
+                                 TitleIndex titleIndex,
+                                 RecommendationProperties properties,
+                                 TransactionTemplate transactionTemplate,
+                                 @Qualifier(Bulkhead.REPORTS) Bulkhead reportsBulkhead) {
+        this.rentedMovieRepository = rentedMovieRepository;
+        this.movieRepository = movieRepository;
+        this.coOccurrenceMatrix = coOccurrenceMatrix;
+        this.titleIndex = titleIndex;
+        this.properties = properties;
+        this.transactionTemplate = transactionTemplate;
+        this.reportsBulkhead = reportsBulkhead;
+    }
+
+
+    /**
+     * This method starts building the co-occurrence matrix when the application has started.
+     * The build reads every rental once and runs on a thread of the reports bulkhead, so the start is not delayed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCoOccurrenceMatrix() {
+        reportsBulkhead.getExecutor().execute(this::buildCoOccurrenceMatrix);
+    }
+
+
+    /**
+     * This method returns movies that were most often rented by the users who rented a given movie.
+     * @param movieId is a movie ID (required).
+     * @param limit maximum amount of movies to return. If not specified DEFAULT_LIMIT is used.
+     * @return movies ordered by amount of common renters (the most first).
+     * @throws CommonException if movie ID is not specified.
+     * @throws CommonException if limit is not between 1 and MAX_LIMIT.
+     * @throws CommonException if no movie was rented by the renters of the movie.
+     */
+    public List<Recommendation> getRecommendations(Long movieId, Integer limit) throws CommonException {
+        if (movieId == null) {
+            throw new CommonException("Movie ID is not specified");
+        }
+        int size = limit == null ? DEFAULT_LIMIT : limit;
+        if (size < 1 || size > MAX_LIMIT) {
+            throw new CommonException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+
+        List<Recommendation> recommendations;
+        if (coOccurrenceMatrix.isReady()) {
+            recommendations = coOccurrenceMatrix.top(movieId, size);
+            setTitles(recommendations);
+        }
+        else {
+            recommendations = new ArrayList<>();
+            for (Object[] row : rentedMovieRepository.findCoRentedMovies(movieId, PageRequest.of(0, size))) {
+                recommendations.add(new Recommendation((Long) row[0], (String) row[1], (Long) row[2]));
+            }
+        }
+        if (recommendations.isEmpty()) {
+            throw new CommonException("No recommendations for movie with ID: " + movieId);
+        }
+        return recommendations;
+    }
+
+
+    /**
+     * This method counts rented movies with the last movies of the user after the rental was committed.
+     * @param event describes the rental.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMoviesRented(MoviesRentedEvent event) {
+        if (!coOccurrenceMatrix.isReady()) {
+            return;
+        }
+        List<Long> rentedMovieIds = new ArrayList<>(event.getRentedMovies().size());
+        for (RentedMovie rentedMovie : event.getRentedMovies()) {
+            rentedMovieIds.add(rentedMovie.getMovie().getMovieId());
+        }
+        //the rental is committed, so its own rows are among the last ones and are skipped
+        List<Long> recentMovieIds = rentedMovieRepository.findRecentMovieIds(event.getUserId(),
+                PageRequest.of(0, properties.getUserWindow() + rentedMovieIds.size()));
+        Set<Long> previousMovieIds = new LinkedHashSet<>();
+        for (Long movieId : recentMovieIds) {
+            if (!rentedMovieIds.contains(movieId)) {
+                previousMovieIds.add(movieId);
+            }
+        }
+        coOccurrenceMatrix.addRentals(new ArrayList<>(previousMovieIds), rentedMovieIds);
+    }
+
+
+    private void buildCoOccurrenceMatrix() {
+        long start = System.nanoTime();
+        CoOccurrenceMatrix.Builder builder = coOccurrenceMatrix.builder();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Object[]> rentals = rentedMovieRepository.streamMovieIdsOrderByUserId()) {
+                rentals.forEach(row -> builder.add((Long) row[0], (Long) row[1]));
+            }
+        });
+        builder.build();
+        log.info("Co-occurrence matrix of {} movies with {} neighbors ({} MB) built in {} s",
+                coOccurrenceMatrix.getMovieCount(), coOccurrenceMatrix.getNeighborCount(),
+                coOccurrenceMatrix.getMemoryBytes() / (1024 * 1024),
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+    }
+
+
+    //titles are read from the title index, from the database (second-level cache) until it is loaded
+    private void setTitles(List<Recommendation> recommendations) {
+        List<Long> missing = new ArrayList<>();
+        for (Recommendation recommendation : recommendations) {
+            String title = titleIndex.isReady() ? titleIndex.title(recommendation.getMovieId()) : null;
+            if (title == null) {
+                missing.add(recommendation.getMovieId());
+            }
+            recommendation.setMovieTitle(title);
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<Long, String> titles = new HashMap<>();
+        for (Movie movie : movieRepository.findAllById(missing)) {
+            titles.put(movie.getMovieId(), movie.getMovieTitle());
+        }
+        for (Recommendation recommendation : recommendations) {
+            if (recommendation.getMovieTitle() == null) {
+                recommendation.setMovieTitle(titles.get(recommendation.getMovieId()));
+            }
+        }
+    }
+}
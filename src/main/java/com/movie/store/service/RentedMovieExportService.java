@@ -0,0 +1,114 @@
+package com.movie.store.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movie.store.dto.RentedMovie;
+import com.movie.store.repository.RentedMovieRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+
+/**
+ * This class is a service layer for exporting the whole rental history.
+ *
+ * Rented movies are read with a forward-only database cursor and written to the output one by one,
+ * the persistence context is cleared after every fetched block, so heap use does not grow with the table.
+ * The export is newline delimited JSON with the movie ID and title, the rental list (/api/rented) has whole rented movies
+ * in the negotiated format.
+ */
+@Service
+public class RentedMovieExportService {
+
+    private final RentedMovieRepository rentedMovieRepository;
+
+    private final EntityManager entityManager;
+
+    private final JsonFactory jsonFactory;
+
+    @Autowired
+    public RentedMovieExportService(RentedMovieRepository rentedMovieRepository,
+                                    EntityManager entityManager,
+                                    ObjectMapper objectMapper) {
+        this.rentedMovieRepository = rentedMovieRepository;
+        this.entityManager = entityManager;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+
+    /**
+     * This method writes all rented movies as newline delimited JSON, one rented movie per line, ordered by user ID.
+     * Every line has id, userId, startDate, endDate, rentalPrice, movieId and movieTitle.
+     * @param outputStream is the response body (required).
+     * @return amount of written rented movies.
+     * @throws IOException if the output can not be written.
+     */
+    @Transactional
+    public long exportRentedMovies(OutputStream outputStream) throws IOException {
+        long count = 0;
+        JsonGenerator generator = jsonFactory.createGenerator(outputStream);
+        try (Stream<RentedMovie> rentedMovies = rentedMovieRepository.streamAllOrderByUserId()) {
+            Iterator<RentedMovie> iterator = rentedMovies.iterator();
+            while (iterator.hasNext()) {
+                writeRentedMovie(generator, iterator.next());
+                generator.writeRaw('\n');
+                count++;
+                if (count % RentedMovieRepository.STREAM_FETCH_SIZE == 0) {
+                    generator.flush();
+                    entityManager.clear();
+                }
+            }
+        }
+        generator.flush();
+        return count;
+    }
+
+
+    /**
+     * This method writes all rented movies, with their movies and categories, as one array ordered by user ID.
+     * The array is empty if nothing was rented.
+     * @param generator is a generator of the response format (required).
+     * @return amount of written rented movies.
+     * @throws IOException if the output can not be written.
+     */
+    @Transactional
+    public long writeRentedMovies(JsonGenerator generator) throws IOException {
+        long count = 0;
+        generator.writeStartArray();
+        try (Stream<RentedMovie> rentedMovies = rentedMovieRepository.streamAllOrderByUserId()) {
+            Iterator<RentedMovie> iterator = rentedMovies.iterator();
+            while (iterator.hasNext()) {
+                //categories of the movies are loaded in batches of the fetched block when they are written
+                generator.writeObject(iterator.next());
+                count++;
+                if (count % RentedMovieRepository.STREAM_FETCH_SIZE == 0) {
+                    generator.flush();
+                    entityManager.clear();
+                }
+            }
+        }
+        generator.writeEndArray();
+        generator.flush();
+        return count;
+    }
+
+
+    private static void writeRentedMovie(JsonGenerator generator, RentedMovie rentedMovie) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", rentedMovie.getId());
+        generator.writeNumberField("userId", rentedMovie.getUserId());
+        generator.writeStringField("startDate", rentedMovie.getStartDate().toString());
+        generator.writeStringField("endDate", rentedMovie.getEndDate().toString());
+        generator.writeNumberField("rentalPrice", rentedMovie.getRentalPrice());
+        generator.writeNumberField("movieId", rentedMovie.getMovie().getMovieId());
+        generator.writeStringField("movieTitle", rentedMovie.getMovie().getMovieTitle());
+        generator.writeEndObject();
+    }
+}
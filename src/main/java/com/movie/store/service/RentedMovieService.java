@@ -1,23 +1,35 @@
 package com.movie.store.service;
 
 import com.movie.store.dto.*;
+import com.movie.store.event.MoviesRentedEvent;
 import com.movie.store.exception.CommonException;
+import com.movie.store.index.PopularityLeaderboard;
+import com.movie.store.pricing.PricingEngine;
 import com.movie.store.repository.MovieRepository;
 import com.movie.store.repository.RentedMovieRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.transaction.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import static java.time.temporal.ChronoUnit.WEEKS;
-
 
 
 /**
@@ -26,20 +38,43 @@ import static java.time.temporal.ChronoUnit.WEEKS;
 @Service
 public class RentedMovieService {
 
+    private static final String TIMELINE_CURSOR_SEPARATOR = "_";
+
     private final RentedMovieRepository rentedMovieRepository;
 
     private final MovieRepository movieRepository;
 
+    private final PricingEngine pricingEngine;
+
+    private final PopularityLeaderboard popularityLeaderboard;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    //the seed of the leaderboard and the check which rentals it has counted read one snapshot
+    private final TransactionTemplate snapshotTemplate;
+
 
     @Autowired
-    public RentedMovieService(RentedMovieRepository rentedMovieRepository,MovieRepository movieRepository) {
+    public RentedMovieService(RentedMovieRepository rentedMovieRepository,
+                              MovieRepository movieRepository,
+                              PricingEngine pricingEngine,
+                              PopularityLeaderboard popularityLeaderboard,
+                              ApplicationEventPublisher eventPublisher,
+                              PlatformTransactionManager transactionManager) {
         this.rentedMovieRepository = rentedMovieRepository;
         this.movieRepository = movieRepository;
+        this.pricingEngine = pricingEngine;
+        this.popularityLeaderboard = popularityLeaderboard;
+        this.eventPublisher = eventPublisher;
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshotTemplate.setReadOnly(true);
     }
 
 
     /**
      * This method returns all movies that were rented.
+     * Runs one query, rented movies are loaded together with their movies and categories.
      * @return list of rented movies in ascending order(ordered by user ID).
      * @throws CommonException if Rented Movie list is empty (rentedmovie table is empty)
      */
@@ -61,23 +96,68 @@ public class RentedMovieService {
      * This method returns movies that are rented by a specified user.
      * @param userId is a user ID (required).
      * @return List of movies that a specified user has rented.
-     * @throws CommonException if user with given ID is not present in the database
-     * @throws CommonException if user with given ID does not have any rented movies.
+     * @throws CommonException if user with given ID is not present in the database (does not have any rented movies).
      */
     @Transactional
     public List<RentedMovie> getRentedMoviesByUserId(Long userId)throws CommonException {
-        boolean userExists = rentedMovieRepository.existsByUserId(userId);
-        if(!userExists){
+        //users are only known by their rentals, an empty list means that the user is not present
+        List<RentedMovie> rentedMovies = rentedMovieRepository.findByUserIdOrderByMovie(userId);
+
+        if (rentedMovies.isEmpty()){
             throw new CommonException("User with id: "+userId+ " is not present in the database");
         }
+        return rentedMovies;
+    }
 
 
-        List<RentedMovie> rentedMovies = rentedMovieRepository.findByUserIdOrderByMovie(userId);
+    /**
+     * This method returns one page of the rental timeline of a user, ordered by start date and rental ID.
+     * Runs one query, the page is read from the (user_id, start_date, id) index and starts after the cursor,
+     * so later pages are as fast as the first one.
+     * @param userId is a user ID (required).
+     * @param after start date and ID of the rental after which the page starts (the nextCursor of the previous page).
+     * If not specified the first page is returned.
+     * @param limit maximum amount of rentals on the page. If not specified DEFAULT_PAGE_SIZE is used.
+     * @return a page of rentals and the cursor of the next page (null if this is the last page).
+     * @throws CommonException if limit is not between 1 and MAX_PAGE_SIZE.
+     * @throws CommonException if the cursor is invalid.
+     * @throws CommonException if user with given ID is not present in the database (does not have any rented movies).
+     */
+    @Transactional
+    public RentalTimelinePage getRentalTimeline(Long userId, String after, Integer limit)throws CommonException {
+        int pageSize = limit == null ? MovieService.DEFAULT_PAGE_SIZE : limit;
+        if(pageSize < 1 || pageSize > MovieService.MAX_PAGE_SIZE){
+            throw new CommonException("Limit must be between 1 and " + MovieService.MAX_PAGE_SIZE);
+        }
 
-        if (rentedMovies.isEmpty()){
-            throw new CommonException("User with id: "+userId+" does not have any rented movies");
+        //one extra row tells whether there is a next page without a count query
+        PageRequest page = PageRequest.of(0, pageSize + 1);
+        List<RentalTimelineEntry> rentals;
+        if(after == null){
+            rentals = rentedMovieRepository.findTimeline(userId, page);
+            if(rentals.isEmpty()){
+                throw new CommonException("User with id: "+userId+ " is not present in the database");
+            }
         }
-        return rentedMovies;
+        else {
+            int separator = after.lastIndexOf(TIMELINE_CURSOR_SEPARATOR);
+            try {
+                LocalDate startDate = LocalDate.parse(after.substring(0, Math.max(separator, 0)));
+                Long id = Long.parseLong(after.substring(separator + 1));
+                rentals = rentedMovieRepository.findTimelineAfter(userId, startDate, id, page);
+            }
+            catch (DateTimeParseException | NumberFormatException ex){
+                throw new CommonException("Invalid cursor: " + after);
+            }
+        }
+
+        String nextCursor = null;
+        if(rentals.size() > pageSize){
+            rentals = new ArrayList<>(rentals.subList(0, pageSize));
+            RentalTimelineEntry last = rentals.get(pageSize - 1);
+            nextCursor = last.getStartDate() + TIMELINE_CURSOR_SEPARATOR + last.getId();
+        }
+        return new RentalTimelinePage(rentals, nextCursor);
     }
 
 
@@ -120,9 +200,16 @@ public class RentedMovieService {
      */
     public Invoice calculate(List<Long> movieIds, List<Integer> timesInWeeks)throws CommonException{
 
+        //all requested movies are loaded with one query and reused for validation, pricing and invoice rows
+        Map<Long, Movie> moviesById = new HashMap<>();
+        if (!movieIds.isEmpty()){
+            for (Movie movie : movieRepository.findByMovieIdIn(movieIds)) {
+                moviesById.put(movie.getMovieId(), movie);
+            }
+        }
+
         for (Long movieId : movieIds) {
-            boolean movieExists = movieRepository.existsByMovieId(movieId);
-            if(!movieExists){
+            if(!moviesById.containsKey(movieId)){
                 throw new CommonException("Movie with ID: "+movieId+" does not exist");
             }
         }
@@ -146,29 +233,12 @@ public class RentedMovieService {
         for (Long movieId : movieIds) {
             InvoiceRow invoiceRow = new InvoiceRow();
             invoiceRow.setRentingTimeInWeeks(timesInWeeks.get(count));
-            Movie movie = movieRepository.findMovieByMovieId(movieId);
-            LocalDate releaseDate = movie.getReleaseDate();
-
-            long weeks = WEEKS.between(releaseDate,LocalDate.now());
-
-            BigDecimal price = BigDecimal.ZERO;
-
-            for (int i=0;i<invoiceRow.getRentingTimeInWeeks();i++){
-                if(weeks <= 52){
-                    price = price.add(BigDecimal.valueOf(5));
-                }
-                else if(weeks<156){
-                    price = price.add(BigDecimal.valueOf(3.49));
-                }
-                else{
-                    price = price.add(BigDecimal.valueOf(1.99));
-                }
-                weeks++;
-            }
+            Movie movie = moviesById.get(movieId);
+            BigDecimal price = pricingEngine.rentalPrice(movie.getReleaseDate(), invoiceRow.getRentingTimeInWeeks());
 
             invoiceRow.setPricePerMovieRental(price);
             invoice.setTotalSum(invoice.getTotalSum().add(invoiceRow.getPricePerMovieRental()));
-            invoiceRow.setMovie(movieRepository.findMovieByMovieId(movieId));
+            invoiceRow.setMovie(movie);
             invoiceRows.add(invoiceRow);
             count++;
         }
@@ -187,7 +257,7 @@ public class RentedMovieService {
      * @throws CommonException if amount of renting weeks per each movie is not present in the request.
      * @throws CommonException if User with specified ID already owns one of the movies requested movies.
      */
-    @Transactional
+    @Transactional(rollbackOn = CommonException.class)
     public void rentMovie(List<Long> movieIDs, List<Integer> timesInWeeks, Long userId)throws CommonException {
 
         Set<Long> set = new HashSet<>(movieIDs);
@@ -200,23 +270,30 @@ public class RentedMovieService {
             throw new CommonException("Amount of renting weeks per each movie is not present in the request");
         }
 
-        boolean userIdExists = rentedMovieRepository.existsByUserId(userId);
-        if(userIdExists){
-            for (Long movieID : movieIDs) {
-                Movie movie = movieRepository.findMovieByMovieId(movieID);
-                long existances = rentedMovieRepository.countByUserIdAndMovie(userId,movie);
-                if(existances > 0){
-                    throw new CommonException("User with id: "+userId+" already owns movie with ID: "+movieID);
+        //one query for all requested movies, the unique (user_id, active_movie_id) constraint covers concurrent checkouts
+        if(!movieIDs.isEmpty()){
+            LocalDate today = LocalDate.now();
+            List<RentedMovie> expiredRentals = new ArrayList<>();
+            for (RentedMovie rentedMovie : rentedMovieRepository.findByUserIdAndActiveMovieIdIn(userId, movieIDs)) {
+                if(!rentedMovie.getEndDate().isBefore(today)){
+                    throw new CommonException("User with id: "+userId+" already owns movie with ID: "+rentedMovie.getActiveMovieId());
                 }
+                //expired, but not retired by the expiry scheduler yet
+                rentedMovie.setActiveMovieId(null);
+                expiredRentals.add(rentedMovie);
+            }
+            if(!expiredRentals.isEmpty()){
+                //hibernate runs inserts before updates, the retired rows have to be updated first
+                rentedMovieRepository.flush();
             }
         }
 
 
-
         Invoice calculatedInvoice = calculate(movieIDs,timesInWeeks);
 
         List<InvoiceRow> invoiceRows = calculatedInvoice.getInvoiceRows();
 
+        List<RentedMovie> rentedMovies = new ArrayList<>();
         for (InvoiceRow invoiceRow : invoiceRows) {
             LocalDate startDate = LocalDate.now();
             LocalDate endDate = LocalDate.now().plusWeeks(invoiceRow.getRentingTimeInWeeks());
@@ -224,18 +301,78 @@ public class RentedMovieService {
             Movie movie = invoiceRow.getMovie();
             BigDecimal rentalPrice = invoiceRow.getPricePerMovieRental();
 
-            RentedMovie rentedMovie = new RentedMovie(userId,startDate,endDate,rentalPrice,movie);
-            rentedMovieRepository.save(rentedMovie);
+            rentedMovies.add(new RentedMovie(userId,startDate,endDate,rentalPrice,movie));
         }
+        //sent as one JDBC batch (hibernate.jdbc.batch_size), ids come from the pooled sequence without extra round trips
+        //flushed here, so a concurrent checkout of the same movie is reported as a message and not as an error on commit
+        try {
+            rentedMovieRepository.saveAllAndFlush(rentedMovies);
+        }
+        catch (DataIntegrityViolationException ex){
+            throw new CommonException("User with id: "+userId+" already owns one of the requested movies");
+        }
+
+        eventPublisher.publishEvent(new MoviesRentedEvent(userId, rentedMovies));
+    }
+
 
+    /**
+     * This method seeds the popularity leaderboard from the rentedmovie table when the application has started.
+     * Requests are already served then, so rentals committed while the seed is read are kept aside by the leaderboard.
+     * The seed and the lookup of those rentals read one repeatable read snapshot,
+     * so a rental the seed has counted is not counted again and the others are added.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPopularityLeaderboard() {
+        popularityLeaderboard.startSeeding();
+        try {
+            snapshotTemplate.executeWithoutResult(status -> {
+                List<Statistics> statisticsList = findPopularMovies();
+                Set<Long> checkedRentalIds = new HashSet<>();
+                Set<Long> countedRentalIds = new HashSet<>();
+                //rentals can commit while the previous ones are looked up, so this repeats until all were looked up
+                while (!popularityLeaderboard.finishSeeding(statisticsList, checkedRentalIds, countedRentalIds)) {
+                    Set<Long> rentalIds = popularityLeaderboard.pendingRentalIds();
+                    rentalIds.removeAll(checkedRentalIds);
+                    countedRentalIds.addAll(rentedMovieRepository.findRentalIds(rentalIds));
+                    checkedRentalIds.addAll(rentalIds);
+                }
+            });
+        }
+        catch (RuntimeException ex) {
+            //the database is queried until the leaderboard is seeded
+            popularityLeaderboard.cancelSeeding();
+            throw ex;
+        }
     }
 
 
     /**
      * This method returns movies in descending order (from popular to unpopular).
+     * Movies are read from the in-memory leaderboard, the database is only queried until the leaderboard is seeded.
+     * @param limit maximum amount of movies to return. If not specified all rented movies are returned.
+     * @param offset amount of movies to skip. If not specified nothing is skipped.
      * @return returns movies in descending order (from the biggest amount of purchases to the smallest amount).
+     * @throws CommonException if limit or offset is negative.
      */
-    public List<Statistics> getPopularMovies() {
+    public List<Statistics> getPopularMovies(Integer limit, Integer offset)throws CommonException {
+        int from = offset == null ? 0 : offset;
+        int size = limit == null ? Integer.MAX_VALUE : limit;
+        if(from < 0 || size < 0){
+            throw new CommonException("Limit and offset must not be negative");
+        }
+
+        if(popularityLeaderboard.isReady()){
+            return popularityLeaderboard.top(from, size);
+        }
+
+        List<Statistics> statisticsList = findPopularMovies();
+        int to = (int) Math.min((long) from + size, statisticsList.size());
+        return from >= to ? new ArrayList<>() : new ArrayList<>(statisticsList.subList(from, to));
+    }
+
+
+    private List<Statistics> findPopularMovies() {
         List<Statistics> statisticsList = new ArrayList<>();
 
 
@@ -0,0 +1,47 @@
+package com.movie.store.bulkhead;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class BulkheadTest {
+
+    @Test
+    public void fullBulkheadRejectsRequests() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("test", new BulkheadProperties.Pool(1, 1));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Object> running = bulkhead.submit(() -> {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return "done";
+            });
+            CompletableFuture<Object> queued = bulkhead.submit(() -> "queued");
+
+            Object rejected = bulkhead.submit(() -> "rejected").get();
+
+            assertInstanceOf(ResponseEntity.class, rejected);
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseEntity<?>) rejected).getStatusCode());
+            assertEquals(1, bulkhead.getStatistics().getRejectedTasks());
+            assertEquals(1, bulkhead.getStatistics().getQueueDepth());
+
+            release.countDown();
+            assertEquals("done", running.get());
+            assertEquals("queued", queued.get());
+        }
+        finally {
+            release.countDown();
+            bulkhead.shutdown();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.movie.store.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movie.store.bulkhead.Bulkhead;
+import com.movie.store.bulkhead.BulkheadProperties;
+import com.movie.store.encoding.ResponseEncoder;
+import com.movie.store.event.CategoryChangedEvent;
+import com.movie.store.exception.CommonException;
+import com.movie.store.pricing.PricingEngine;
+import com.movie.store.pricing.PricingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResponseCacheTest {
+
+    private final Bulkhead bulkhead = new Bulkhead("test", new BulkheadProperties.Pool(1, 10));
+
+    private final ResponseCache responseCache = new ResponseCache(
+            new ResponseEncoder(new ObjectMapper(), new MappingJackson2SmileHttpMessageConverter(),
+                    new MappingJackson2CborHttpMessageConverter()),
+            new PricingEngine(new PricingProperties()), new ResponseCacheProperties());
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    public void shutdown() {
+        bulkhead.shutdown();
+    }
+
+    @Test
+    public void responseIsSerializedOnceUntilTheCatalogChanges() throws Exception {
+        ResponseEntity<?> first = respond(request(null));
+        ResponseEntity<?> second = respond(request(null));
+
+        assertEquals(1, loads.get());
+        assertArrayEquals("[\"Action\",\"Drama\"]".getBytes(StandardCharsets.UTF_8), (byte[]) second.getBody());
+        assertEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+
+        responseCache.onCategoryChanged(new CategoryChangedEvent(1L, "Action", false));
+        respond(request(null));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void requestWithCurrentETagGetsNotModified() throws Exception {
+        String eTag = respond(request(null)).getHeaders().getETag();
+
+        ResponseEntity<?> notModified = respond(request("W/" + eTag + ", \"other\""));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertEquals(eTag, notModified.getHeaders().getETag());
+        assertNull(notModified.getBody());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void failedTaskIsNotCached() throws Exception {
+        Object first = responseCache.respond("missing", request(null), bulkhead, () -> {
+            loads.incrementAndGet();
+            throw new CommonException("No movie with categoryId: 1");
+        }).get();
+        responseCache.respond("missing", request(null), bulkhead, () -> {
+            loads.incrementAndGet();
+            throw new CommonException("No movie with categoryId: 1");
+        }).get();
+
+        assertEquals("No movie with categoryId: 1", first);
+        assertEquals(2, loads.get());
+    }
+
+    private ResponseEntity<?> respond(WebRequest request) throws Exception {
+        Object response = responseCache.respond("categories", request, bulkhead, () -> {
+            loads.incrementAndGet();
+            return List.of("Action", "Drama");
+        }).get();
+        assertInstanceOf(ResponseEntity.class, response);
+        return (ResponseEntity<?>) response;
+    }
+
+    private static WebRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/categories");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request);
+    }
+}
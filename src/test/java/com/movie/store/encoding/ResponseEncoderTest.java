@@ -0,0 +1,141 @@
+package com.movie.store.encoding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdInputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResponseEncoderTest {
+
+    private final MappingJackson2SmileHttpMessageConverter smileConverter = new MappingJackson2SmileHttpMessageConverter();
+
+    private final ResponseEncoder responseEncoder = new ResponseEncoder(new ObjectMapper(), smileConverter,
+            new MappingJackson2CborHttpMessageConverter());
+
+    @Test
+    public void formatIsChosenByAcceptAndProduces() {
+        Set<MediaType> allFormats = Set.of(MediaType.APPLICATION_JSON, ResponseEncoder.APPLICATION_SMILE, MediaType.APPLICATION_CBOR);
+
+        assertEquals(MediaType.APPLICATION_JSON, responseEncoder.negotiateFormat(null, allFormats));
+        assertEquals(MediaType.APPLICATION_JSON, responseEncoder.negotiateFormat(new String[]{"*/*"}, allFormats));
+        assertEquals(ResponseEncoder.APPLICATION_SMILE,
+                responseEncoder.negotiateFormat(new String[]{"application/x-jackson-smile"}, allFormats));
+        assertEquals(MediaType.APPLICATION_CBOR,
+                responseEncoder.negotiateFormat(new String[]{"application/json;q=0.5, application/cbor"}, allFormats));
+        assertEquals(MediaType.APPLICATION_JSON,
+                responseEncoder.negotiateFormat(new String[]{"application/cbor, */*;q=0.1"}, Set.of(MediaType.APPLICATION_JSON)));
+    }
+
+    @Test
+    public void compressionIsChosenByAcceptEncoding() {
+        assertEquals(ContentCoding.IDENTITY, responseEncoder.negotiateCoding(null));
+        assertEquals(ContentCoding.GZIP, responseEncoder.negotiateCoding(new String[]{"gzip, deflate, br"}));
+        assertEquals(ContentCoding.ZSTD, responseEncoder.negotiateCoding(new String[]{"gzip", "zstd"}));
+        assertEquals(ContentCoding.GZIP, responseEncoder.negotiateCoding(new String[]{"zstd;q=0.5, gzip"}));
+        assertEquals(ContentCoding.ZSTD, responseEncoder.negotiateCoding(new String[]{"*"}));
+        assertEquals(ContentCoding.GZIP, responseEncoder.negotiateCoding(new String[]{"*, zstd;q=0"}));
+        assertEquals(ContentCoding.IDENTITY, responseEncoder.negotiateCoding(new String[]{"gzip;q=0"}));
+    }
+
+    @Test
+    public void largeBodiesAreCompressed() throws Exception {
+        List<Map<String, Object>> body = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            body.add(Map.of("movieId", i, "movieTitle", "Movie title " + i));
+        }
+        byte[] json = new ObjectMapper().writeValueAsBytes(body);
+
+        ResponseEntity<byte[]> gzip = responseEncoder.encode(body, new Representation(MediaType.APPLICATION_JSON, ContentCoding.GZIP));
+        ResponseEntity<byte[]> zstd = responseEncoder.encode(body, new Representation(MediaType.APPLICATION_JSON, ContentCoding.ZSTD));
+
+        assertEquals("gzip", gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(json, new GZIPInputStream(new ByteArrayInputStream(gzip.getBody())).readAllBytes());
+        assertEquals("zstd", zstd.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(json, Zstd.decompress(zstd.getBody(), json.length));
+    }
+
+    @Test
+    public void smallBodiesAreNotCompressed() throws Exception {
+        Map<String, Object> body = Map.of("movieId", 1, "movieTitle", "Movie title");
+
+        ResponseEntity<byte[]> response = responseEncoder.encode(body,
+                new Representation(ResponseEncoder.APPLICATION_SMILE, ContentCoding.ZSTD));
+
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(ResponseEncoder.APPLICATION_SMILE, response.getHeaders().getContentType());
+        JsonNode decoded = smileConverter.getObjectMapper().readTree(response.getBody());
+        assertEquals("Movie title", decoded.get("movieTitle").asText());
+    }
+
+    @Test
+    public void streamedBodiesAreCompressedWhileWritten() throws Exception {
+        List<Map<String, Object>> body = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            body.add(Map.of("movieId", i, "movieTitle", "Movie title " + i));
+        }
+        byte[] json = new ObjectMapper().writeValueAsBytes(body);
+
+        ResponseEntity<StreamingResponseBody> gzip = responseEncoder.stream(
+                new Representation(MediaType.APPLICATION_JSON, ContentCoding.GZIP), generator -> generator.writeObject(body));
+        ResponseEntity<StreamingResponseBody> zstd = responseEncoder.stream(
+                new Representation(MediaType.APPLICATION_JSON, ContentCoding.ZSTD), generator -> generator.writeObject(body));
+
+        assertEquals("gzip", gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(json, new GZIPInputStream(new ByteArrayInputStream(written(gzip))).readAllBytes());
+        assertEquals("zstd", zstd.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(json, new ZstdInputStream(new ByteArrayInputStream(written(zstd))).readAllBytes());
+    }
+
+    @Test
+    public void streamedBodiesDoNotCloseTheResponseStream() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = responseEncoder.stream(
+                new Representation(ResponseEncoder.APPLICATION_SMILE, ContentCoding.IDENTITY),
+                generator -> generator.writeObject(Map.of("movieTitle", "Movie title")));
+        ClosingOutputStream output = new ClosingOutputStream();
+
+        response.getBody().writeTo(output);
+
+        assertEquals(ResponseEncoder.APPLICATION_SMILE, response.getHeaders().getContentType());
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertFalse(output.closed);
+        assertEquals("Movie title", smileConverter.getObjectMapper().readTree(output.toByteArray()).get("movieTitle").asText());
+    }
+
+
+    private static byte[] written(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.getBody().writeTo(output);
+        return output.toByteArray();
+    }
+
+
+    private static final class ClosingOutputStream extends ByteArrayOutputStream {
+        private boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
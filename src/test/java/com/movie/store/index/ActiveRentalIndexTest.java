@@ -0,0 +1,65 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.ActiveRental;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ActiveRentalIndexTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 1, 1);
+
+    @Test
+    public void rentalsExpireOnTheDayAfterTheirEndDate() {
+        ActiveRentalIndex index = new ActiveRentalIndex();
+        List<ActiveRental> rentals = List.of(
+                rental(1L, 10L, TODAY.minusDays(1)),
+                rental(2L, 10L, TODAY),
+                rental(3L, 10L, TODAY.plusDays(5)),
+                //beyond the wheel, moved from the overflow into a slot on the way
+                rental(4L, 11L, TODAY.plusDays(ActiveRentalIndex.WHEEL_SIZE + 30)));
+
+        assertEquals(List.of(1L), index.rebuild(rentals.iterator(), TODAY));
+        assertEquals(List.of(2L, 3L), ids(index.activeByUser(10L, TODAY)));
+
+        assertEquals(List.of(2L), index.advance(TODAY.plusDays(1)));
+        assertEquals(List.of(3L), index.advance(TODAY.plusDays(10)));
+        assertTrue(index.activeByUser(10L, TODAY.plusDays(10)).isEmpty());
+
+        assertEquals(List.of(4L), ids(index.dueBetween(TODAY.plusDays(10), TODAY.plusDays(200))));
+        assertTrue(index.advance(TODAY.plusDays(ActiveRentalIndex.WHEEL_SIZE + 30)).isEmpty());
+        assertEquals(List.of(4L), index.advance(TODAY.plusDays(ActiveRentalIndex.WHEEL_SIZE + 31)));
+    }
+
+    @Test
+    public void dueBetweenReturnsRentalsEndingInTheRange() {
+        ActiveRentalIndex index = new ActiveRentalIndex();
+        List<ActiveRental> rentals = new ArrayList<>();
+        for (long id = 1; id <= 400; id++) {
+            rentals.add(rental(id, id % 7, TODAY.plusDays(id - 1)));
+        }
+        index.rebuild(rentals.iterator(), TODAY);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(index.dueBetween(TODAY, TODAY.plusDays(3))));
+        assertEquals(List.of(200L, 201L), ids(index.dueBetween(TODAY.plusDays(199), TODAY.plusDays(200))));
+        assertEquals(400, index.dueBetween(TODAY, TODAY.plusDays(1000)).size());
+    }
+
+    private static ActiveRental rental(Long id, Long userId, LocalDate endDate) {
+        return new ActiveRental(id, userId, id, TODAY.minusWeeks(1), endDate, BigDecimal.ONE);
+    }
+
+    private static List<Long> ids(List<ActiveRental> rentals) {
+        List<Long> ids = new ArrayList<>();
+        for (ActiveRental rental : rentals) {
+            ids.add(rental.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,99 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.Completion;
+import com.movie.store.dto.MovieNames;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AutocompleteIndexTest {
+
+    @Test
+    public void completesTitlesAndActorsByPurchases() {
+        AutocompleteIndex index = new AutocompleteIndex();
+        index.rebuild(List.of(
+                movie(1L, "Star Wars", "Mark Hamill, Harrison Ford"),
+                movie(2L, "Stargate", "Kurt Russell"),
+                movie(3L, "Star Trek", "Chris Pine"),
+                movie(4L, "Am\u00e9lie", "Audrey Tautou"),
+                movie(5L, "Blade Runner", "Harrison  Ford; Rutger Hauer")).iterator(),
+                Map.of(1L, 5L, 2L, 7L, 3L, 1L, 5L, 4L));
+
+        assertEquals("[Stargate:title:2:7, Star Wars:title:1:5, Star Trek:title:3:1]", describe(index.complete("st", 10)));
+        assertEquals("[Star Wars:title:1:5, Star Trek:title:3:1]", describe(index.complete("  STAR ", 10)));
+        assertEquals("[Stargate:title:2:7]", describe(index.complete("star", 1)));
+        //an actor of several movies is one completion with the purchases of all of them
+        assertEquals("[Harrison Ford:actor:null:9]", describe(index.complete("harrison f", 10)));
+        assertEquals("[Am\u00e9lie:title:4:0, Audrey Tautou:actor:null:0]", describe(index.complete("a", 10)));
+        assertEquals("[Am\u00e9lie:title:4:0]", describe(index.complete("ame", 10)));
+        assertTrue(index.complete("stx", 10).isEmpty());
+        assertTrue(index.complete("star warsx", 10).isEmpty());
+    }
+
+    @Test
+    public void topCompletionsMatchASortedScan() {
+        Random random = new Random(7);
+        String alphabet = "ABC ";
+        List<MovieNames> movies = new ArrayList<>();
+        Map<Long, Long> purchases = new HashMap<>();
+        for (long movieId = 1; movieId <= 3000; movieId++) {
+            StringBuilder title = new StringBuilder("A");
+            int length = random.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                title.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            movies.add(movie(movieId, title.toString(), null));
+            purchases.put(movieId, (long) random.nextInt(50));
+        }
+        AutocompleteIndex index = new AutocompleteIndex();
+        index.rebuild(movies.iterator(), purchases);
+
+        for (String prefix : List.of("A", "AB", "ABC", "AC A", "ACCA", "AAAA", "B")) {
+            List<MovieNames> expected = new ArrayList<>();
+            for (MovieNames movie : movies) {
+                if (AutocompleteIndex.normalize(movie.getMovieTitle()).trim().startsWith(prefix)) {
+                    expected.add(movie);
+                }
+            }
+            expected.sort(Comparator.comparing((MovieNames movie) -> -purchases.get(movie.getMovieId()))
+                    .thenComparing(movie -> AutocompleteIndex.normalize(movie.getMovieTitle()).trim())
+                    .thenComparing(MovieNames::getMovieTitle));
+            List<Completion> completions = index.complete(prefix, AutocompleteIndex.MAX_COMPLETIONS);
+            assertEquals(Math.min(expected.size(), AutocompleteIndex.MAX_COMPLETIONS), completions.size(), prefix);
+            for (int i = 0; i < completions.size(); i++) {
+                assertEquals(purchases.get(expected.get(i).getMovieId()), completions.get(i).getPurchases(), prefix);
+            }
+        }
+    }
+
+    private static MovieNames movie(Long movieId, String movieTitle, String actors) {
+        return new MovieNames() {
+            @Override
+            public String getActors() {
+                return actors;
+            }
+
+            @Override
+            public Long getMovieId() {
+                return movieId;
+            }
+
+            @Override
+            public String getMovieTitle() {
+                return movieTitle;
+            }
+        };
+    }
+
+    private static String describe(List<Completion> completions) {
+        List<String> descriptions = new ArrayList<>();
+        for (Completion completion : completions) {
+            descriptions.add(completion.getText() + ":" + completion.getType() + ":" + completion.getMovieId()
+                    + ":" + completion.getPurchases());
+        }
+        return descriptions.toString();
+    }
+}
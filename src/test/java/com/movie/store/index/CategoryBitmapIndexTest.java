@@ -0,0 +1,45 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.MovieCategory;
+import com.movie.store.event.MovieChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CategoryBitmapIndexTest {
+
+    @Test
+    public void movieIdsOutOfIntRangeAreRejected() {
+        CategoryBitmapIndex index = new CategoryBitmapIndex();
+        assertThrows(IllegalArgumentException.class,
+                () -> index.rebuild(List.of(row(1L), row(Integer.MAX_VALUE + 1L)).iterator()));
+        assertFalse(index.isReady());
+
+        index.rebuild(List.of(row(1L), row((long) Integer.MAX_VALUE)).iterator());
+        assertTrue(index.isReady());
+
+        //a change the index can not hold makes it not ready instead of leaving the movie out
+        assertThrows(IllegalArgumentException.class,
+                () -> index.onMovieChanged(new MovieChangedEvent(-1L, "Negative", List.of(), false)));
+        assertFalse(index.isReady());
+    }
+
+
+    private static MovieCategory row(Long movieId) {
+        return new MovieCategory() {
+            @Override
+            public Long getMovieId() {
+                return movieId;
+            }
+
+            @Override
+            public Long getCategoryId() {
+                return null;
+            }
+        };
+    }
+}
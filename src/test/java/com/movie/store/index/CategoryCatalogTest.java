@@ -0,0 +1,48 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.Category;
+import com.movie.store.event.CategoryChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CategoryCatalogTest {
+
+    @Test
+    public void categoriesAreCopies() {
+        CategoryCatalog catalog = new CategoryCatalog();
+        catalog.rebuild(List.of(category(2L, "Comedy"), category(1L, "Action")));
+
+        List<Category> categories = catalog.snapshot().getCategories();
+        assertEquals(List.of(1L, 2L), List.of(categories.get(0).getCategoryId(), categories.get(1).getCategoryId()));
+        categories.get(0).setCategoryName("Changed");
+
+        assertEquals("Action", catalog.snapshot().getCategories().get(0).getCategoryName());
+        assertEquals("Action", catalog.snapshot().getCategoryName(1L));
+        assertEquals(Long.valueOf(1L), catalog.snapshot().getCategoryIdIgnoreCase("ACTION"));
+    }
+
+    @Test
+    public void committedChangesAreApplied() {
+        CategoryCatalog catalog = new CategoryCatalog();
+        catalog.rebuild(List.of(category(1L, "Action"), category(2L, "Comedy")));
+
+        catalog.onCategoryChanged(new CategoryChangedEvent(3L, "Drama", false));
+        catalog.onCategoryChanged(new CategoryChangedEvent(2L, "Comedies", false));
+        catalog.onCategoryChanged(new CategoryChangedEvent(1L, null, true));
+
+        assertEquals(Long.valueOf(3L), catalog.snapshot().getCategoryId("Drama"));
+        assertEquals("Comedies", catalog.snapshot().getCategoryName(2L));
+        assertNull(catalog.snapshot().getCategoryId("Comedy"));
+        assertNull(catalog.snapshot().getCategoryName(1L));
+    }
+
+
+    private static Category category(Long categoryId, String categoryName) {
+        return new Category(categoryId, categoryName, new HashSet<>());
+    }
+}
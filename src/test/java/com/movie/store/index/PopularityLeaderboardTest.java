@@ -0,0 +1,108 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.Movie;
+import com.movie.store.dto.RentedMovie;
+import com.movie.store.dto.Statistics;
+import com.movie.store.event.MovieChangedEvent;
+import com.movie.store.event.MoviesRentedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PopularityLeaderboardTest {
+
+    @Test
+    public void rentalsCommittedWhileSeedingAreCountedOnce() {
+        PopularityLeaderboard leaderboard = new PopularityLeaderboard();
+        leaderboard.rebuild(List.of());
+        Movie first = movie(1L, "First");
+        Movie second = movie(2L, "Second");
+
+        leaderboard.startSeeding();
+        //committed before the seed was read, the seed has counted it
+        leaderboard.onMoviesRented(rented(10L, first));
+        //the seed is read here: 3 purchases of the first movie, none of the second
+        List<Statistics> seed = List.of(statistics(first, 3));
+        //committed after the seed was read, before the leaderboard was rebuilt
+        leaderboard.onMoviesRented(rented(11L, second));
+        leaderboard.onMoviesRented(rented(12L, first));
+        assertEquals(Set.of(10L, 11L, 12L), leaderboard.pendingRentalIds());
+
+        assertTrue(leaderboard.finishSeeding(seed, Set.of(10L, 11L, 12L), Set.of(10L)));
+
+        assertEquals(4, leaderboard.purchases(1L));
+        assertEquals(1, leaderboard.purchases(2L));
+        assertTrue(leaderboard.pendingRentalIds().isEmpty());
+        leaderboard.onMoviesRented(rented(13L, second));
+        assertEquals(2, leaderboard.purchases(2L));
+    }
+
+    @Test
+    public void seedingWaitsForRentalsThatWereNotLookedUp() {
+        PopularityLeaderboard leaderboard = new PopularityLeaderboard();
+        Movie movie = movie(1L, "Movie");
+        List<Statistics> seed = List.of(statistics(movie, 2));
+
+        leaderboard.startSeeding();
+        leaderboard.onMoviesRented(rented(10L, movie));
+        Set<Long> checkedRentalIds = new HashSet<>(Set.of(10L));
+        //committed while rental 10 was looked up
+        leaderboard.onMoviesRented(rented(11L, movie));
+
+        assertFalse(leaderboard.finishSeeding(seed, checkedRentalIds, Set.of(10L)));
+        assertFalse(leaderboard.isReady());
+
+        checkedRentalIds.add(11L);
+        assertTrue(leaderboard.finishSeeding(seed, checkedRentalIds, Set.of(10L)));
+        assertTrue(leaderboard.isReady());
+        assertEquals(3, leaderboard.purchases(1L));
+    }
+
+    @Test
+    public void movieChangesCommittedWhileSeedingAreApplied() {
+        PopularityLeaderboard leaderboard = new PopularityLeaderboard();
+        Movie first = movie(1L, "First");
+        Movie second = movie(2L, "Second");
+
+        leaderboard.startSeeding();
+        List<Statistics> seed = List.of(statistics(first, 2), statistics(second, 1));
+        leaderboard.onMovieChanged(new MovieChangedEvent(1L, "First renamed", List.of(), false));
+        leaderboard.onMovieChanged(new MovieChangedEvent(2L, null, List.of(), true));
+
+        assertTrue(leaderboard.finishSeeding(seed, Set.of(), Set.of()));
+
+        List<Statistics> top = leaderboard.top(0, 10);
+        assertEquals(1, top.size());
+        assertEquals("First renamed", top.get(0).getMovieTitle());
+        assertEquals(0, leaderboard.purchases(2L));
+    }
+
+
+    private static Movie movie(Long movieId, String movieTitle) {
+        Movie movie = new Movie(movieTitle, LocalDate.of(2020, 1, 1), "Actor", "Description", new HashSet<>());
+        movie.setMovieId(movieId);
+        return movie;
+    }
+
+    private static MoviesRentedEvent rented(Long rentalId, Movie movie) {
+        RentedMovie rentedMovie = new RentedMovie(1L, LocalDate.now(), LocalDate.now().plusWeeks(1), new BigDecimal("5"), movie);
+        rentedMovie.setId(rentalId);
+        return new MoviesRentedEvent(1L, List.of(rentedMovie));
+    }
+
+    private static Statistics statistics(Movie movie, long purchases) {
+        Statistics statistics = new Statistics();
+        statistics.setMovieId(movie.getMovieId());
+        statistics.setMovieTitle(movie.getMovieTitle());
+        statistics.setPurchases(purchases);
+        return statistics;
+    }
+}
@@ -0,0 +1,71 @@
+package com.movie.store.index;
+
+import com.movie.store.dto.MovieTitle;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TitleIndexTest {
+
+    @Test
+    public void searchRanksExactThenPrefixThenWordThenInner() {
+        TitleIndex index = new TitleIndex();
+        index.rebuild(List.of(
+                title(1L, "Starship Troopers"),
+                title(2L, "Lone Star"),
+                title(3L, "Star"),
+                title(4L, "Megastar"),
+                title(5L, "Star Wars"),
+                title(6L, "Dune")));
+
+        assertEquals(List.of(3L, 5L, 1L, 2L, 4L), index.search("star", null, 10));
+        assertEquals(List.of(3L, 5L), index.search("st", null, 2));
+        assertTrue(index.search("xyz", null, 10).isEmpty());
+    }
+
+    @Test
+    public void pagesContinueAfterTheCursor() {
+        TitleIndex index = new TitleIndex();
+        List<MovieTitle> titles = new ArrayList<>();
+        for (long movieId = 1; movieId <= 500; movieId++) {
+            titles.add(title(movieId, (movieId % 3 == 0 ? "Night " : "Dark Night ") + movieId));
+        }
+        index.rebuild(titles);
+        List<Long> all = index.search("night", null, 1000);
+        assertEquals(500, all.size());
+
+        List<Long> paged = new ArrayList<>();
+        Long cursor = null;
+        for (int page = 0; page < 100; page++) {
+            List<Long> movieIds = index.search("night", cursor, 7);
+            if (movieIds.isEmpty()) {
+                break;
+            }
+            paged.addAll(movieIds);
+            cursor = movieIds.get(movieIds.size() - 1);
+        }
+        assertEquals(all, paged);
+
+        //a cursor that does not match the text any more gives an empty page
+        index.put(1L, "Dune");
+        assertTrue(index.search("night", 1L, 7).isEmpty());
+    }
+
+    private static MovieTitle title(Long movieId, String movieTitle) {
+        return new MovieTitle() {
+            @Override
+            public Long getMovieId() {
+                return movieId;
+            }
+
+            @Override
+            public String getMovieTitle() {
+                return movieTitle;
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package com.movie.store.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QueryCountingDataSourceTest {
+
+    @Test
+    public void statementsAndRowsAreCountedForTheAttachedCounter() throws SQLException {
+        QueryCountingDataSource dataSource = new QueryCountingDataSource(fakeDataSource(3));
+        QueryCounter counter = new QueryCounter();
+        QueryCounter.attach(counter);
+        try (Connection connection = dataSource.getConnection()) {
+            for (int i = 0; i < 2; i++) {
+                try (PreparedStatement statement = connection.prepareStatement("SELECT 1");
+                     ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        resultSet.getLong(1);
+                    }
+                }
+            }
+        }
+        finally {
+            QueryCounter.attach(null);
+        }
+        assertEquals(2, counter.getStatements());
+        assertEquals(6, counter.getRows());
+    }
+
+    @Test
+    public void propagatedTaskCountsForTheSubmittingRequest() throws SQLException {
+        QueryCountingDataSource dataSource = new QueryCountingDataSource(fakeDataSource(1));
+        QueryCounter counter = new QueryCounter();
+        QueryCounter.attach(counter);
+        Runnable task;
+        try {
+            task = QueryCounter.propagate(() -> {
+                try (Connection connection = dataSource.getConnection()) {
+                    connection.prepareStatement("SELECT 1").executeQuery().next();
+                }
+                catch (SQLException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+        }
+        finally {
+            QueryCounter.attach(null);
+        }
+        task.run();
+        assertEquals(1, counter.getStatements());
+        assertEquals(1, counter.getRows());
+    }
+
+    //a data source whose queries return the given amount of rows
+    private static DataSource fakeDataSource(int rows) {
+        return proxy(DataSource.class, (proxy, method, args) -> {
+            if (!method.getName().equals("getConnection")) {
+                return null;
+            }
+            return proxy(Connection.class, (connectionProxy, connectionMethod, connectionArgs) -> {
+                if (!connectionMethod.getName().equals("prepareStatement")) {
+                    return null;
+                }
+                return proxy(PreparedStatement.class, (statementProxy, statementMethod, statementArgs) -> {
+                    if (!statementMethod.getName().equals("executeQuery")) {
+                        return null;
+                    }
+                    AtomicInteger remaining = new AtomicInteger(rows);
+                    return proxy(ResultSet.class, (resultSetProxy, resultSetMethod, resultSetArgs) -> {
+                        if (resultSetMethod.getName().equals("next")) {
+                            return remaining.getAndDecrement() > 0;
+                        }
+                        return resultSetMethod.getReturnType() == long.class ? 1L : null;
+                    });
+                });
+            });
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
@@ -0,0 +1,35 @@
+package com.movie.store.pricing;
+
+import java.math.BigDecimal;
+
+/**
+ * The week by week loop RentedMovieService.calculate used before PricingEngine.
+ * It is the reference of PricingEngineTest and PricingEngineBenchmark (the jmh sources are test sources too).
+ */
+final class LegacyPricing {
+
+    private LegacyPricing() {
+    }
+
+    /**
+     * @param weeks age of the movie in weeks on the first day of the rental.
+     * @param rentingTimeInWeeks length of the rental in weeks.
+     * @return price of the rental.
+     */
+    static BigDecimal price(long weeks, int rentingTimeInWeeks) {
+        BigDecimal price = BigDecimal.ZERO;
+        for (int i = 0; i < rentingTimeInWeeks; i++) {
+            if (weeks <= 52) {
+                price = price.add(BigDecimal.valueOf(5));
+            }
+            else if (weeks < 156) {
+                price = price.add(BigDecimal.valueOf(3.49));
+            }
+            else {
+                price = price.add(BigDecimal.valueOf(1.99));
+            }
+            weeks++;
+        }
+        return price;
+    }
+}
@@ -0,0 +1,78 @@
+package com.movie.store.pricing;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static java.time.temporal.ChronoUnit.WEEKS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PricingEngineTest {
+
+    @Test
+    public void rentalPriceEqualsTheWeekByWeekLoop() {
+        PricingEngine pricingEngine = new PricingEngine(new PricingProperties());
+        for (long age = -10; age <= 200; age++) {
+            for (int weeks = 0; weeks <= 520; weeks++) {
+                BigDecimal expected = LegacyPricing.price(age, weeks);
+                String message = "age " + age + ", " + weeks + " weeks";
+                //equals, so the scale has to be the same as well
+                assertEquals(expected, pricingEngine.rentalPrice(age, weeks), message);
+                assertEquals(expected.movePointRight(2).longValueExact(), pricingEngine.rentalPriceInCents(age, weeks), message);
+            }
+        }
+    }
+
+    @Test
+    public void longRentalsEqualTheWeekByWeekLoopInEveryTier() {
+        PricingEngine pricingEngine = new PricingEngine(new PricingProperties());
+        //a rental starting in each tier, the benchmark ages included
+        for (long age : new long[]{0, 40, 52, 53, 150, 155, 156, 400, 10000}) {
+            BigDecimal expected = LegacyPricing.price(age, 520);
+            assertEquals(expected, pricingEngine.rentalPrice(age, 520), "age " + age);
+            assertEquals(expected.movePointRight(2).longValueExact(), pricingEngine.rentalPriceInCents(age, 520), "age " + age);
+        }
+    }
+
+    @Test
+    public void rentalPriceChangesAtTheTierBoundaries() {
+        PricingEngine pricingEngine = new PricingEngine(new PricingProperties());
+
+        assertEquals(new BigDecimal("5"), pricingEngine.rentalPrice(52, 1));
+        assertEquals(new BigDecimal("3.49"), pricingEngine.rentalPrice(53, 1));
+        assertEquals(new BigDecimal("8.49"), pricingEngine.rentalPrice(52, 2));
+        assertEquals(new BigDecimal("3.49"), pricingEngine.rentalPrice(155, 1));
+        assertEquals(new BigDecimal("1.99"), pricingEngine.rentalPrice(156, 1));
+        assertEquals(new BigDecimal("5.48"), pricingEngine.rentalPrice(155, 2));
+        assertEquals(new BigDecimal("5").add(new BigDecimal("3.49").multiply(BigDecimal.valueOf(103))).add(new BigDecimal("1.99")),
+                pricingEngine.rentalPrice(52, 105));
+    }
+
+    @Test
+    public void assignGivesTheTierOfTheAgeInWeeksUntilTheNextTier() {
+        PricingEngine pricingEngine = new PricingEngine(new PricingProperties());
+        LocalDate today = LocalDate.of(2024, 3, 15);
+        for (LocalDate releaseDate = today.minusWeeks(200); !releaseDate.isAfter(today.plusWeeks(2)); releaseDate = releaseDate.plusDays(1)) {
+            TierAssignment assignment = pricingEngine.assign(releaseDate.toEpochDay(), today.toEpochDay());
+
+            assertSame(pricingEngine.tierFor(WEEKS.between(releaseDate, today)), assignment.getTier(), releaseDate.toString());
+            if (assignment.getValidUntilDay() != Long.MAX_VALUE) {
+                LocalDate lastDay = LocalDate.ofEpochDay(assignment.getValidUntilDay() - 1);
+                LocalDate nextTierDay = LocalDate.ofEpochDay(assignment.getValidUntilDay());
+                assertSame(assignment.getTier(), pricingEngine.tierFor(WEEKS.between(releaseDate, lastDay)));
+                assertNotSame(assignment.getTier(), pricingEngine.tierFor(WEEKS.between(releaseDate, nextTierDay)));
+            }
+        }
+    }
+
+    @Test
+    public void assignUsesTodaysDate() {
+        PricingEngine pricingEngine = new PricingEngine(new PricingProperties());
+        LocalDate releaseDate = LocalDate.now().minusWeeks(60);
+
+        assertEquals(LocalDate.now().toEpochDay(), pricingEngine.today());
+        assertSame(pricingEngine.tierFor(60), pricingEngine.tierFor(releaseDate));
+    }}
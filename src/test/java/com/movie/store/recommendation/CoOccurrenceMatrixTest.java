@@ -0,0 +1,107 @@
+package com.movie.store.recommendation;
+
+import com.movie.store.dto.Recommendation;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoOccurrenceMatrixTest {
+
+    @Test
+    public void topCountsUsersWhoRentedBothMovies() {
+        //the window is larger than any history, so the counts are exact
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix(1000, 100000);
+        CoOccurrenceMatrix.Builder builder = matrix.builder();
+        Random random = new Random(1);
+        List<Set<Long>> histories = new ArrayList<>();
+        for (long userId = 1; userId <= 300; userId++) {
+            Set<Long> history = new HashSet<>();
+            for (int i = random.nextInt(15); i > 0; i--) {
+                long movieId = 1 + random.nextInt(40);
+                history.add(movieId);
+                builder.add(userId, movieId);
+            }
+            histories.add(history);
+        }
+        builder.build();
+
+        for (long movieId = 1; movieId <= 40; movieId++) {
+            Map<Long, Long> renters = new HashMap<>();
+            for (Set<Long> history : histories) {
+                if (history.contains(movieId)) {
+                    for (Long other : history) {
+                        if (other != movieId) {
+                            renters.merge(other, 1L, Long::sum);
+                        }
+                    }
+                }
+            }
+            List<Map.Entry<Long, Long>> expected = new ArrayList<>(renters.entrySet());
+            expected.sort(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+            List<Recommendation> top = matrix.top(movieId, 5);
+            assertEquals(Math.min(5, expected.size()), top.size());
+            for (int i = 0; i < top.size(); i++) {
+                assertEquals(expected.get(i).getKey(), top.get(i).getMovieId());
+                assertEquals(expected.get(i).getValue(), top.get(i).getRenters());
+            }
+        }
+    }
+
+    @Test
+    public void incrementalRentalsCountLikeABuild() {
+        long[] rentals = {1, 2, 3, 2, 4, 5, 1, 6};
+        CoOccurrenceMatrix built = new CoOccurrenceMatrix(3, 1000);
+        CoOccurrenceMatrix updated = new CoOccurrenceMatrix(3, 1000);
+        CoOccurrenceMatrix.Builder builder = built.builder();
+        List<Long> history = new ArrayList<>();
+        for (long movieId : rentals) {
+            builder.add(7, movieId);
+            Set<Long> previous = new LinkedHashSet<>();
+            for (int i = history.size() - 1; i >= 0; i--) {
+                previous.add(history.get(i));
+            }
+            updated.addRentals(new ArrayList<>(previous), List.of(movieId));
+            history.add(movieId);
+        }
+        builder.build();
+
+        //1 was counted with 2 and 3, and again with 5, 4 and 2 when it was rented after falling out of the window
+        assertEquals("[2:2, 4:2, 3:1, 5:1, 6:1]", describe(built.top(1L, 10)));
+        for (long movieId = 1; movieId <= 6; movieId++) {
+            assertEquals(describe(built.top(movieId, 10)), describe(updated.top(movieId, 10)));
+        }
+    }
+
+    @Test
+    public void fullRowsKeepTheMostCommonNeighbors() {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix(1000, 8);
+        CoOccurrenceMatrix.Builder builder = matrix.builder();
+        for (long userId = 0; userId < 50; userId++) {
+            builder.add(userId, 1);
+            builder.add(userId, 2 + userId % 3);
+            if (userId % 5 == 0) {
+                builder.add(userId, 100 + userId);
+            }
+        }
+        builder.build();
+
+        List<Recommendation> top = matrix.top(1L, 3);
+        assertEquals("[2:17, 3:17, 4:16]", describe(top));
+        assertTrue(matrix.getNeighborCount() <= 8L * matrix.getMovieCount());
+
+        matrix.remove(3L);
+        assertEquals("[2:17, 4:16]", describe(matrix.top(1L, 2)));
+    }
+
+    private static String describe(List<Recommendation> recommendations) {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (Recommendation recommendation : recommendations) {
+            joiner.add(recommendation.getMovieId() + ":" + recommendation.getRenters());
+        }
+        return joiner.toString();
+    }
+}
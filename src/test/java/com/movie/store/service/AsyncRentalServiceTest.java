@@ -0,0 +1,49 @@
+package com.movie.store.service;
+
+import com.movie.store.exception.CommonException;
+import com.movie.store.repository.MovieRepository;
+import com.movie.store.repository.RentedMovieRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "rental.async.enabled=true",
+        "rental.async.directory=target/rental-journal-test"
+})
+class AsyncRentalServiceTest {
+
+    @Autowired
+    private AsyncRentalService asyncRentalService;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private RentedMovieRepository rentedMovieRepository;
+
+    @Test
+    public void rentMovieIsSavedInTheBackground() throws CommonException, InterruptedException {
+        List<Long> movieIds = movieRepository.findMovieIdsAfter(0L, PageRequest.of(0, 2));
+        Long userId = -System.nanoTime();
+
+        asyncRentalService.rentMovie(movieIds, List.of(1, 2), userId);
+
+        //the checkout is counted as owned before it is in the database
+        assertThrows(CommonException.class, () -> asyncRentalService.rentMovie(movieIds, List.of(1, 2), userId));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (rentedMovieRepository.findOwnedMovieIds(userId, movieIds, LocalDate.now()).size() < movieIds.size()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(movieIds.size(), rentedMovieRepository.findOwnedMovieIds(userId, movieIds, LocalDate.now()).size());
+    }
+}
@@ -0,0 +1,96 @@
+package com.movie.store.service;
+
+import com.movie.store.dto.Category;
+import com.movie.store.dto.MovieCategory;
+import com.movie.store.exception.CommonException;
+import com.movie.store.index.CategoryBitmapIndex;
+import com.movie.store.index.CategoryCatalog;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CategoryExpressionParserTest {
+
+    private static final long ACTION = 1L;
+
+    private static final long SCI_FI = 2L;
+
+    private static final long COMEDY = 3L;
+
+    private static final long SCIENCE_FICTION = 4L;
+
+    @Test
+    public void andBindsStrongerThanOr() throws CommonException {
+        assertEquals(List.of(1, 2, 3), movies("Comedy OR Action AND Sci-fi"));
+        assertEquals(List.of(1, 2), movies("(Comedy OR Action) AND Sci-fi"));
+        assertEquals(List.of(1, 2, 3), movies("Comedy OR (Action AND Sci-fi)"));
+    }
+
+    @Test
+    public void notBetweenCategoriesMeansAndNot() throws CommonException {
+        assertEquals(List.of(1, 4), movies("Action NOT Comedy"));
+        assertEquals(movies("Action AND NOT Comedy"), movies("Action NOT Comedy"));
+        assertEquals(List.of(4), movies("Action NOT Comedy NOT Sci-fi"));
+        assertEquals(List.of(3, 5, 6), movies("NOT Action"));
+        assertEquals(List.of(2, 3), movies("NOT NOT Comedy"));
+    }
+
+    @Test
+    public void namesAndKeywordsIgnoreCase() throws CommonException {
+        assertEquals(List.of(5), movies("science fiction"));
+        assertEquals(List.of(1, 2, 4), movies("action or ACTION"));
+        //quoted categories next to each other are joined with AND
+        assertEquals(List.of(2), movies("\"Action\" \"Comedy\""));
+    }
+
+    @Test
+    public void malformedExpressionsAreRejected() {
+        for (String expression : List.of("", "   ", "Action AND", "(Action", "Action)", "AND Action",
+                "Action OR OR Comedy", "()", "NOT", "Horror", "Action AND Horror")) {
+            assertThrows(CommonException.class, () -> movies(expression), expression);
+        }
+    }
+
+
+    private static List<Integer> movies(String expression) throws CommonException {
+        CategoryCatalog catalog = new CategoryCatalog();
+        catalog.rebuild(List.of(
+                new Category(ACTION, "Action", Collections.emptySet()),
+                new Category(SCI_FI, "Sci-fi", Collections.emptySet()),
+                new Category(COMEDY, "Comedy", Collections.emptySet()),
+                new Category(SCIENCE_FICTION, "Science Fiction", Collections.emptySet())));
+        CategoryBitmapIndex index = new CategoryBitmapIndex();
+        index.rebuild(List.of(
+                row(1L, ACTION), row(1L, SCI_FI),
+                row(2L, ACTION), row(2L, SCI_FI), row(2L, COMEDY),
+                row(3L, COMEDY),
+                row(4L, ACTION),
+                row(5L, SCIENCE_FICTION),
+                row(6L, null)).iterator());
+
+        List<Integer> movieIds = new ArrayList<>();
+        for (int movieId : index.evaluate(new CategoryExpressionParser(catalog.snapshot(), expression).parse()).toArray()) {
+            movieIds.add(movieId);
+        }
+        return movieIds;
+    }
+
+    private static MovieCategory row(Long movieId, Long categoryId) {
+        return new MovieCategory() {
+            @Override
+            public Long getMovieId() {
+                return movieId;
+            }
+
+            @Override
+            public Long getCategoryId() {
+                return categoryId;
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package com.movie.store.service;
+
+import com.movie.store.dto.Category;
+import com.movie.store.exception.CommonException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class CategoryServiceTest {
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void getCategoriesIsServedFromCatalog() throws CommonException {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<Category> categories = categoryService.getCategories();
+
+        assertFalse(categories.isEmpty());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void changingReturnedCategoriesDoesNotChangeCatalog() throws CommonException {
+        Category category = categoryService.getCategories().get(0);
+        String categoryName = category.getCategoryName();
+
+        category.setCategoryName("Changed " + categoryName);
+
+        assertEquals(categoryName, categoryService.getCategories().get(0).getCategoryName());
+    }
+
+    @Test
+    public void addCategoryChangesCatalog() throws CommonException {
+        String categoryName = "Category " + System.nanoTime();
+
+        categoryService.addCategory(new Category(categoryName));
+
+        assertTrue(categoryService.getCategories().stream()
+                .anyMatch(category -> category.getCategoryName().equals(categoryName)));
+    }
+}
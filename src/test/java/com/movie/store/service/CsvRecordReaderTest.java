@@ -0,0 +1,49 @@
+package com.movie.store.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CsvRecordReaderTest {
+
+    @Test
+    public void fieldsAreSplitAtCommasOutsideQuotes() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("a,\"b, c\",\"say \"\"hi\"\"\",,\n"));
+
+        assertEquals(List.of("a", "b, c", "say \"hi\"", "", ""), reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void quotedFieldsSpanLines() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("first,\"line one\nline two\",x\nsecond,y,z\n"));
+
+        assertEquals(List.of("first", "line one\nline two", "x"), reader.next());
+        assertEquals(1, reader.getRecordLineNumber());
+        assertEquals(List.of("second", "y", "z"), reader.next());
+        assertEquals(3, reader.getRecordLineNumber());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void emptyLinesAreSkippedAndCounted() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("\n\nonly,record\n\n"));
+
+        assertEquals(List.of("only", "record"), reader.next());
+        assertEquals(3, reader.getRecordLineNumber());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void unterminatedQuoteEndsAtTheEndOfTheInput() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("a,\"open\nrest"));
+
+        assertEquals(List.of("a", "open\nrest"), reader.next());
+        assertNull(reader.next());
+    }
+}
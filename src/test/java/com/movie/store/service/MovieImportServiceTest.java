@@ -0,0 +1,72 @@
+package com.movie.store.service;
+
+import com.movie.store.dto.ImportResult;
+import com.movie.store.dto.Movie;
+import com.movie.store.exception.CommonException;
+import com.movie.store.repository.MovieRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class MovieImportServiceTest {
+
+    @Autowired
+    private MovieImportService movieImportService;
+
+    @Autowired
+    private MovieService movieService;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    private final String suffix = " " + System.nanoTime();
+
+    @AfterEach
+    public void deleteImportedMovies() throws CommonException {
+        for (String title : List.of("First" + suffix, "Second" + suffix)) {
+            Optional<Movie> movie = movieRepository.findByMovieTitle(title);
+            if (movie.isPresent()) {
+                movieService.deleteMovie(movie.get().getMovieId());
+            }
+        }
+    }
+
+    @Test
+    public void badRowsOfABatchAreRejectedAndTheOthersSaved() throws CommonException {
+        //longer than the movie_title column, passes validation and fails in the database with the whole batch
+        String tooLongTitle = "X".repeat(300) + suffix;
+        String csv = "movieTitle,releaseDate,actors,description,categories\n" +
+                "First" + suffix + ",2020-01-01,\"Actor One, Actor Two\",\"A movie, with a comma\",\n" +
+                "Invalid date" + suffix + ",2020-02-30,Actor,Description,\n" +
+                "Four columns" + suffix + ",2020-01-01,Actor,Description\n" +
+                "Unknown category" + suffix + ",2020-01-01,Actor,\"Line one\nline two\",No such category" + suffix + "\n" +
+                "First" + suffix + ",2020-01-01,Actor,Description,\n" +
+                tooLongTitle + ",2020-01-01,Actor,Description,\n" +
+                "Second" + suffix + ",2020-01-01,Actor,Description,\n";
+
+        ImportResult result = movieImportService.importCsv(new ByteArrayInputStream(csv.getBytes(UTF_8)));
+
+        assertEquals(2, result.getAccepted());
+        assertEquals(5, result.getRejected());
+        List<String> errors = result.getErrors();
+        assertEquals(5, errors.size());
+        assertTrue(errors.get(0).startsWith("Line 3: Invalid releaseDate"), errors.get(0));
+        assertEquals("Line 4: Expected 5 columns but found 4", errors.get(1));
+        assertEquals("Line 5: Category with name: No such category" + suffix + " does not exist", errors.get(2));
+        assertEquals("Line 7: Movie with given title is already in the import", errors.get(3));
+        assertTrue(errors.get(4).startsWith("Line 8: Movie was not saved"), errors.get(4));
+        assertTrue(movieRepository.findByMovieTitle("First" + suffix).isPresent());
+        assertTrue(movieRepository.findByMovieTitle("Second" + suffix).isPresent());
+        assertEquals("Actor One, Actor Two", movieRepository.findByMovieTitle("First" + suffix).get().getActors());
+    }
+}
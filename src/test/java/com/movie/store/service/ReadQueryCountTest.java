@@ -0,0 +1,104 @@
+package com.movie.store.service;
+
+import com.movie.store.dto.Category;
+import com.movie.store.dto.Movie;
+import com.movie.store.dto.MoviePage;
+import com.movie.store.exception.CommonException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ReadQueryCountTest {
+
+    @Autowired
+    private MovieService movieService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void clearStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void getMoviePageRunsTwoQueries() throws CommonException {
+        MoviePage page = movieService.getMoviePage(null, 3);
+
+        assertFalse(page.getMovies().isEmpty());
+        page.getMovies().forEach(movie -> movie.getCategories().size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void getMovieByIdIsServedFromSecondLevelCache() throws CommonException {
+        Long movieId = movieService.getMoviePage(null, 1).getMovies().get(0).getMovieId();
+        movieService.getMovieById(movieId);
+        statistics.clear();
+
+        Movie movie = movieService.getMovieById(movieId);
+
+        movie.getCategories().size();
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+    }
+
+    @Test
+    public void getMoviesByCategoryIdIsServedFromSecondLevelCache() throws CommonException {
+        Long categoryId = categoryService.getCategories().get(0).getCategoryId();
+        categoryService.getMoviesByCategoryId(categoryId);
+        statistics.clear();
+
+        List<Movie> movies = categoryService.getMoviesByCategoryId(categoryId);
+
+        movies.forEach(movie -> movie.getCategories().size());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void addCategoryToMovieInvalidatesMoviesOfCategory() throws CommonException {
+        Long movieId = movieService.getMoviePage(null, 1).getMovies().get(0).getMovieId();
+        Long categoryId = null;
+        for (Category category : categoryService.getCategories()) {
+            if (movieService.getMovieById(movieId).getCategories().stream()
+                    .noneMatch(assigned -> assigned.getCategoryId().equals(category.getCategoryId()))) {
+                categoryId = category.getCategoryId();
+                break;
+            }
+        }
+        Assumptions.assumeTrue(categoryId != null);
+        try {
+            categoryService.getMoviesByCategoryId(categoryId);
+        }
+        catch (CommonException ex) {
+            //the category has no movies yet
+        }
+
+        categoryService.addCategoryToMovie(categoryId, movieId);
+
+        Long addedCategoryId = categoryId;
+        assertTrue(categoryService.getMoviesByCategoryId(categoryId).stream()
+                .anyMatch(movie -> movie.getMovieId().equals(movieId)));
+        assertTrue(movieService.getCategoriesByMovieId(movieId).stream()
+                .anyMatch(category -> category.getCategoryId().equals(addedCategoryId)));
+    }
+
+}
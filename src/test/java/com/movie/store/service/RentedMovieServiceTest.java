@@ -0,0 +1,138 @@
+package com.movie.store.service;
+
+import com.movie.store.dto.Invoice;
+import com.movie.store.dto.Movie;
+import com.movie.store.dto.RentalTimelineEntry;
+import com.movie.store.dto.RentalTimelinePage;
+import com.movie.store.dto.RentedMovie;
+import com.movie.store.exception.CommonException;
+import com.movie.store.repository.MovieRepository;
+import com.movie.store.repository.RentedMovieRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//every test runs in a transaction that is rolled back, so the rentals of the test users are never committed
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class RentedMovieServiceTest {
+
+    @Autowired
+    private RentedMovieService rentedMovieService;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private RentedMovieRepository rentedMovieRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void calculateLoadsAllMoviesWithOneQuery() throws CommonException {
+        List<Long> movieIds = new ArrayList<>();
+        List<Integer> timesInWeeks = new ArrayList<>();
+        addAllMovies(movieIds, timesInWeeks, 2);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Invoice invoice = rentedMovieService.calculate(movieIds, timesInWeeks);
+
+        assertEquals(movieIds.size(), invoice.getInvoiceRows().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void rentMovieChecksOwnershipWithOneQuery() throws CommonException {
+        List<Long> movieIds = new ArrayList<>();
+        List<Integer> timesInWeeks = new ArrayList<>();
+        addAllMovies(movieIds, timesInWeeks, 1);
+        Long userId = -System.nanoTime();
+        rentedMovieService.rentMovie(movieIds, timesInWeeks, userId);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        CommonException ex = assertThrows(CommonException.class,
+                () -> rentedMovieService.rentMovie(movieIds, timesInWeeks, userId));
+
+        assertTrue(ex.getMessage().contains("already owns"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void getRentalTimelineReadsEveryPageWithOneQuery() throws CommonException {
+        List<Long> movieIds = new ArrayList<>();
+        List<Integer> timesInWeeks = new ArrayList<>();
+        addAllMovies(movieIds, timesInWeeks, 1);
+        Long userId = -System.nanoTime();
+        rentedMovieService.rentMovie(movieIds, timesInWeeks, userId);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<Long> rentalIds = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            RentalTimelinePage page = rentedMovieService.getRentalTimeline(userId, after, 2);
+            for (RentalTimelineEntry entry : page.getRentals()) {
+                rentalIds.add(entry.getId());
+            }
+            after = page.getNextCursor();
+            pages++;
+        } while (after != null);
+
+        assertEquals(movieIds.size(), rentalIds.size());
+        assertEquals(movieIds.size(), new HashSet<>(rentalIds).size());
+        assertEquals(pages, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void rentMovieAllowsRentingAgainAfterTheRentalHasEnded() throws CommonException {
+        Movie movie = movies().get(0);
+        Long userId = -System.nanoTime();
+        LocalDate today = LocalDate.now();
+        rentedMovieRepository.save(new RentedMovie(userId, today.minusWeeks(2), today.minusDays(1), BigDecimal.ONE, movie));
+
+        rentedMovieService.rentMovie(List.of(movie.getMovieId()), List.of(1), userId);
+
+        assertEquals(List.of(movie.getMovieId()),
+                rentedMovieRepository.findOwnedMovieIds(userId, List.of(movie.getMovieId()), today));
+        assertThrows(CommonException.class,
+                () -> rentedMovieService.rentMovie(List.of(movie.getMovieId()), List.of(1), userId));
+    }
+
+
+    //adds every movie of the test database, rented for the given amount of weeks
+    private void addAllMovies(List<Long> movieIds, List<Integer> timesInWeeks, int weeks) {
+        for (Movie movie : movies()) {
+            movieIds.add(movie.getMovieId());
+            timesInWeeks.add(weeks);
+        }
+    }
+
+    //the tests need movies in the database, without them they would pass without checking anything
+    private List<Movie> movies() {
+        List<Movie> movies = movieRepository.findAll();
+        assertFalse(movies.isEmpty(), "The test database has no movies");
+        return movies;
+    }
+}